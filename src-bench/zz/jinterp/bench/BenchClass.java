@@ -0,0 +1,184 @@
+/*
+ * Created on Oct 19, 2026
+ */
+package zz.jinterp.bench;
+
+/**
+ * Interpreted fixtures of the microbenchmarks. Each method runs a loop that
+ * exercises one kind of instruction, so that the per-invocation overhead of
+ * the host is amortized.
+ * @author gpothier
+ */
+public class BenchClass
+{
+	public static int arith(int n)
+	{
+		int a = 0;
+		int b = 1;
+		for(int i=0;i<n;i++)
+		{
+			a += (b * i) ^ (a >>> 3);
+			b = (b + 7) & 0xffff;
+		}
+		return a;
+	}
+	
+	public static int staticCalls(int n)
+	{
+		int r = 0;
+		for(int i=0;i<n;i++) r = inc(r);
+		return r;
+	}
+	
+	private static int inc(int x)
+	{
+		return x+1;
+	}
+	
+	public static int virtualCalls(int n)
+	{
+		Shape[] theShapes = { new Square(3), new Rect(2, 5) };
+		int r = 0;
+		for(int i=0;i<n;i++) r += theShapes[i & 1].area();
+		return r;
+	}
+	
+	public static int interfaceCalls(int n)
+	{
+		Op[] theOps = { new Add(3), new Mul(5) };
+		int r = 0;
+		for(int i=0;i<n;i++) r = theOps[i & 1].apply(r) & 0xffff;
+		return r;
+	}
+	
+	public static int fields(int n)
+	{
+		Holder theHolder = new Holder();
+		for(int i=0;i<n;i++) 
+		{
+			theHolder.a = theHolder.b + i;
+			theHolder.b = theHolder.a ^ 5;
+		}
+		return theHolder.b;
+	}
+	
+	public static int arrays(int n)
+	{
+		int[] theArray = new int[64];
+		// Interpreted arrays are not filled with default values
+		for(int i=0;i<theArray.length;i++) theArray[i] = i;
+		for(int i=0;i<n;i++) theArray[i & 63] = theArray[(i+1) & 63] + i;
+		return theArray[n & 63];
+	}
+	
+	/**
+	 * Throws an exception from the given depth and catches it, n times.
+	 */
+	public static int throwCatch(int n, int aDepth)
+	{
+		int r = 0;
+		for(int i=0;i<n;i++)
+		{
+			try
+			{
+				throwDeep(aDepth);
+			}
+			catch (IllegalStateException e)
+			{
+				r++;
+			}
+		}
+		return r;
+	}
+	
+	private static int throwDeep(int aDepth)
+	{
+		if (aDepth == 0) throw new IllegalStateException();
+		return throwDeep(aDepth-1);
+	}
+	
+	public static String echo(String s)
+	{
+		return s;
+	}
+	
+	public static abstract class Shape
+	{
+		public abstract int area();
+	}
+	
+	public static class Square extends Shape
+	{
+		private final int itsSide;
+
+		public Square(int aSide)
+		{
+			itsSide = aSide;
+		}
+		
+		@Override
+		public int area()
+		{
+			return itsSide*itsSide;
+		}
+	}
+	
+	public static class Rect extends Shape
+	{
+		private final int itsWidth;
+		private final int itsHeight;
+		
+		public Rect(int aWidth, int aHeight)
+		{
+			itsWidth = aWidth;
+			itsHeight = aHeight;
+		}
+		
+		@Override
+		public int area()
+		{
+			return itsWidth*itsHeight;
+		}
+	}
+	
+	public static interface Op
+	{
+		public int apply(int x);
+	}
+	
+	public static class Add implements Op
+	{
+		private final int itsValue;
+
+		public Add(int aValue)
+		{
+			itsValue = aValue;
+		}
+
+		public int apply(int x)
+		{
+			return x+itsValue;
+		}
+	}
+	
+	public static class Mul implements Op
+	{
+		private final int itsValue;
+		
+		public Mul(int aValue)
+		{
+			itsValue = aValue;
+		}
+		
+		public int apply(int x)
+		{
+			return x*itsValue;
+		}
+	}
+	
+	public static class Holder
+	{
+		public int a;
+		public int b;
+	}
+}
@@ -0,0 +1,36 @@
+/*
+ * Created on Oct 19, 2026
+ */
+package zz.jinterp.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import zz.jinterp.SimpleInterp;
+
+/**
+ * Measures the first invocation on a fresh interpreter, which is dominated
+ * by class loading and behavior preparation.
+ * @author gpothier
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 20)
+@Fork(2)
+public class ColdStartBenchmark
+{
+	@Benchmark
+	public int coldStart()
+	{
+		SimpleInterp theInterpreter = new SimpleInterp();
+		return theInterpreter.lookup("zz/jinterp/bench/BenchClass", "throwCatch", "(II)I").invokeInt(1, 1);
+	}
+}
@@ -0,0 +1,152 @@
+/*
+ * Created on Oct 19, 2026
+ */
+package zz.jinterp.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import zz.jinterp.JBehaviorHandle;
+import zz.jinterp.JInstance;
+import zz.jinterp.JObject;
+import zz.jinterp.SimpleInterp;
+
+/**
+ * Microbenchmarks of the interpreter core, on a warm interpreter: the fixtures
+ * of {@link BenchClass} are loaded and prepared during setup.
+ * Loop benchmarks report the time of n iterations of the fixture loop.
+ * Forks, iterations and durations are fixed so that results of different
+ * commits can be compared.
+ * @author gpothier
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class InterpreterBenchmark
+{
+	private static final String CLASS = "zz/jinterp/bench/BenchClass";
+	
+	@Param({"1000"})
+	public int n;
+	
+	@Param({"1", "16"})
+	public int depth;
+	
+	private SimpleInterp itsInterpreter;
+	private JBehaviorHandle itsArith;
+	private JBehaviorHandle itsStaticCalls;
+	private JBehaviorHandle itsVirtualCalls;
+	private JBehaviorHandle itsInterfaceCalls;
+	private JBehaviorHandle itsFields;
+	private JBehaviorHandle itsArrays;
+	private JBehaviorHandle itsThrowCatch;
+	private JBehaviorHandle itsEcho;
+	
+	private String itsString;
+	private JInstance itsJString;
+	
+	@Setup
+	public void setup()
+	{
+		itsInterpreter = new SimpleInterp();
+		itsArith = itsInterpreter.lookup(CLASS, "arith", "(I)I");
+		itsStaticCalls = itsInterpreter.lookup(CLASS, "staticCalls", "(I)I");
+		itsVirtualCalls = itsInterpreter.lookup(CLASS, "virtualCalls", "(I)I");
+		itsInterfaceCalls = itsInterpreter.lookup(CLASS, "interfaceCalls", "(I)I");
+		itsFields = itsInterpreter.lookup(CLASS, "fields", "(I)I");
+		itsArrays = itsInterpreter.lookup(CLASS, "arrays", "(I)I");
+		itsThrowCatch = itsInterpreter.lookup(CLASS, "throwCatch", "(II)I");
+		itsEcho = itsInterpreter.lookup(CLASS, "echo", "(Ljava/lang/String;)Ljava/lang/String;");
+		
+		itsString = "The quick brown fox jumps over the lazy dog";
+		itsJString = itsInterpreter.toJString(itsString);
+		
+		// Load and prepare everything the benchmarks use
+		itsVirtualCalls.invokeInt(2);
+		itsInterfaceCalls.invokeInt(2);
+		itsFields.invokeInt(1);
+		itsThrowCatch.invokeInt(1, depth);
+		itsEcho.invoke(null, itsJString);
+	}
+	
+	@Benchmark
+	public int arith()
+	{
+		return itsArith.invokeInt(n);
+	}
+	
+	@Benchmark
+	public int staticCalls()
+	{
+		return itsStaticCalls.invokeInt(n);
+	}
+	
+	@Benchmark
+	public int virtualCalls()
+	{
+		return itsVirtualCalls.invokeInt(n);
+	}
+	
+	@Benchmark
+	public int interfaceCalls()
+	{
+		return itsInterfaceCalls.invokeInt(n);
+	}
+	
+	@Benchmark
+	public int fields()
+	{
+		return itsFields.invokeInt(n);
+	}
+	
+	@Benchmark
+	public int arrays()
+	{
+		return itsArrays.invokeInt(n);
+	}
+	
+	/**
+	 * Runs n/100 throws, as each one is much more expensive than a loop iteration.
+	 */
+	@Benchmark
+	public int throwCatch()
+	{
+		return itsThrowCatch.invokeInt(n/100, depth);
+	}
+	
+	@Benchmark
+	public JInstance toJString()
+	{
+		return itsInterpreter.toJString(itsString);
+	}
+	
+	@Benchmark
+	public String toHostString()
+	{
+		return itsInterpreter.toString(itsJString);
+	}
+	
+	/**
+	 * Marshals a string into the interpreter, through an interpreted call, and back.
+	 */
+	@Benchmark
+	public String echo()
+	{
+		JObject theResult = itsEcho.invoke(null, itsInterpreter.toJString(itsString));
+		return itsInterpreter.toString((JInstance) theResult);
+	}
+}
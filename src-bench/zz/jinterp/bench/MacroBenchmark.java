@@ -0,0 +1,221 @@
+/*
+ * Created on Oct 19, 2026
+ */
+package zz.jinterp.bench;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+
+import zz.jinterp.JBehaviorHandle;
+import zz.jinterp.JHeapAccount;
+import zz.jinterp.JMetrics;
+import zz.jinterp.SimpleInterp;
+
+/**
+ * Runs the programs of {@link MacroPrograms} under {@link SimpleInterp} and natively,
+ * and reports for each run the wall time, the instruction dispatches per second 
+ * (see {@link JMetrics#getInstructions()}), the allocation rate, the peak heap growth 
+ * of the host and, for interpreted runs, the peak size of the interpreted heap. 
+ * The latter is measured by a separate, untimed run, as heap accounting slows 
+ * allocations down.
+ * Usage: MacroBenchmark [iterations [output.csv]]
+ * @author gpothier
+ */
+public class MacroBenchmark
+{
+	private static final String CLASS = "zz/jinterp/bench/MacroPrograms";
+	
+	/**
+	 * Program names and sizes.
+	 */
+	private static final Object[][] PROGRAMS = {
+		{"sort", 20000},
+		{"tokenize", 300},
+		{"regex", 2000},
+		{"trees", 12},
+		{"aggregate", 20000},
+	};
+	
+	public static void main(String[] aArgs) throws Exception
+	{
+		int theIterations = aArgs.length > 0 ? Integer.parseInt(aArgs[0]) : 5;
+		Writer theWriter = aArgs.length > 1 ? new FileWriter(aArgs[1]) : new PrintWriter(System.out);
+		try
+		{
+			new MacroBenchmark(theIterations).run(theWriter);
+		}
+		finally
+		{
+			theWriter.close();
+		}
+	}
+	
+	private final int itsIterations;
+
+	public MacroBenchmark(int aIterations)
+	{
+		itsIterations = aIterations;
+	}
+
+	public void run(Writer aWriter) throws Exception
+	{
+		aWriter.write("program,mode,iterations,ms_per_iteration,dispatches_per_s,objects_per_s,host_mb_per_s,peak_heap_mb,peak_interpreted_mb,slowdown\n");
+		for (Object[] theProgram : PROGRAMS)
+		{
+			String theName = (String) theProgram[0];
+			final int theSize = (Integer) theProgram[1];
+			
+			final Method theMethod = MacroPrograms.class.getMethod(theName, int.class);
+			Result theNative = measure(new Runner()
+			{
+				@Override
+				public int run() throws Exception
+				{
+					return (Integer) theMethod.invoke(null, theSize);
+				}
+			}, null);
+			
+			SimpleInterp theInterpreter = new SimpleInterp();
+			final JBehaviorHandle theHandle = theInterpreter.lookup(CLASS, theName, "(I)I");
+			Result theInterpreted = measure(new Runner()
+			{
+				@Override
+				public int run()
+				{
+					return theHandle.invokeInt(theSize);
+				}
+			}, theInterpreter);
+			
+			if (theNative.checksum != theInterpreted.checksum) 
+			{
+				throw new IllegalStateException("Checksum mismatch for "+theName+": "+theNative.checksum+" != "+theInterpreted.checksum);
+			}
+			
+			theNative.write(aWriter, theName, "native", itsIterations, 1);
+			theInterpreted.write(aWriter, theName, "interpreted", itsIterations, (double) theInterpreted.time / theNative.time);
+			aWriter.flush();
+		}
+	}
+	
+	/**
+	 * Runs the given program once to warm it up, then measures the configured number
+	 * of iterations.
+	 * @param aInterpreter The interpreter, or null for native runs.
+	 */
+	private Result measure(Runner aRunner, SimpleInterp aInterpreter) throws Exception
+	{
+		JMetrics theMetrics = aInterpreter != null ? aInterpreter.getMetrics() : null;
+		Result theResult = new Result();
+		theResult.checksum = aRunner.run();
+		
+		System.gc();
+		long theBaseline = 0;
+		for (MemoryPoolMXBean thePool : ManagementFactory.getMemoryPoolMXBeans())
+		{
+			if (thePool.getType() != MemoryType.HEAP) continue;
+			thePool.resetPeakUsage();
+			theBaseline += thePool.getUsage().getUsed();
+		}
+		if (aInterpreter != null) theMetrics.reset();
+		long theStartAllocated = getAllocatedBytes();
+		long theStartTime = System.nanoTime();
+		
+		for(int i=0;i<itsIterations;i++) 
+		{
+			if (aRunner.run() != theResult.checksum) throw new IllegalStateException("Non-deterministic program");
+		}
+		
+		theResult.time = System.nanoTime() - theStartTime;
+		theResult.allocatedBytes = getAllocatedBytes() - theStartAllocated;
+		for (MemoryPoolMXBean thePool : ManagementFactory.getMemoryPoolMXBeans())
+		{
+			if (thePool.getType() == MemoryType.HEAP) theResult.peakHeap += thePool.getPeakUsage().getUsed();
+		}
+		theResult.peakHeap -= theBaseline;
+		
+		if (aInterpreter != null)
+		{
+			theResult.instructions = theMetrics.getInstructions();
+			theResult.objects = theMetrics.getObjectsAllocated() + theMetrics.getArraysAllocated();
+			theResult.peakInterpretedHeap = measureInterpretedHeap(aRunner, aInterpreter);
+		}
+		else
+		{
+			theResult.instructions = -1;
+			theResult.objects = -1;
+			theResult.peakInterpretedHeap = -1;
+		}
+		return theResult;
+	}
+	
+	/**
+	 * Runs the program once with a heap account, and returns the peak size 
+	 * of the interpreted heap.
+	 */
+	private static long measureInterpretedHeap(Runner aRunner, SimpleInterp aInterpreter) throws Exception
+	{
+		JHeapAccount theAccount = new JHeapAccount();
+		aInterpreter.setHeapAccount(theAccount);
+		try
+		{
+			aRunner.run();
+		}
+		finally
+		{
+			aInterpreter.setHeapAccount(null);
+		}
+		return theAccount.getPeak();
+	}
+	
+	/**
+	 * Returns the number of bytes allocated by the current thread, or -1 
+	 * if the JVM does not provide it.
+	 */
+	private static long getAllocatedBytes()
+	{
+		ThreadMXBean theBean = ManagementFactory.getThreadMXBean();
+		if (theBean instanceof com.sun.management.ThreadMXBean)
+		{
+			return ((com.sun.management.ThreadMXBean) theBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		else return -1;
+	}
+	
+	private static abstract class Runner
+	{
+		public abstract int run() throws Exception;
+	}
+	
+	private static class Result
+	{
+		int checksum;
+		long time;
+		long instructions;
+		long objects;
+		long allocatedBytes;
+		long peakHeap;
+		long peakInterpretedHeap;
+		
+		public void write(Writer aWriter, String aProgram, String aMode, int aIterations, double aSlowdown) throws IOException
+		{
+			double theSeconds = time / 1e9;
+			aWriter.write(aProgram+","
+					+aMode+","
+					+aIterations+","
+					+String.format("%.3f", time / 1e6 / aIterations)+","
+					+(instructions >= 0 ? String.format("%.0f", instructions / theSeconds) : "")+","
+					+(objects >= 0 ? String.format("%.0f", objects / theSeconds) : "")+","
+					+(allocatedBytes >= 0 ? String.format("%.1f", allocatedBytes / 1e6 / theSeconds) : "")+","
+					+String.format("%.1f", peakHeap / 1e6)+","
+					+(peakInterpretedHeap >= 0 ? String.format("%.1f", peakInterpretedHeap / 1e6) : "")+","
+					+String.format("%.1f", aSlowdown)+"\n");
+		}
+	}
+}
@@ -0,0 +1,319 @@
+/*
+ * Created on Oct 19, 2026
+ */
+package zz.jinterp.bench;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Complete programs run by {@link MacroBenchmark}, both interpreted and natively.
+ * Each program takes a size and returns a checksum, so that both runs can be
+ * checked against each other.
+ * Programs only rely on the JDK where the request asks for it, so that they
+ * stay comparable across JDKs.
+ * @author gpothier
+ */
+public class MacroPrograms
+{
+	/**
+	 * Sorts pseudo-random ints with a quicksort.
+	 */
+	public static int sort(int aSize)
+	{
+		int[] theValues = new int[aSize];
+		int theSeed = 42;
+		for(int i=0;i<aSize;i++) 
+		{
+			theSeed = theSeed*1103515245 + 12345;
+			theValues[i] = theSeed >>> 8;
+		}
+		
+		quicksort(theValues, 0, aSize-1);
+		
+		int theChecksum = 0;
+		for(int i=0;i<aSize;i++) 
+		{
+			if (i > 0 && theValues[i-1] > theValues[i]) return -1;
+			theChecksum = theChecksum*31 + theValues[i];
+		}
+		return theChecksum;
+	}
+	
+	private static void quicksort(int[] aValues, int aLow, int aHigh)
+	{
+		while (aHigh - aLow > 8)
+		{
+			int thePivot = aValues[(aLow+aHigh) >>> 1];
+			int i = aLow;
+			int j = aHigh;
+			while (i <= j)
+			{
+				while (aValues[i] < thePivot) i++;
+				while (aValues[j] > thePivot) j--;
+				if (i <= j)
+				{
+					int t = aValues[i];
+					aValues[i] = aValues[j];
+					aValues[j] = t;
+					i++;
+					j--;
+				}
+			}
+			
+			// Recurse on the smaller part
+			if (j - aLow < aHigh - i)
+			{
+				quicksort(aValues, aLow, j);
+				aLow = i;
+			}
+			else
+			{
+				quicksort(aValues, i, aHigh);
+				aHigh = j;
+			}
+		}
+		
+		for(int i=aLow+1;i<=aHigh;i++)
+		{
+			int v = aValues[i];
+			int j = i-1;
+			while (j >= aLow && aValues[j] > v) 
+			{
+				aValues[j+1] = aValues[j];
+				j--;
+			}
+			aValues[j+1] = v;
+		}
+	}
+	
+	/**
+	 * Generates a JSON-like document with the given number of records,
+	 * and tokenizes it.
+	 */
+	public static int tokenize(int aSize)
+	{
+		StringBuilder theBuilder = new StringBuilder();
+		theBuilder.append('[');
+		for(int i=0;i<aSize;i++)
+		{
+			if (i > 0) theBuilder.append(',');
+			theBuilder.append("{\"id\": ");
+			theBuilder.append(i);
+			theBuilder.append(", \"name\": \"item");
+			theBuilder.append(i);
+			theBuilder.append("\", \"tags\": [true, false, null], \"value\": -");
+			theBuilder.append(i*7);
+			theBuilder.append('}');
+		}
+		theBuilder.append(']');
+		
+		return new Tokenizer(theBuilder.toString()).run();
+	}
+	
+	private static class Tokenizer
+	{
+		private final String itsText;
+		private int itsPosition;
+		
+		public Tokenizer(String aText)
+		{
+			itsText = aText;
+		}
+		
+		/**
+		 * Returns a checksum of the kinds and lengths of the tokens.
+		 */
+		public int run()
+		{
+			int theChecksum = 0;
+			int theLength = itsText.length();
+			while (itsPosition < theLength)
+			{
+				char c = itsText.charAt(itsPosition);
+				int theStart = itsPosition;
+				int theKind;
+				if (c == ' ' || c == '\n' || c == '\t')
+				{
+					itsPosition++;
+					continue;
+				}
+				else if (c == '{' || c == '}' || c == '[' || c == ']' || c == ',' || c == ':')
+				{
+					theKind = 4;
+					itsPosition++;
+				}
+				else if (c == '"')
+				{
+					theKind = 1;
+					itsPosition++;
+					while (itsText.charAt(itsPosition) != '"') 
+					{
+						if (itsText.charAt(itsPosition) == '\\') itsPosition++;
+						itsPosition++;
+					}
+					itsPosition++;
+				}
+				else if (c == '-' || (c >= '0' && c <= '9'))
+				{
+					theKind = 2;
+					itsPosition++;
+					while (itsPosition < theLength && isDigit(itsText.charAt(itsPosition))) itsPosition++;
+				}
+				else if (isLetter(c))
+				{
+					theKind = 3;
+					while (itsPosition < theLength && isLetter(itsText.charAt(itsPosition))) itsPosition++;
+				}
+				else throw new IllegalStateException("Unexpected character at "+itsPosition);
+				
+				theChecksum = theChecksum*31 + theKind*1000 + itsPosition - theStart;
+			}
+			return theChecksum;
+		}
+		
+		private static boolean isDigit(char c)
+		{
+			return c >= '0' && c <= '9';
+		}
+		
+		private static boolean isLetter(char c)
+		{
+			return c >= 'a' && c <= 'z';
+		}
+	}
+	
+	/**
+	 * Matches a few patterns against generated lines, with a backtracking matcher
+	 * that supports literals, '.', '*', '^' and '$'.
+	 */
+	public static int regex(int aSize)
+	{
+		char[][] thePatterns = {
+				"^a.*z$".toCharArray(),
+				"b*c".toCharArray(),
+				"x.y.z".toCharArray(),
+				"^[".toCharArray(),
+		};
+		
+		int theMatches = 0;
+		char[] theLine = new char[32];
+		int theSeed = 7;
+		for(int i=0;i<aSize;i++)
+		{
+			for(int j=0;j<theLine.length;j++)
+			{
+				theSeed = theSeed*1103515245 + 12345;
+				theLine[j] = (char) ('a' + ((theSeed >>> 16) % 26));
+			}
+			
+			for(int p=0;p<thePatterns.length;p++)
+			{
+				if (match(thePatterns[p], theLine)) theMatches += p+1;
+			}
+		}
+		return theMatches;
+	}
+	
+	private static boolean match(char[] aPattern, char[] aText)
+	{
+		if (aPattern.length > 0 && aPattern[0] == '^') return matchHere(aPattern, 1, aText, 0);
+		for(int i=0;i<=aText.length;i++)
+		{
+			if (matchHere(aPattern, 0, aText, i)) return true;
+		}
+		return false;
+	}
+	
+	private static boolean matchHere(char[] aPattern, int aPIndex, char[] aText, int aTIndex)
+	{
+		if (aPIndex == aPattern.length) return true;
+		if (aPIndex+1 < aPattern.length && aPattern[aPIndex+1] == '*') 
+		{
+			return matchStar(aPattern[aPIndex], aPattern, aPIndex+2, aText, aTIndex);
+		}
+		if (aPattern[aPIndex] == '$' && aPIndex+1 == aPattern.length) return aTIndex == aText.length;
+		if (aTIndex < aText.length && (aPattern[aPIndex] == '.' || aPattern[aPIndex] == aText[aTIndex]))
+		{
+			return matchHere(aPattern, aPIndex+1, aText, aTIndex+1);
+		}
+		return false;
+	}
+	
+	private static boolean matchStar(char c, char[] aPattern, int aPIndex, char[] aText, int aTIndex)
+	{
+		do
+		{
+			if (matchHere(aPattern, aPIndex, aText, aTIndex)) return true;
+		}
+		while (aTIndex < aText.length && (aText[aTIndex++] == c || c == '.'));
+		return false;
+	}
+	
+	/**
+	 * Builds and walks binary trees of the given depth.
+	 */
+	public static int trees(int aDepth)
+	{
+		int theChecksum = 0;
+		for(int d=4;d<=aDepth;d+=2)
+		{
+			int theIterations = 1 << (aDepth - d + 4);
+			for(int i=0;i<theIterations;i++) theChecksum += Node.create(d).check();
+		}
+		return theChecksum;
+	}
+	
+	private static class Node
+	{
+		private final Node itsLeft;
+		private final Node itsRight;
+		
+		public Node(Node aLeft, Node aRight)
+		{
+			itsLeft = aLeft;
+			itsRight = aRight;
+		}
+		
+		public static Node create(int aDepth)
+		{
+			return aDepth == 0 ? new Node(null, null) : new Node(create(aDepth-1), create(aDepth-1));
+		}
+		
+		public int check()
+		{
+			return itsLeft == null ? 1 : 1 + itsLeft.check() + itsRight.check();
+		}
+	}
+	
+	/**
+	 * Aggregates generated records by key in a {@link HashMap}.
+	 */
+	public static int aggregate(int aSize)
+	{
+		Map<String, int[]> theTotals = new HashMap<String, int[]>();
+		int theSeed = 13;
+		for(int i=0;i<aSize;i++)
+		{
+			theSeed = theSeed*1103515245 + 12345;
+			String theKey = "key"+((theSeed >>> 16) % 500);
+			int[] theTotal = theTotals.get(theKey);
+			if (theTotal == null)
+			{
+				theTotal = new int[2];
+				theTotal[0] = 0;
+				theTotal[1] = 0;
+				theTotals.put(theKey, theTotal);
+			}
+			theTotal[0]++;
+			theTotal[1] += i;
+		}
+		
+		int theChecksum = theTotals.size();
+		for (Map.Entry<String, int[]> theEntry : theTotals.entrySet())
+		{
+			theChecksum += theEntry.getKey().hashCode() ^ (theEntry.getValue()[0]*31 + theEntry.getValue()[1]);
+		}
+		return theChecksum;
+	}
+}
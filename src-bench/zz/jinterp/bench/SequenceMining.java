@@ -0,0 +1,60 @@
+/*
+ * Created on Oct 19, 2026
+ */
+package zz.jinterp.bench;
+
+import java.io.FileWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+
+import zz.jinterp.JProfiler;
+import zz.jinterp.JSequenceMiner;
+import zz.jinterp.JSuperinstructions;
+import zz.jinterp.SimpleInterp;
+
+/**
+ * Profiles the programs of {@link MacroPrograms} without superinstructions, and
+ * reports the instruction sequences that would save the most dispatches if 
+ * they were fused.
+ * Usage: SequenceMining [count [output.csv]]
+ * @author gpothier
+ */
+public class SequenceMining
+{
+	private static final String CLASS = "zz/jinterp/bench/MacroPrograms";
+	
+	/**
+	 * Program names and sizes.
+	 */
+	private static final Object[][] PROGRAMS = {
+		{"sort", 20000},
+		{"tokenize", 300},
+		{"regex", 2000},
+		{"trees", 12},
+		{"aggregate", 20000},
+	};
+	
+	public static void main(String[] aArgs) throws Exception
+	{
+		int theCount = aArgs.length > 0 ? Integer.parseInt(aArgs[0]) : 30;
+		Writer theWriter = aArgs.length > 1 ? new FileWriter(aArgs[1]) : new PrintWriter(System.out);
+		try
+		{
+			JSequenceMiner theMiner = new JSequenceMiner(4);
+			for (Object[] theProgram : PROGRAMS)
+			{
+				SimpleInterp theInterpreter = new SimpleInterp();
+				theInterpreter.setSuperinstructions(JSuperinstructions.NONE);
+				JProfiler theProfiler = new JProfiler();
+				theInterpreter.setProfiler(theProfiler);
+				theInterpreter.lookup(CLASS, (String) theProgram[0], "(I)I").invokeInt((Integer) theProgram[1]);
+				theMiner.add(theProfiler.getReport());
+			}
+			theMiner.writeCSV(theWriter, theCount);
+		}
+		finally
+		{
+			theWriter.close();
+		}
+	}
+}
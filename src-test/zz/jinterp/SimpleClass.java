@@ -34,6 +34,9 @@ package zz.jinterp;
 public class SimpleClass
 {
 	static int s = 5;
+	static int counter;
+	static int t;
+	static int[] a = new int[1];
 	
 	public static int ari(int i1, int i2)
 	{
@@ -56,6 +59,17 @@ public class SimpleClass
 		return s+1;
 	}
 	
+	public static void set(int v)
+	{
+		t = v;
+		a[0] = v;
+	}
+	
+	public static int get()
+	{
+		return t + a[0];
+	}
+	
 	public static int testException1()
 	{
 		for(int i=0;i<10;i++)
@@ -83,4 +97,536 @@ public class SimpleClass
 			throw new RuntimeException(e);
 		}
 	}
+	
+	public static int testFinally(int i)
+	{
+		int r = 0;
+		try
+		{
+			try
+			{
+				if (i > 0) throw new IllegalStateException();
+				r = 1;
+			}
+			finally
+			{
+				r += 10;
+			}
+		}
+		catch (RuntimeException e)
+		{
+			r += 100;
+		}
+		return r;
+	}
+	
+	public static int throwDeep(int i)
+	{
+		if (i == 0) throw new IllegalStateException();
+		return throwDeep(i-1);
+	}
+	
+	private static final IllegalStateException PREALLOCATED = new IllegalStateException();
+	
+	/**
+	 * Throws the same exception n times, and returns it.
+	 */
+	public static IllegalStateException rethrow(int n)
+	{
+		for(int i=0;i<n;i++)
+		{
+			try
+			{
+				throw PREALLOCATED;
+			}
+			catch (IllegalStateException e)
+			{
+			}
+		}
+		return PREALLOCATED;
+	}
+	
+	public static int testThrow(int i)
+	{
+		int r = 0;
+		for(int j=0;j<i;j++)
+		{
+			try
+			{
+				throwDeep(j);
+			}
+			catch (IllegalStateException e)
+			{
+				r++;
+			}
+		}
+		return r;
+	}
+	
+	static synchronized void inc()
+	{
+		counter++;
+	}
+	
+	public static int testThreads() throws InterruptedException
+	{
+		counter = 0;
+		Thread[] threads = new Thread[4];
+		for(int i=0;i<threads.length;i++)
+		{
+			threads[i] = new Thread(new Runnable()
+			{
+				public void run()
+				{
+					for(int j=0;j<100;j++) inc();
+				}
+			});
+			threads[i].start();
+		}
+		for (Thread t : threads) t.join();
+		return counter;
+	}
+	
+	/**
+	 * Returns the number of exceptions received by the uncaught exception handler of a thread.
+	 */
+	public static int testUncaught() throws InterruptedException
+	{
+		counter = 0;
+		Thread theThread = new Thread(new Runnable()
+		{
+			public void run()
+			{
+				throw new IllegalStateException();
+			}
+		});
+		theThread.setUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler()
+		{
+			public void uncaughtException(Thread aThread, Throwable aException)
+			{
+				if (aException instanceof IllegalStateException) inc();
+			}
+		});
+		theThread.start();
+		theThread.join();
+		return counter;
+	}
+	
+	/**
+	 * Returns 1 if a thread cannot be started twice.
+	 */
+	public static int testRestart() throws InterruptedException
+	{
+		Thread theThread = new Thread(new Runnable()
+		{
+			public void run()
+			{
+			}
+		});
+		theThread.start();
+		theThread.join();
+		try
+		{
+			theThread.start();
+			return 0;
+		}
+		catch (IllegalThreadStateException e)
+		{
+			return 1;
+		}
+	}
+	
+	/**
+	 * Returns the number of exceptions received by the group of a thread that
+	 * has no handler, plus 10 if the thread is still counted by its group.
+	 */
+	public static int testGroupUncaught() throws InterruptedException
+	{
+		counter = 0;
+		ThreadGroup theGroup = new ThreadGroup("test")
+		{
+			@Override
+			public void uncaughtException(Thread aThread, Throwable aException)
+			{
+				if (aException instanceof IllegalStateException) inc();
+			}
+		};
+		Thread theThread = new Thread(theGroup, new Runnable()
+		{
+			public void run()
+			{
+				throw new IllegalStateException();
+			}
+		});
+		theThread.start();
+		theThread.join();
+		return counter + 10*theGroup.activeCount();
+	}
+	
+	/**
+	 * Starts a thread that spins forever, and waits for it.
+	 */
+	public static int spinInThread() throws InterruptedException
+	{
+		Thread theThread = new Thread(new Runnable()
+		{
+			public void run()
+			{
+				spin(-1);
+			}
+		});
+		theThread.start();
+		theThread.join();
+		return spin(-1);
+	}
+	
+	public static int depth(int n)
+	{
+		return n <= 0 ? 0 : 1 + depth(n-1);
+	}
+	
+	public static int spin(int n)
+	{
+		int r = 0;
+		for(int i=0;i<n || n < 0;i++) r += i;
+		return r;
+	}
+	
+	public static class Cancelled
+	{
+		public static int caught;
+		public static int finallyRun;
+		
+		public static int spinWithHandlers()
+		{
+			try
+			{
+				return spin(-1);
+			}
+			catch (Throwable e)
+			{
+				caught++;
+				return 0;
+			}
+			finally
+			{
+				finallyRun++;
+			}
+		}
+		
+		public static int getResult()
+		{
+			return caught*10 + finallyRun;
+		}
+	}
+	
+	public static class Allocator
+	{
+		private Allocator next;
+		private long payload;
+		
+		public static int build(int n)
+		{
+			Allocator theHead = null;
+			for(int i=0;i<n;i++)
+			{
+				Allocator theAllocator = new Allocator();
+				theAllocator.next = theHead;
+				theAllocator.payload = i;
+				theHead = theAllocator;
+			}
+			return n;
+		}
+		
+		public static int buildOrFail(int n)
+		{
+			try
+			{
+				return build(n);
+			}
+			catch (OutOfMemoryError e)
+			{
+				return -1;
+			}
+		}
+		
+		public static int allocateOrFail(int n)
+		{
+			try
+			{
+				return new int[n].length + new Object[n].length;
+			}
+			catch (OutOfMemoryError e)
+			{
+				return -1;
+			}
+		}
+	}
+	
+	/**
+	 * Mixes chars, ints, longs and doubles, see {@link TestJInterp#testTypedArithmetic()}
+	 */
+	public static int charSum(int n)
+	{
+		char[] theChars = {'a', 'b', 'c'};
+		int theSum = 0;
+		for(int i=0;i<n;i++) theSum = theSum*31 + theChars[i % 3];
+		long theLong = theSum;
+		double theDouble = theLong / 2.0;
+		return (int) (theLong*3 - (long) theDouble);
+	}
+	
+	/**
+	 * Contains the default superinstructions, see {@link TestJInterp#testSuperinstructions()}
+	 */
+	public static int sumArray(int n)
+	{
+		int[] theValues = new int[n];
+		for(int i=0;i<n;i++) theValues[i] = i;
+		int theSum = 0;
+		for(int i=0;i<n;i++)
+		{
+			int v = theValues[i];
+			if (v < 50) theSum = theSum + v;
+		}
+		return theSum;
+	}
+	
+	/**
+	 * Prepared without superinstructions by {@link TestJInterp#testSuperinstructions()}
+	 */
+	public static class Sequences
+	{
+		public static int sumArray(int n)
+		{
+			int[] theValues = new int[n];
+			for(int i=0;i<n;i++) theValues[i] = i;
+			int theSum = 0;
+			for(int i=0;i<n;i++)
+			{
+				int v = theValues[i];
+				if (v < 50) theSum = theSum + v;
+			}
+			return theSum;
+		}
+	}
+	
+	/**
+	 * Folded to a single constant, see {@link TestJInterp#testPeephole()}
+	 */
+	public static int constant()
+	{
+		int theScale = 3;
+		return theScale * 4 + 1;
+	}
+	
+	/**
+	 * Contains jumps and a handler, see {@link TestJInterp#testPeephole()}
+	 */
+	public static int peephole(int a, int b, int c)
+	{
+		int theScale = 3;
+		int theBase = theScale * 4 + 1;
+		int theResult;
+		if (b != 0)
+		{
+			if (c != 0) theResult = theBase;
+			else theResult = -theBase;
+		}
+		else theResult = 0;
+		
+		try
+		{
+			if (a == 0) throw new IllegalStateException();
+			theResult += 100 / a;
+		}
+		catch (IllegalStateException e)
+		{
+			theResult = -1;
+		}
+		return theResult;
+	}
+	
+	/**
+	 * Its accessors are executed at the call site, see {@link TestJInterp#testTrivialMethods()}
+	 */
+	public static class Account
+	{
+		private int balance;
+		
+		public int getBalance()
+		{
+			return balance;
+		}
+		
+		public void setBalance(int aBalance)
+		{
+			balance = aBalance;
+		}
+		
+		public static int deposit(int n)
+		{
+			Account theAccount = new Account();
+			for(int i=0;i<n;i++) theAccount.setBalance(theAccount.getBalance() + foo(i));
+			return theAccount.getBalance();
+		}
+	}
+	
+	/**
+	 * Dispatched through inline caches by {@link TestJInterp#testQuickening()}
+	 */
+	public static class Shape
+	{
+		protected int size;
+		
+		public Shape(int aSize)
+		{
+			size = aSize;
+		}
+		
+		public int area()
+		{
+			return size*size;
+		}
+		
+		/**
+		 * Sums the areas of n shapes; every other shape is a triangle if aMixed is not 0.
+		 */
+		public static int sumAreas(int n, int aMixed)
+		{
+			Shape theSquare = new Shape(2);
+			Shape theTriangle = new Triangle(2);
+			Object theNone = null;
+			int theSum = theNone instanceof Shape ? 1000 : 0;
+			for(int i=0;i<n;i++)
+			{
+				Shape theShape = aMixed != 0 && (i & 1) == 1 ? theTriangle : theSquare;
+				theSum += theShape.area();
+			}
+			return ((Shape) theNone) == null ? theSum : -1;
+		}
+	}
+	
+	public static class Triangle extends Shape
+	{
+		public Triangle(int aSize)
+		{
+			super(aSize);
+		}
+		
+		@Override
+		public int area()
+		{
+			return size*size/2;
+		}
+	}
+	
+	/**
+	 * Implemented by {@link TestJInterp#testNatives()}
+	 */
+	public static class Natives
+	{
+		public static native int mix(int a, int b);
+		public static native int scale(int a);
+		
+		public static int mixAll(int n)
+		{
+			int r = 0;
+			for(int i=0;i<n;i++) r = mix(r, scale(i));
+			return r;
+		}
+		
+		public int offset(int a)
+		{
+			return a+1;
+		}
+	}
+	
+	/**
+	 * Only loaded after a snapshot, see {@link TestJInterp#testSnapshotClassLoading()}
+	 */
+	public static class Forked
+	{
+		private static int base = 7;
+		
+		public static int next()
+		{
+			return base++;
+		}
+	}
+	
+	/**
+	 * Delegated to the host by {@link TestJInterp#testHostDelegation()}
+	 */
+	public static class Pure
+	{
+		public static int parse(String s, int radix)
+		{
+			return Integer.parseInt(s, radix);
+		}
+		
+		public static int parseOr(String s, int radix, int r)
+		{
+			try
+			{
+				return parse(s, radix);
+			}
+			catch (NumberFormatException e)
+			{
+				return r;
+			}
+		}
+		
+		public static int check(int n)
+		{
+			if (n < 0) throw new Failure(n, new IllegalArgumentException("negative"));
+			return n;
+		}
+		
+		/**
+		 * Returns r if check fails with an exception caused by an IllegalArgumentException.
+		 */
+		public static int checkOr(int n, int r)
+		{
+			try
+			{
+				return check(n);
+			}
+			catch (RuntimeException e)
+			{
+				return e.getCause() instanceof IllegalArgumentException ? r : 0;
+			}
+		}
+		
+		/**
+		 * Has no (String) constructor, so that delegation cannot rethrow it as is.
+		 */
+		public static class Failure extends RuntimeException
+		{
+			private static final long serialVersionUID = 1L;
+
+			public Failure(int aCode, Throwable aCause)
+			{
+				super("code "+aCode, aCause);
+			}
+		}
+	}
+	
+	/**
+	 * Sampled by {@link TestJInterp#testSampler()}
+	 */
+	public static class Sampled
+	{
+		public static native int probe();
+		
+		public static int inner()
+		{
+			return probe()+1;
+		}
+		
+		public static int outer()
+		{
+			return inner()+1;
+		}
+	}
 }
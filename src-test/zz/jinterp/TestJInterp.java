@@ -31,6 +31,22 @@ Inc. MD5 Message-Digest Algorithm".
 */
 package zz.jinterp;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.ObjectName;
+
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.MethodNode;
+
+import zz.jinterp.JNormalBehavior.JFrame;
 import zz.jinterp.JPrimitive.JInt;
 import junit.framework.Assert;
 
@@ -86,4 +102,851 @@ public class TestJInterp
 		JInt theResult = (JInt) interp.invoke(null, "zz/jinterp/SimpleClass", "testException1", "()I", null, args);
 		Assert.assertEquals(theResult.v, 4);
 	}
+	
+	@org.junit.Test
+	public void testFinally()
+	{
+		JBehaviorHandle theHandle = interp.lookup("zz/jinterp/SimpleClass", "testFinally", "(I)I");
+		Assert.assertEquals(theHandle.invokeInt(0), SimpleClass.testFinally(0));
+		Assert.assertEquals(theHandle.invokeInt(1), SimpleClass.testFinally(1));
+	}
+	
+	@org.junit.Test
+	public void testThrow()
+	{
+		JBehaviorHandle theHandle = interp.lookup("zz/jinterp/SimpleClass", "testThrow", "(I)I");
+		Assert.assertEquals(theHandle.invokeInt(10), SimpleClass.testThrow(10));
+		
+		try
+		{
+			interp.lookup("zz/jinterp/SimpleClass", "throwDeep", "(I)I").invokeInt(3);
+			Assert.fail();
+		}
+		catch (JNormalBehavior.ExceptionThrown e)
+		{
+			Assert.assertEquals(e.getException().getStackTrace().size(), 4);
+		}
+		
+		// Rethrowing does not extend the trace
+		JBehaviorHandle theRethrow = interp.lookup("zz/jinterp/SimpleClass", "rethrow", "(I)Ljava/lang/IllegalStateException;");
+		JInstance theException = (JInstance) theRethrow.invoke(null, new JInt(1));
+		int theSize = theException.getStackTrace().size();
+		theRethrow.invoke(null, new JInt(1000));
+		Assert.assertEquals(theException.getStackTrace().size(), theSize);
+	}
+	
+	@org.junit.Test
+	public void testThreads()
+	{
+		JObject[] args = {}; 
+		JInt theResult = (JInt) interp.invoke(null, "zz/jinterp/SimpleClass", "testThreads", "()I", null, args);
+		Assert.assertEquals(theResult.v, 400);
+		
+		theResult = (JInt) interp.invoke(null, "zz/jinterp/SimpleClass", "testUncaught", "()I", null, args);
+		Assert.assertEquals(theResult.v, 1);
+		
+		theResult = (JInt) interp.invoke(null, "zz/jinterp/SimpleClass", "testGroupUncaught", "()I", null, args);
+		Assert.assertEquals(theResult.v, 1);
+		
+		theResult = (JInt) interp.invoke(null, "zz/jinterp/SimpleClass", "testRestart", "()I", null, args);
+		Assert.assertEquals(theResult.v, 1);
+	}
+	
+	@org.junit.Test
+	public void testBatch()
+	{
+		List<JObject[]> args = new ArrayList<JObject[]>();
+		for(int i=0;i<100;i++) args.add(interp.toJObjects(i, 2*i));
+		args.add(new JObject[] {null, null});
+		
+		JBatchInvoker theInvoker = new JBatchInvoker(interp, "zz/jinterp/SimpleClass", "ari", "(II)I", null, 4);
+		List<JBatchInvoker.Result> theResults = theInvoker.invokeAll(args);
+		theInvoker.shutdown();
+		
+		for(int i=0;i<100;i++)
+		{
+			JInt theInt = (JInt) theResults.get(i).getValue();
+			Assert.assertEquals(theInt.v, SimpleClass.ari(i, 2*i));
+		}
+		Assert.assertTrue(theResults.get(100).isFailed());
+		
+		// An error only fails its own item
+		theInvoker = new JBatchInvoker(interp, "zz/jinterp/SimpleClass", "depth", "(I)I", null, 2);
+		theResults = theInvoker.invokeAll(Arrays.asList(interp.toJObjects(10), interp.toJObjects(100000000)));
+		theInvoker.shutdown();
+		Assert.assertEquals(((JInt) theResults.get(0).getValue()).v, 10);
+		Assert.assertTrue(theResults.get(1).getFailure() instanceof StackOverflowError);
+	}
+	
+	@org.junit.Test
+	public void testHandle()
+	{
+		JBehaviorHandle theHandle = interp.lookup("zz/jinterp/SimpleClass", "ari", "(II)I");
+		for(int i=-5;i<5;i++) Assert.assertEquals(theHandle.invokeInt(i, 3), SimpleClass.ari(i, 3));
+		
+		JInt theResult = (JInt) theHandle.invoke(null, interp.toJObjects(7, 8));
+		Assert.assertEquals(theResult.v, SimpleClass.ari(7, 8));
+		
+		JBehaviorHandle theGetter = interp.lookup("zz/jinterp/SimpleClass$Account", "getBalance", "()I");
+		try
+		{
+			theGetter.invoke(null);
+			Assert.fail();
+		}
+		catch (JNormalBehavior.ExceptionThrown e)
+		{
+			Assert.assertEquals(e.getException().getType().getName(), "java/lang/NullPointerException");
+		}
+		try
+		{
+			theGetter.invoke(interp.newArray(1));
+			Assert.fail();
+		}
+		catch (IllegalArgumentException e)
+		{
+		}
+		try
+		{
+			theGetter.invoke(interp.getClass("zz/jinterp/SimpleClass$Allocator").newInstance());
+			Assert.fail();
+		}
+		catch (IllegalArgumentException e)
+		{
+		}
+		try
+		{
+			interp.lookup("java/lang/Object", "hashCode", "()I").invoke(new JInt(1));
+			Assert.fail();
+		}
+		catch (IllegalArgumentException e)
+		{
+		}
+	}
+	
+	@org.junit.Test
+	public void testNatives()
+	{
+		String theClassName = "zz/jinterp/SimpleClass$Natives";
+		interp.getNativeRegistry().register(theClassName, "mix", "(II)I", new JNative.IntIntToInt()
+		{
+			@Override
+			public int apply(int a0, int a1)
+			{
+				return 31*a0 + a1;
+			}
+		});
+		interp.getNativeRegistry().register(theClassName, "scale", "(I)I", new JNative.Generic()
+		{
+			@Override
+			public JObject invoke(JFrame aParentFrame, JObject aTarget, JObject[] aArgs)
+			{
+				return new JInt(3*((JInt) aArgs[0]).v);
+			}
+		});
+		
+		int theExpected = 0;
+		for(int i=0;i<10;i++) theExpected = 31*theExpected + 3*i;
+		
+		JBehaviorHandle theHandle = interp.lookup(theClassName, "mixAll", "(I)I");
+		Assert.assertEquals(theHandle.invokeInt(10), theExpected);
+	}
+	
+	@org.junit.Test
+	public void testTypedNativeOnInstanceMethod()
+	{
+		try
+		{
+			interp.getNativeRegistry().register("zz/jinterp/SimpleClass$Natives", "offset", "(I)I", new JNative.IntToInt()
+			{
+				@Override
+				public int apply(int a0)
+				{
+					return a0;
+				}
+			});
+			Assert.fail();
+		}
+		catch (IllegalArgumentException e)
+		{
+		}
+	}
+	
+	@org.junit.Test
+	public void testHostDelegation()
+	{
+		JHostDelegation theDelegation = new JHostDelegation();
+		theDelegation.allow(SimpleClass.Pure.class, "parse", String.class, int.class);
+		theDelegation.allow(SimpleClass.Pure.class, "check", int.class);
+		theDelegation.install(interp);
+		
+		JBehaviorHandle theHandle = interp.lookup("zz/jinterp/SimpleClass$Pure", "parseOr", "(Ljava/lang/String;II)I");
+		JInt theResult = (JInt) theHandle.invoke(null, interp.toJObjects("ff", 16, -1));
+		Assert.assertEquals(theResult.v, 255);
+		
+		theResult = (JInt) theHandle.invoke(null, interp.toJObjects("zz", 10, -1));
+		Assert.assertEquals(theResult.v, -1);
+		
+		// Exceptions that cannot be instantiated are converted, with their cause
+		JBehaviorHandle theCheck = interp.lookup("zz/jinterp/SimpleClass$Pure", "checkOr", "(II)I");
+		Assert.assertEquals(theCheck.invokeInt(3, -1), 3);
+		Assert.assertEquals(theCheck.invokeInt(-3, -1), -1);
+		
+		try
+		{
+			theDelegation.install(interp);
+			Assert.fail();
+		}
+		catch (IllegalStateException e)
+		{
+		}
+	}
+	
+	@org.junit.Test
+	public void testProfiler() throws IOException
+	{
+		JProfiler theProfiler = new JProfiler();
+		interp.setProfiler(theProfiler);
+		try
+		{
+			interp.lookup("zz/jinterp/SimpleClass", "testThrow", "(I)I").invokeInt(5);
+		}
+		finally
+		{
+			interp.setProfiler(null);
+		}
+		
+		JProfiler.Report theReport = theProfiler.getReport();
+		Assert.assertEquals(theReport.getOpcodeCount(Opcodes.ATHROW), 5);
+		
+		for (JProfiler.Counters theCounters : theReport.getBehaviors())
+		{
+			String theName = theCounters.getBehavior().getName();
+			if ("testThrow".equals(theName))
+			{
+				Assert.assertEquals(theCounters.getInvocations(), 1);
+				Assert.assertEquals(theCounters.getCaught(), 5);
+			}
+			else if ("throwDeep".equals(theName))
+			{
+				Assert.assertEquals(theCounters.getInvocations(), 0+1+2+3+4+5);
+				Assert.assertEquals(theCounters.getCaught(), 0);
+			}
+		}
+		
+		StringWriter theWriter = new StringWriter();
+		theReport.writeJSON(theWriter);
+		Assert.assertTrue(theWriter.toString().contains("\"ATHROW\":5"));
+	}
+	
+	@org.junit.Test
+	public void testSampler() throws IOException
+	{
+		final JSampler theSampler = new JSampler(1000, false);
+		interp.getNativeRegistry().register("zz/jinterp/SimpleClass$Sampled", "probe", "()I", new JNative.Generic()
+		{
+			@Override
+			public JObject invoke(JFrame aParentFrame, JObject aTarget, JObject[] aArgs)
+			{
+				theSampler.sample();
+				return JInt._0;
+			}
+		});
+		
+		interp.setSampler(theSampler);
+		try
+		{
+			Assert.assertEquals(interp.lookup("zz/jinterp/SimpleClass$Sampled", "outer", "()I").invokeInt(), 2);
+		}
+		finally
+		{
+			interp.setSampler(null);
+		}
+		
+		StringWriter theWriter = new StringWriter();
+		theSampler.writeFolded(theWriter);
+		Assert.assertEquals(theWriter.toString(), "zz/jinterp/SimpleClass$Sampled.outer;zz/jinterp/SimpleClass$Sampled.inner 1\n");
+	}
+	
+	@org.junit.Test
+	public void testTracer() throws IOException
+	{
+		File theDirectory = File.createTempFile("trace", "");
+		theDirectory.delete();
+		
+		try
+		{
+			JTracer theTracer = new JTracer(theDirectory, 2, 1 << 16, 1 << 12);
+			interp.setRecorder(theTracer);
+			try
+			{
+				interp.lookup("zz/jinterp/SimpleClass", "set", "(I)V").invoke(null, new JInt(7));
+				interp.lookup("zz/jinterp/SimpleClass", "testThrow", "(I)I").invokeInt(2);
+			}
+			finally
+			{
+				interp.setRecorder(null);
+				theTracer.close();
+			}
+			
+			final int[] theCounts = new int[4];
+			JTracer.read(theDirectory, new JTracer.Visitor()
+			{
+				@Override
+				public void fieldWrite(int aFieldId, int aTargetId, long aValueBits)
+				{
+					if (aValueBits == 7) theCounts[0]++;
+				}
+				
+				@Override
+				public void arrayStore(int aArrayId, int aIndex, long aValueBits)
+				{
+					if (aIndex == 0 && aValueBits == 7) theCounts[1]++;
+				}
+				
+				@Override
+				public void exception(int aIP, int aExceptionId)
+				{
+					theCounts[2]++;
+				}
+				
+				@Override
+				public void exit(boolean aThrown)
+				{
+					if (aThrown) theCounts[3]++;
+				}
+			});
+		
+			Assert.assertEquals(theCounts[0], 1);
+			Assert.assertEquals(theCounts[1], 1);
+			Assert.assertEquals(theCounts[2], 5);
+			Assert.assertEquals(theCounts[3], 3);
+		}
+		finally
+		{
+			File[] theFiles = theDirectory.listFiles();
+			if (theFiles != null) for (File theFile : theFiles) theFile.delete();
+			theDirectory.delete();
+		}
+	}
+	
+	@org.junit.Test
+	public void testPipeline() throws InterruptedException
+	{
+		final int[] theCounts = new int[6];
+		JEventPipeline thePipeline = new JEventPipeline(4, 2, JEventPipeline.BLOCK, 1, 1);
+		thePipeline.setRecordFieldReads(true);
+		
+		// A failing listener must not stop the delivery
+		thePipeline.addListener(new JEventPipeline.Listener()
+		{
+			public void events(JEventPipeline.Batch aBatch)
+			{
+				throw new IllegalStateException("Failing listener");
+			}
+		});
+		thePipeline.addListener(new JEventPipeline.Listener()
+		{
+			public void events(JEventPipeline.Batch aBatch)
+			{
+				for(int i=0;i<aBatch.size();i++)
+				{
+					JObject theValue = aBatch.getValue(i);
+					boolean theSeven = theValue instanceof JInt && ((JInt) theValue).v == 7;
+					switch(aBatch.getKind(i))
+					{
+					case JEventPipeline.Batch.FIELD_WRITE: if (theSeven) theCounts[0]++; break;
+					case JEventPipeline.Batch.ARRAY_STORE: if (theSeven && aBatch.getInt(i) == 0) theCounts[1]++; break;
+					case JEventPipeline.Batch.EXCEPTION: theCounts[2]++; break;
+					case JEventPipeline.Batch.EXIT: if (aBatch.getInt(i) != 0) theCounts[3]++; break;
+					case JEventPipeline.Batch.FIELD_READ: if (theSeven) theCounts[4]++; break;
+					case JEventPipeline.Batch.ENTER: theCounts[5]++; break;
+					}
+				}
+			}
+		});
+		
+		final int[] theFailures = new int[1];
+		thePipeline.setErrorHandler(new JEventPipeline.ErrorHandler()
+		{
+			public void listenerFailed(JEventPipeline.Listener aListener, Throwable aError)
+			{
+				if (aError instanceof IllegalStateException) theFailures[0]++;
+			}
+		});
+		
+		thePipeline.start();
+		interp.setRecorder(thePipeline);
+		try
+		{
+			interp.lookup("zz/jinterp/SimpleClass", "set", "(I)V").invoke(null, new JInt(7));
+			interp.lookup("zz/jinterp/SimpleClass", "get", "()I").invokeInt();
+			
+			// The sink of a terminated thread is removed once drained
+			Thread theThread = new Thread()
+			{
+				@Override
+				public void run()
+				{
+					interp.lookup("zz/jinterp/SimpleClass", "testThrow", "(I)I").invokeInt(2);
+				}
+			};
+			theThread.start();
+			theThread.join();
+		}
+		finally
+		{
+			interp.setRecorder(null);
+			thePipeline.close();
+		}
+		
+		Assert.assertEquals(theCounts[0], 1);
+		Assert.assertEquals(theCounts[1], 1);
+		Assert.assertEquals(theCounts[2], 5);
+		Assert.assertEquals(theCounts[3], 3);
+		Assert.assertEquals(theCounts[4], 1);
+		Assert.assertTrue(theCounts[5] > 0);
+		Assert.assertEquals(thePipeline.getDroppedEvents(), 0);
+		Assert.assertTrue(thePipeline.getListenerFailures() > 0);
+		Assert.assertEquals(theFailures[0], thePipeline.getListenerFailures());
+		Assert.assertEquals(thePipeline.getSinkCount(), 1);
+	}
+	
+	@org.junit.Test
+	public void testMetrics() throws Exception
+	{
+		JMetrics theMetrics = interp.getMetrics();
+		interp.lookup("zz/jinterp/SimpleClass", "testThrow", "(I)I").invokeInt(0);
+		theMetrics.reset();
+		
+		interp.lookup("zz/jinterp/SimpleClass", "testThrow", "(I)I").invokeInt(3);
+		Assert.assertEquals(theMetrics.getExceptions(), 3);
+		Assert.assertEquals(theMetrics.getObjectsAllocated(), 3);
+		Assert.assertTrue(theMetrics.getInstructions() > 0);
+		Assert.assertTrue(theMetrics.getInterpretedInvocations() >= 4);
+		Assert.assertTrue(theMetrics.getMaxFrameDepth() >= 4);
+		
+		ObjectName theName = theMetrics.register("test");
+		try
+		{
+			Object theValue = ManagementFactory.getPlatformMBeanServer().getAttribute(theName, "Exceptions");
+			Assert.assertEquals(theValue, Long.valueOf(3));
+		}
+		finally
+		{
+			theMetrics.unregister(theName);
+		}
+	}
+	
+	@org.junit.Test
+	public void testFuel()
+	{
+		JBehaviorHandle theSpin = interp.lookup("zz/jinterp/SimpleClass", "spin", "(I)I");
+		
+		JFuel theFuel = new JFuel(10000);
+		interp.setFuel(theFuel);
+		try
+		{
+			Assert.assertEquals(theSpin.invokeInt(100), SimpleClass.spin(100));
+			Assert.assertTrue(theFuel.getRemaining() < 10000);
+			
+			// Infinite loop
+			theSpin.invokeInt(-1);
+			Assert.fail();
+		}
+		catch (JFuelExhaustedException e)
+		{
+			Assert.assertTrue(e.getFuel() == theFuel);
+		}
+		finally
+		{
+			interp.setFuel(null);
+		}
+		
+		final int[] theRefuels = new int[1];
+		interp.setFuel(new JFuel(1000, new JFuel.Refueler()
+		{
+			public long refuel(JFuel aFuel)
+			{
+				return theRefuels[0]++ < 3 ? 1000 : 0;
+			}
+		}));
+		try
+		{
+			theSpin.invokeInt(-1);
+			Assert.fail();
+		}
+		catch (JFuelExhaustedException e)
+		{
+			Assert.assertEquals(theRefuels[0], 4);
+		}
+		finally
+		{
+			interp.setFuel(null);
+		}
+	}
+	
+	@org.junit.Test
+	public void testCancellation() throws InterruptedException
+	{
+		// Deadline, immediate abort
+		try
+		{
+			interp.invokeWithDeadline(50, TimeUnit.MILLISECONDS, false, "zz/jinterp/SimpleClass", "spin", "(I)I", null, new JInt(-1));
+			Assert.fail();
+		}
+		catch (JCancelledException e)
+		{
+			Assert.assertTrue(e.getCancellation().isCancelled());
+		}
+		
+		// Explicit cancellation, unwinding through finally handlers only
+		final JCancellation theCancellation = new JCancellation(true);
+		Thread theCanceller = new Thread()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					Thread.sleep(50);
+				}
+				catch (InterruptedException e)
+				{
+				}
+				theCancellation.cancel();
+			}
+		};
+		theCanceller.start();
+		try
+		{
+			interp.invokeCancellable(theCancellation, "zz/jinterp/SimpleClass$Cancelled", "spinWithHandlers", "()I", null);
+			Assert.fail();
+		}
+		catch (JCancelledException e)
+		{
+		}
+		theCanceller.join();
+		Assert.assertEquals(interp.lookup("zz/jinterp/SimpleClass$Cancelled", "getResult", "()I").invokeInt(), 1);
+		
+		// Threads started by the cancelled execution are cancelled too
+		try
+		{
+			interp.invokeWithDeadline(50, TimeUnit.MILLISECONDS, false, "zz/jinterp/SimpleClass", "spinInThread", "()I", null);
+			Assert.fail();
+		}
+		catch (JCancelledException e)
+		{
+		}
+	}
+	
+	@org.junit.Test
+	public void testHeapAccount()
+	{
+		JBehaviorHandle theBuild = interp.lookup("zz/jinterp/SimpleClass$Allocator", "buildOrFail", "(I)I");
+		theBuild.invokeInt(1);
+		
+		JHeapAccount theAccount = new JHeapAccount(10000);
+		interp.setThreadHeapAccount(theAccount);
+		try
+		{
+			Assert.assertEquals(theBuild.invokeInt(100), 100);
+			Assert.assertTrue(theAccount.getAllocated() >= 100*32);
+			Assert.assertTrue(theAccount.getPeak() >= 100*32);
+			
+			Assert.assertEquals(theBuild.invokeInt(10000), -1);
+			// Only the OutOfMemoryError itself can exceed the limit
+			Assert.assertTrue(theAccount.getPeak() < 11000);
+			
+			// Charges of collected objects are released
+			Assert.assertEquals(theBuild.invokeInt(200), 200);
+			
+			// Arrays are charged before they are allocated
+			JBehaviorHandle theAllocate = interp.lookup("zz/jinterp/SimpleClass$Allocator", "allocateOrFail", "(I)I");
+			Assert.assertEquals(theAllocate.invokeInt(10), 20);
+			Assert.assertEquals(theAllocate.invokeInt(Integer.MAX_VALUE), -1);
+		}
+		finally
+		{
+			interp.setThreadHeapAccount(null);
+		}
+	}
+	
+	@org.junit.Test
+	public void testQuickening()
+	{
+		JBehaviorHandle theSum = interp.lookup("zz/jinterp/SimpleClass$Shape", "sumAreas", "(II)I");
+		JMetrics theMetrics = interp.getMetrics();
+		theMetrics.reset();
+		
+		// Instructions are quickened by the first execution, and reused afterwards
+		Assert.assertEquals(theSum.invokeInt(100, 0), 400);
+		Assert.assertEquals(theSum.invokeInt(100, 0), 400);
+		Assert.assertTrue(theMetrics.getInlineCacheHits() >= 198);
+		Assert.assertTrue(theMetrics.getInlineCacheMisses() <= 2);
+		
+		// Alternating receivers defeat the monomorphic cache, but dispatch correctly
+		theMetrics.reset();
+		Assert.assertEquals(theSum.invokeInt(100, 1), 300);
+		Assert.assertTrue(theMetrics.getInlineCacheMisses() >= 50);
+	}
+	
+	@org.junit.Test
+	public void testTypedArithmetic() throws Exception
+	{
+		JBehaviorHandle theCharSum = interp.lookup("zz/jinterp/SimpleClass", "charSum", "(I)I");
+		for(int i=0;i<10;i++) Assert.assertEquals(theCharSum.invokeInt(i), SimpleClass.charSum(i));
+		
+		// theSum*31 is known to be a JInt, the char is not
+		MethodNode theNode = ((JASMBehavior) theCharSum.getBehavior()).getNode();
+		JTypeInference theTypes = new JTypeInference("zz/jinterp/SimpleClass", theNode);
+		int theAdd = 0;
+		while (theNode.instructions.get(theAdd).getOpcode() != Opcodes.IADD) theAdd++;
+		Assert.assertEquals(theTypes.getStackType(theAdd, 0), Type.INT_TYPE);
+		Assert.assertTrue(theTypes.isExactInt(theAdd, 1));
+		Assert.assertFalse(theTypes.isExactInt(theAdd, 0));
+	}
+	
+	@org.junit.Test
+	public void testSuperinstructions() throws IOException
+	{
+		// SimpleClass is prepared with the default superinstructions
+		JBehaviorHandle theFused = interp.lookup("zz/jinterp/SimpleClass", "sumArray", "(I)I");
+		JBehaviorHandle theUnfused;
+		interp.setSuperinstructions(JSuperinstructions.NONE);
+		try
+		{
+			theUnfused = interp.lookup("zz/jinterp/SimpleClass$Sequences", "sumArray", "(I)I");
+		}
+		finally
+		{
+			interp.setSuperinstructions(JSuperinstructions.ALL);
+		}
+		
+		JProfiler theProfiler = new JProfiler();
+		interp.setProfiler(theProfiler);
+		try
+		{
+			Assert.assertEquals(theFused.invokeInt(100), SimpleClass.sumArray(100));
+			Assert.assertEquals(theUnfused.invokeInt(100), SimpleClass.sumArray(100));
+		}
+		finally
+		{
+			interp.setProfiler(null);
+		}
+		
+		// theSum = theSum + v is executed 50 times, and only dispatched once when fused
+		JProfiler.Report theReport = theProfiler.getReport();
+		for (JProfiler.Counters theCounters : theReport.getBehaviors())
+		{
+			if (! "sumArray".equals(theCounters.getBehavior().getName())) continue;
+			MethodNode theNode = ((JASMBehavior) theCounters.getBehavior()).getNode();
+			int theAdd = 0;
+			while (theNode.instructions.get(theAdd).getOpcode() != Opcodes.IADD) theAdd++;
+			boolean theIsFused = theCounters.getBehavior() == theFused.getBehavior();
+			Assert.assertEquals(theCounters.getExecutions(theAdd-2), 50);
+			Assert.assertEquals(theCounters.getExecutions(theAdd), theIsFused ? 0 : 50);
+		}
+		
+		JSequenceMiner theMiner = new JSequenceMiner(4);
+		theMiner.add(theReport);
+		boolean theFound = false;
+		for (JSequenceMiner.Candidate theCandidate : theMiner.getCandidates())
+		{
+			if ("ILOAD;ILOAD;IADD;ISTORE".equals(theCandidate.getSequence()))
+			{
+				// Both methods execute the sequence 50 times
+				Assert.assertEquals(theCandidate.getExecutions(), 100);
+				theFound = true;
+			}
+		}
+		Assert.assertTrue(theFound);
+		
+		StringWriter theWriter = new StringWriter();
+		theMiner.writeCSV(theWriter, 5);
+		Assert.assertTrue(theWriter.toString().startsWith("sequence,length,executions,saved_dispatches\n"));
+	}
+	
+	@org.junit.Test
+	public void testPeephole()
+	{
+		JBehaviorHandle theConstant = interp.lookup("zz/jinterp/SimpleClass", "constant", "()I");
+		Assert.assertEquals(theConstant.invokeInt(), SimpleClass.constant());
+		// LDC 13; IRETURN
+		Assert.assertEquals(((JNormalBehavior) theConstant.getBehavior()).getCodeSize(), 2);
+		
+		JBehaviorHandle thePeephole = interp.lookup("zz/jinterp/SimpleClass", "peephole", "(III)I");
+		JNormalBehavior theBehavior = (JNormalBehavior) thePeephole.getBehavior();
+		Assert.assertTrue(theBehavior.getCodeSize() < theBehavior.getNode().instructions.size());
+		for (int a : new int[] {0, 7})
+		{
+			for (int i=0;i<4;i++)
+			{
+				int b = i & 1;
+				int c = (i >> 1) & 1;
+				Assert.assertEquals(thePeephole.invokeInt(a, b, c), SimpleClass.peephole(a, b, c));
+			}
+		}
+	}
+	
+	@org.junit.Test
+	public void testTrivialMethods()
+	{
+		JBehaviorHandle theDeposit = interp.lookup("zz/jinterp/SimpleClass$Account", "deposit", "(I)I");
+		Assert.assertFalse(((JNormalBehavior) theDeposit.getBehavior()).isTrivial());
+		Assert.assertTrue(((JNormalBehavior) interp.lookup("zz/jinterp/SimpleClass", "foo", "(I)I").getBehavior()).isTrivial());
+		JClass theAccount = interp.getClass("zz/jinterp/SimpleClass$Account");
+		Assert.assertTrue(((JNormalBehavior) theAccount.getBehavior("getBalance", "()I")).isTrivial());
+		Assert.assertTrue(((JNormalBehavior) theAccount.getBehavior("setBalance", "(I)V")).isTrivial());
+		
+		JMetrics theMetrics = interp.getMetrics();
+		theMetrics.reset();
+		Assert.assertEquals(theDeposit.invokeInt(10), SimpleClass.Account.deposit(10));
+		// Each iteration calls the getter, foo and the setter
+		Assert.assertTrue(theMetrics.getInlinedInvocations() >= 30);
+		
+		JFuel theInlinedFuel = new JFuel(1000000);
+		interp.setFuel(theInlinedFuel);
+		try
+		{
+			theDeposit.invokeInt(10);
+		}
+		finally
+		{
+			interp.setFuel(null);
+		}
+		
+		// Invocations are not inlined while profiling
+		JProfiler theProfiler = new JProfiler();
+		JFuel theFuel = new JFuel(1000000);
+		interp.setProfiler(theProfiler);
+		interp.setFuel(theFuel);
+		try
+		{
+			theMetrics.reset();
+			Assert.assertEquals(theDeposit.invokeInt(10), SimpleClass.Account.deposit(10));
+			Assert.assertEquals(theMetrics.getInlinedInvocations(), 0);
+		}
+		finally
+		{
+			interp.setProfiler(null);
+			interp.setFuel(null);
+		}
+		
+		// Inlined invocations are charged as the others
+		Assert.assertEquals(theInlinedFuel.getRemaining(), theFuel.getRemaining());
+	}
+	
+	@org.junit.Test
+	public void testSnapshot()
+	{
+		JBehaviorHandle theSet = interp.lookup("zz/jinterp/SimpleClass", "set", "(I)V");
+		JBehaviorHandle theGet = interp.lookup("zz/jinterp/SimpleClass", "get", "()I");
+		
+		theSet.invoke(null, new JInt(1));
+		JHeap theSnapshot = interp.snapshot();
+		JHeap theHeap = interp.getHeap();
+		
+		JHeap theFork = interp.fork(theSnapshot);
+		try
+		{
+			interp.setHeap(theFork);
+			Assert.assertEquals(theGet.invokeInt(), 2);
+			theSet.invoke(null, new JInt(5));
+			Assert.assertEquals(theGet.invokeInt(), 10);
+		}
+		finally
+		{
+			interp.setHeap(theHeap);
+		}
+		Assert.assertEquals(theGet.invokeInt(), 2);
+		theFork.discard();
+		
+		// The versions of a discarded snapshot remain visible from its forks
+		theSet.invoke(null, new JInt(3));
+		theSnapshot = interp.snapshot();
+		theHeap = interp.getHeap();
+		theFork = interp.fork(theSnapshot);
+		theSnapshot.discard();
+		theSet.invoke(null, new JInt(4));
+		try
+		{
+			interp.setHeap(theFork);
+			Assert.assertEquals(theGet.invokeInt(), 6);
+		}
+		finally
+		{
+			interp.setHeap(theHeap);
+		}
+		Assert.assertEquals(theGet.invokeInt(), 8);
+		theFork.discard();
+	}
+	
+	@org.junit.Test
+	public void testConcurrentForks() throws Exception
+	{
+		final JBehaviorHandle theSet = interp.lookup("zz/jinterp/SimpleClass", "set", "(I)V");
+		final JBehaviorHandle theGet = interp.lookup("zz/jinterp/SimpleClass", "get", "()I");
+		
+		theSet.invoke(null, new JInt(1));
+		final JHeap theSnapshot = interp.snapshot();
+		
+		final int[] theResults = new int[4];
+		Thread[] theThreads = new Thread[theResults.length];
+		for (int i=0;i<theThreads.length;i++)
+		{
+			final int theIndex = i;
+			theThreads[i] = new Thread()
+			{
+				@Override
+				public void run()
+				{
+					JHeap theFork = interp.fork(theSnapshot);
+					interp.setThreadHeap(theFork);
+					try
+					{
+						theSet.invoke(null, new JInt(theIndex+10));
+						int theSum = 0;
+						for (int j=0;j<1000;j++) theSum += theGet.invokeInt();
+						theResults[theIndex] = theSum;
+					}
+					finally
+					{
+						interp.setThreadHeap(null);
+						theFork.discard();
+					}
+				}
+			};
+			theThreads[i].start();
+		}
+		for (Thread theThread : theThreads) theThread.join();
+		
+		for (int i=0;i<theResults.length;i++) Assert.assertEquals(1000*2*(i+10), theResults[i]);
+		Assert.assertEquals(theGet.invokeInt(), 2);
+	}
+	
+	@org.junit.Test
+	public void testSnapshotClassLoading()
+	{
+		JHeap theSnapshot = interp.snapshot();
+		JHeap theHeap = interp.getHeap();
+		
+		// The class is loaded and initialized in the child of the snapshot
+		JBehaviorHandle theNext = interp.lookup("zz/jinterp/SimpleClass$Forked", "next", "()I");
+		Assert.assertEquals(theNext.invokeInt(), 7);
+		Assert.assertEquals(theNext.invokeInt(), 8);
+		
+		// A sibling fork initializes it again
+		JHeap theFork = interp.fork(theSnapshot);
+		try
+		{
+			interp.setHeap(theFork);
+			Assert.assertEquals(theNext.invokeInt(), 7);
+		}
+		finally
+		{
+			interp.setHeap(theHeap);
+		}
+		Assert.assertEquals(theNext.invokeInt(), 9);
+		theFork.discard();
+	}
 }
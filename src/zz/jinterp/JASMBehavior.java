@@ -32,6 +32,7 @@ Inc. MD5 Message-Digest Algorithm".
 package zz.jinterp;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -49,6 +50,12 @@ public abstract class JASMBehavior extends JBehavior
 	private final MethodNode itsMethodNode;
 	private final int itsArgCount;
 	private final List<TryCatchBlock> itsTryCatchBlocks = new ArrayList<TryCatchBlock>();
+	
+	/**
+	 * For each instruction pointer, the try-catch blocks that cover it, in table order.
+	 */
+	private final TryCatchBlock[][] itsHandlerTable;
+	
 	private final Map<LabelNode, Integer> itsLabelToIP = new HashMap<LabelNode, Integer>();
 
 	public JASMBehavior(JClass aClass, MethodNode aMethodNode)
@@ -58,7 +65,6 @@ public abstract class JASMBehavior extends JBehavior
 		Type[] theArgumentTypes = Type.getArgumentTypes(itsMethodNode.desc);
 		itsArgCount = theArgumentTypes.length;
 		
-
 		// Map labels to instruction pointers
 		for(int i=0;i<getNode().instructions.size();i++)
 		{
@@ -76,6 +82,33 @@ public abstract class JASMBehavior extends JBehavior
 					getLabelIP(theBlock.handler),
 					theBlock.type));
 		}
+		
+		itsHandlerTable = createHandlerTable(getNode().instructions.size(), itsTryCatchBlocks);
+	}
+	
+	private static final TryCatchBlock[] NO_HANDLERS = {};
+	
+	private static TryCatchBlock[][] createHandlerTable(int aSize, List<TryCatchBlock> aBlocks)
+	{
+		TryCatchBlock[][] theTable = new TryCatchBlock[aSize][];
+		List<TryCatchBlock> theHandlers = new ArrayList<TryCatchBlock>();
+		TryCatchBlock[] thePrevious = NO_HANDLERS;
+		for(int i=0;i<aSize;i++)
+		{
+			theHandlers.clear();
+			for (TryCatchBlock theBlock : aBlocks)
+			{
+				if (i >= theBlock.start && i < theBlock.end) theHandlers.add(theBlock);
+			}
+			
+			// Consecutive instructions usually share the same handlers
+			if (! theHandlers.equals(Arrays.asList(thePrevious))) 
+			{
+				thePrevious = theHandlers.toArray(new TryCatchBlock[theHandlers.size()]);
+			}
+			theTable[i] = thePrevious;
+		}
+		return theTable;
 	}
 	
 	protected int getLabelIP(LabelNode aNode)
@@ -88,6 +121,15 @@ public abstract class JASMBehavior extends JBehavior
 		return itsTryCatchBlocks;
 	}
 	
+	/**
+	 * Returns the try-catch blocks that cover the given instruction, in the order 
+	 * in which they must be tried.
+	 */
+	public TryCatchBlock[] getHandlers(int aIP)
+	{
+		return itsHandlerTable[aIP];
+	}
+	
 	public MethodNode getNode()
 	{
 		return itsMethodNode;
@@ -105,6 +147,12 @@ public abstract class JASMBehavior extends JBehavior
 		return (itsMethodNode.access & Opcodes.ACC_PRIVATE) != 0;
 	}
 	
+	@Override
+	public boolean isStatic()
+	{
+		return (itsMethodNode.access & Opcodes.ACC_STATIC) != 0;
+	}
+	
 	@Override
 	public int getArgCount()
 	{
@@ -122,6 +170,11 @@ public abstract class JASMBehavior extends JBehavior
 		public final int handler;
 		public final String type;
 		
+		/**
+		 * The resolved catch type, null until the first match attempt.
+		 */
+		private JClass itsCatchClass;
+		
 		public TryCatchBlock(int aStart, int aEnd, int aHandler, String aType)
 		{
 			start = aStart;
@@ -129,5 +182,23 @@ public abstract class JASMBehavior extends JBehavior
 			handler = aHandler;
 			type = aType;
 		}
+		
+		/**
+		 * Whether this block handles the given exception.
+		 * Blocks without a type (finally) handle all exceptions.
+		 */
+		public boolean catches(JInstance aException)
+		{
+			if (type == null) return true;
+			
+			JClass theExceptionClass = aException.getType();
+			JClass theCatchClass = itsCatchClass;
+			if (theCatchClass == null)
+			{
+				theCatchClass = theExceptionClass.getInterpreter().getClass(type);
+				itsCatchClass = theCatchClass;
+			}
+			return theExceptionClass.isSubclassOf(theCatchClass);
+		}
 	}
 }
@@ -0,0 +1,20 @@
+/*
+ * Created on Oct 19, 2026
+ */
+package zz.jinterp;
+
+/**
+ * Thrown to stop interpreted execution. Unlike interpreted exceptions, it 
+ * cannot be caught by interpreted code: it unwinds all the interpreted frames,
+ * without running their handlers, up to the host code that started them.
+ * @author gpothier
+ */
+public class JAbortedException extends RuntimeException
+{
+	private static final long serialVersionUID = 1L;
+
+	public JAbortedException(String aMessage)
+	{
+		super(aMessage);
+	}
+}
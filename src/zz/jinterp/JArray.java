@@ -33,10 +33,19 @@ package zz.jinterp;
 
 public abstract class JArray extends JObject
 {
+	private JMonitor itsMonitor;
+	
 	public abstract int getSize();
 	public abstract JObject get(int aIndex);
 	public abstract void set(int aIndex, JObject aValue);
 
+	@Override
+	public synchronized JMonitor getMonitor()
+	{
+		if (itsMonitor == null) itsMonitor = new JMonitor();
+		return itsMonitor;
+	}
+
 	@Override
 	public JType getType()
 	{
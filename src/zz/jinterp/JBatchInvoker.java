@@ -0,0 +1,235 @@
+/*
+ * Created on Oct 19, 2026
+ */
+package zz.jinterp;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Evaluates the same behavior over many argument tuples using a pool of worker threads.
+ * All the workers share the interpreter, and therefore its loaded classes.
+ * A failure of an item does not abort the batch: it is reported in the
+ * corresponding {@link Result}.
+ * @author gpothier
+ */
+public class JBatchInvoker
+{
+	private final JBehaviorHandle itsHandle;
+	private final JObject itsTarget;
+	private final ExecutorService itsExecutor;
+	private final int itsMaxPending;
+
+	/**
+	 * Creates a batch invoker that uses its own pool of worker threads.
+	 * The pool should be released with {@link #shutdown()}.
+	 * @param aTarget The target of the invocations, or null for static methods.
+	 */
+	public JBatchInvoker(
+			JInterpreter aInterpreter,
+			String aClassName,
+			String aMethodName,
+			String aSignature,
+			JObject aTarget,
+			int aThreads)
+	{
+		this(aInterpreter, aClassName, aMethodName, aSignature, aTarget, Executors.newFixedThreadPool(aThreads), aThreads);
+	}
+
+	/**
+	 * Creates a batch invoker that uses the given executor.
+	 * @param aTarget The target of the invocations, or null for static methods.
+	 * @param aParallelism The expected parallelism of the executor, used to bound
+	 * the number of pending items.
+	 */
+	public JBatchInvoker(
+			JInterpreter aInterpreter,
+			String aClassName,
+			String aMethodName,
+			String aSignature,
+			JObject aTarget,
+			ExecutorService aExecutor,
+			int aParallelism)
+	{
+		itsHandle = aInterpreter.lookup(aClassName, aMethodName, aSignature);
+		itsTarget = aTarget;
+		itsExecutor = aExecutor;
+		itsMaxPending = 2*aParallelism;
+
+		// Initialize the class once so that workers do not contend on it
+		itsHandle.getBehavior().getDeclaringClass().clInit(null);
+	}
+
+	/**
+	 * Evaluates all the given argument tuples.
+	 * @return The results, in the same order as the arguments.
+	 */
+	public List<Result> invokeAll(List<JObject[]> aArgs)
+	{
+		List<Future<Result>> theFutures = new ArrayList<Future<Result>>(aArgs.size());
+		for (int i=0;i<aArgs.size();i++)
+		{
+			theFutures.add(itsExecutor.submit(new Task(i, aArgs.get(i))));
+		}
+
+		List<Result> theResults = new ArrayList<Result>(aArgs.size());
+		for (Future<Result> theFuture : theFutures) theResults.add(get(theFuture));
+		return theResults;
+	}
+
+	/**
+	 * Evaluates the argument tuples provided by the given iterator, and
+	 * passes each result to the listener as soon as it is available.
+	 * The listener is called in the current thread.
+	 * The number of pending items is bounded, so that the iterator can
+	 * lazily produce a large number of tuples.
+	 */
+	public void invokeAll(Iterator<JObject[]> aArgs, Listener aListener)
+	{
+		CompletionService<Result> theService = new ExecutorCompletionService<Result>(itsExecutor);
+		int theIndex = 0;
+		int thePending = 0;
+		while (aArgs.hasNext())
+		{
+			if (thePending >= itsMaxPending)
+			{
+				aListener.completed(take(theService));
+				thePending--;
+			}
+			theService.submit(new Task(theIndex++, aArgs.next()));
+			thePending++;
+		}
+
+		while (thePending > 0)
+		{
+			aListener.completed(take(theService));
+			thePending--;
+		}
+	}
+
+	/**
+	 * Releases the worker threads.
+	 */
+	public void shutdown()
+	{
+		itsExecutor.shutdown();
+	}
+
+	private static Result take(CompletionService<Result> aService)
+	{
+		try
+		{
+			return get(aService.take());
+		}
+		catch (InterruptedException e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static Result get(Future<Result> aFuture)
+	{
+		try
+		{
+			return aFuture.get();
+		}
+		catch (InterruptedException e)
+		{
+			throw new RuntimeException(e);
+		}
+		catch (ExecutionException e)
+		{
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	private class Task implements Callable<Result>
+	{
+		private final int itsIndex;
+		private final JObject[] itsArgs;
+
+		public Task(int aIndex, JObject[] aArgs)
+		{
+			itsIndex = aIndex;
+			itsArgs = aArgs;
+		}
+
+		public Result call()
+		{
+			try
+			{
+				JObject theValue = itsHandle.invoke(itsTarget, itsArgs);
+				return new Result(itsIndex, theValue, null);
+			}
+			catch (Throwable e)
+			{
+				// Errors such as StackOverflowError only fail their own item
+				return new Result(itsIndex, null, e);
+			}
+		}
+	}
+
+	/**
+	 * The outcome of the evaluation of one argument tuple.
+	 * @author gpothier
+	 */
+	public static final class Result
+	{
+		private final int itsIndex;
+		private final JObject itsValue;
+		private final Throwable itsFailure;
+
+		public Result(int aIndex, JObject aValue, Throwable aFailure)
+		{
+			itsIndex = aIndex;
+			itsValue = aValue;
+			itsFailure = aFailure;
+		}
+
+		/**
+		 * Index of the argument tuple in the input.
+		 */
+		public int getIndex()
+		{
+			return itsIndex;
+		}
+
+		/**
+		 * The value returned by the behavior, if the evaluation succeeded.
+		 */
+		public JObject getValue()
+		{
+			return itsValue;
+		}
+
+		/**
+		 * The exception that aborted the evaluation, or null.
+		 */
+		public Throwable getFailure()
+		{
+			return itsFailure;
+		}
+
+		public boolean isFailed()
+		{
+			return itsFailure != null;
+		}
+	}
+
+	/**
+	 * Receives results as they are completed.
+	 * @author gpothier
+	 */
+	public static interface Listener
+	{
+		public void completed(Result aResult);
+	}
+}
@@ -53,6 +53,8 @@ public abstract class JBehavior extends JMember
 	
 	public abstract boolean isPrivate();
 	
+	public abstract boolean isStatic();
+	
 	@Override
 	public String toString()
 	{
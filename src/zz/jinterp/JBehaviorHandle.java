@@ -0,0 +1,194 @@
+/*
+ * Created on Oct 19, 2026
+ */
+package zz.jinterp;
+
+import org.objectweb.asm.Type;
+
+import zz.jinterp.JNormalBehavior.ExceptionThrown;
+import zz.jinterp.JPrimitive.JInt;
+import zz.jinterp.JPrimitive.JLong;
+
+/**
+ * A pre-resolved entry point into the interpreter, obtained through
+ * {@link JInterpreter#lookup(String, String, String)}.
+ * Handles are immutable and can be shared between threads. They avoid the
+ * class and behavior lookups of {@link JInterpreter#invoke}, and the typed
+ * entry points avoid boxing the arguments through {@link JInterpreter#toJObjects(Object...)}.
+ * @author gpothier
+ */
+public final class JBehaviorHandle
+{
+	private final JBehavior itsBehavior;
+	private final String itsName;
+	private final String itsSignature;
+	private final int itsArgCount;
+	private final boolean itsStatic;
+
+	/**
+	 * Whether the behavior takes only ints and returns an int.
+	 */
+	private final boolean itsIntSignature;
+
+	/**
+	 * Whether the behavior takes only longs and returns a long.
+	 */
+	private final boolean itsLongSignature;
+
+	JBehaviorHandle(JBehavior aBehavior, String aName, String aSignature)
+	{
+		itsBehavior = aBehavior;
+		itsName = aName;
+		itsSignature = aSignature;
+		itsArgCount = aBehavior.getArgCount();
+		itsStatic = aBehavior.isStatic();
+		itsIntSignature = hasSignature(aSignature, Type.INT_TYPE);
+		itsLongSignature = hasSignature(aSignature, Type.LONG_TYPE);
+	}
+
+	private static boolean hasSignature(String aSignature, Type aType)
+	{
+		if (! aType.equals(Type.getReturnType(aSignature))) return false;
+		for (Type theType : Type.getArgumentTypes(aSignature)) if (! aType.equals(theType)) return false;
+		return true;
+	}
+
+	public JBehavior getBehavior()
+	{
+		return itsBehavior;
+	}
+
+	public int getArgCount()
+	{
+		return itsArgCount;
+	}
+
+	public boolean isStatic()
+	{
+		return itsStatic;
+	}
+
+	/**
+	 * Invokes the behavior. For instance methods the actual behavior
+	 * is selected according to the type of the target.
+	 * @param aThis Context object, null for static methods
+	 */
+	public JObject invoke(JObject aThis, JObject... aArgs)
+	{
+		if (aArgs.length != itsArgCount) throw new IllegalArgumentException("Expected "+itsArgCount+" arguments, got "+aArgs.length);
+		return getTargetBehavior(aThis).invoke(null, aThis, aArgs);
+	}
+
+	/**
+	 * Selects the behavior to invoke on the given target, as invokevirtual would.
+	 * @throws IllegalArgumentException If the target is not an instance of the declaring class.
+	 */
+	private JBehavior getTargetBehavior(JObject aThis)
+	{
+		if (itsStatic) return itsBehavior;
+		
+		JClass theDeclaringClass = itsBehavior.getDeclaringClass();
+		if (aThis == null) 
+		{
+			throw new ExceptionThrown(theDeclaringClass.getInterpreter().new_NullPointerException(null, "null"));
+		}
+		
+		if (! (aThis instanceof JInstance))
+		{
+			// Arrays only have the methods of Object
+			if (aThis instanceof JArray && "java/lang/Object".equals(theDeclaringClass.getName())) return itsBehavior;
+			throw new IllegalArgumentException("Cannot invoke "+itsBehavior+" on "+aThis);
+		}
+
+		JClass theClass = ((JInstance) aThis).getType();
+		if (theClass == theDeclaringClass) return itsBehavior;
+		
+		boolean theInstance = theDeclaringClass.isInterface() ? 
+				theDeclaringClass.isAssignableFrom(theClass) 
+				: theClass.isSubclassOf(theDeclaringClass);
+		if (! theInstance) 
+		{
+			throw new IllegalArgumentException("Cannot invoke "+itsBehavior+" on an instance of "+theClass.getName());
+		}
+
+		JBehavior theBehavior = theClass.getVirtualBehavior(itsName, itsSignature);
+		if (theBehavior == null) 
+		{
+			throw new ExceptionThrown(theDeclaringClass.getInterpreter().new_Exception(
+					"AbstractMethodError", 
+					null, 
+					theClass.getName()+"."+itsName+itsSignature));
+		}
+		return theBehavior;
+	}
+
+	private void checkInt(int aArgCount)
+	{
+		if (! itsStatic || ! itsIntSignature || itsArgCount != aArgCount)
+			throw new IllegalStateException("Not a static method with signature "+aArgCount+"*int -> int: "+itsBehavior);
+	}
+
+	private void checkLong(int aArgCount)
+	{
+		if (! itsStatic || ! itsLongSignature || itsArgCount != aArgCount)
+			throw new IllegalStateException("Not a static method with signature "+aArgCount+"*long -> long: "+itsBehavior);
+	}
+
+	private static int intResult(JObject aResult)
+	{
+		return ((JInt) aResult).v;
+	}
+
+	private static long longResult(JObject aResult)
+	{
+		return ((JLong) aResult).v;
+	}
+
+	public int invokeInt()
+	{
+		checkInt(0);
+		return intResult(itsBehavior.invoke(null, null, JInterpreter.NOARGS));
+	}
+
+	public int invokeInt(int a0)
+	{
+		checkInt(1);
+		return intResult(itsBehavior.invoke(null, null, new JInt(a0)));
+	}
+
+	public int invokeInt(int a0, int a1)
+	{
+		checkInt(2);
+		return intResult(itsBehavior.invoke(null, null, new JInt(a0), new JInt(a1)));
+	}
+
+	public int invokeInt(int a0, int a1, int a2)
+	{
+		checkInt(3);
+		return intResult(itsBehavior.invoke(null, null, new JInt(a0), new JInt(a1), new JInt(a2)));
+	}
+
+	public long invokeLong()
+	{
+		checkLong(0);
+		return longResult(itsBehavior.invoke(null, null, JInterpreter.NOARGS));
+	}
+
+	public long invokeLong(long a0)
+	{
+		checkLong(1);
+		return longResult(itsBehavior.invoke(null, null, new JLong(a0)));
+	}
+
+	public long invokeLong(long a0, long a1)
+	{
+		checkLong(2);
+		return longResult(itsBehavior.invoke(null, null, new JLong(a0), new JLong(a1)));
+	}
+
+	@Override
+	public String toString()
+	{
+		return "Handle to "+itsBehavior;
+	}
+}
@@ -0,0 +1,149 @@
+/*
+ * Created on Oct 19, 2026
+ */
+package zz.jinterp;
+
+import java.util.concurrent.TimeUnit;
+
+import zz.jinterp.JNormalBehavior.ExceptionThrown;
+import zz.jinterp.JNormalBehavior.JFrame;
+
+/**
+ * A cancellation token for an invocation started with 
+ * {@link JInterpreter#invokeCancellable(JCancellation, String, String, String, JObject, JObject...)}.
+ * The token is cancelled explicitly by {@link #cancel()}, from any thread, or when
+ * its deadline passes. Interpreted frames poll it when they take a backward branch
+ * and when they start.
+ * <p>
+ * Cancelled executions are stopped in one of two ways:
+ * <ul>
+ * <li>Immediately: a {@link JCancelledException} unwinds the interpreted frames
+ * without running any of their handlers.</li>
+ * <li>By unwinding: an interpreted {@link ThreadDeath} is thrown, that only
+ * finally handlers can catch. Handlers then run to completion, as polls do not
+ * stop execution again. The invocation finally ends with a {@link JCancelledException}.</li>
+ * </ul>
+ * Interpreted threads started by a cancellable execution get a token derived
+ * from its token (see {@link #JCancellation(JCancellation)}), so that they are 
+ * stopped as well.
+ * @author gpothier
+ */
+public class JCancellation
+{
+	/**
+	 * Number of polls between two reads of the clock.
+	 */
+	private static final int DEADLINE_CHECK_INTERVAL = 1024;
+	
+	/**
+	 * The token this token was derived from, or null.
+	 */
+	private final JCancellation itsParent;
+	
+	private final boolean itsUnwind;
+	private final boolean itsHasDeadline;
+	private final long itsDeadline;
+	
+	private volatile boolean itsCancelled;
+	
+	/**
+	 * Polls left before the next read of the clock.
+	 */
+	private int itsCountdown;
+	
+	/**
+	 * The interpreted exception thrown to unwind the execution, if any.
+	 * Only accessed by the interpreted thread.
+	 */
+	private JInstance itsSignal;
+	private boolean itsRaised;
+	
+	/**
+	 * Creates a token without deadline.
+	 * @param aUnwind Whether cancelled executions run their finally handlers.
+	 */
+	public JCancellation(boolean aUnwind)
+	{
+		itsParent = null;
+		itsUnwind = aUnwind;
+		itsHasDeadline = false;
+		itsDeadline = 0;
+	}
+	
+	/**
+	 * Creates a token that is cancelled after the given time.
+	 * @param aUnwind Whether cancelled executions run their finally handlers.
+	 */
+	public JCancellation(long aTimeout, TimeUnit aUnit, boolean aUnwind)
+	{
+		itsParent = null;
+		itsUnwind = aUnwind;
+		itsHasDeadline = true;
+		itsDeadline = System.nanoTime() + aUnit.toNanos(aTimeout);
+	}
+	
+	/**
+	 * Creates a token for another thread, that has the same deadline as the given
+	 * token and is cancelled when it is. Tokens cannot be shared between threads,
+	 * as the state of their polls is not synchronized.
+	 */
+	JCancellation(JCancellation aParent)
+	{
+		itsParent = aParent;
+		itsUnwind = aParent.itsUnwind;
+		itsHasDeadline = aParent.itsHasDeadline;
+		itsDeadline = aParent.itsDeadline;
+	}
+	
+	public void cancel()
+	{
+		itsCancelled = true;
+	}
+	
+	public boolean isCancelled()
+	{
+		if (! itsCancelled && itsHasDeadline && System.nanoTime() - itsDeadline >= 0) itsCancelled = true;
+		if (! itsCancelled && itsParent != null && itsParent.isCancelled()) itsCancelled = true;
+		return itsCancelled;
+	}
+	
+	public boolean isUnwind()
+	{
+		return itsUnwind;
+	}
+	
+	/**
+	 * Called by interpreted frames at safepoints.
+	 * Stops the execution if the token is cancelled.
+	 */
+	void poll(JInterpreter aInterpreter, JFrame aFrame)
+	{
+		if (! itsCancelled)
+		{
+			if (itsParent != null && itsParent.itsCancelled) itsCancelled = true;
+			else
+			{
+				if (! itsHasDeadline || --itsCountdown > 0) return;
+				itsCountdown = DEADLINE_CHECK_INTERVAL;
+				if (System.nanoTime() - itsDeadline < 0) return;
+				itsCancelled = true;
+			}
+		}
+		
+		if (! itsUnwind) throw new JCancelledException(this);
+		if (itsRaised) return;
+		
+		// Polls of the frames that create the signal must not raise it again
+		itsRaised = true;
+		itsSignal = aInterpreter.instantiate(aFrame, "java/lang/ThreadDeath", "()V");
+		throw new ExceptionThrown(itsSignal);
+	}
+	
+	/**
+	 * Whether the given exception is the one that unwinds a cancelled execution.
+	 */
+	boolean isSignal(JInstance aException)
+	{
+		return itsSignal != null && itsSignal == aException;
+	}
+}
@@ -0,0 +1,26 @@
+/*
+ * Created on Oct 19, 2026
+ */
+package zz.jinterp;
+
+/**
+ * Thrown when an interpreted execution is stopped by a {@link JCancellation}.
+ * @author gpothier
+ */
+public class JCancelledException extends JAbortedException
+{
+	private static final long serialVersionUID = 1L;
+	
+	private final JCancellation itsCancellation;
+
+	public JCancelledException(JCancellation aCancellation)
+	{
+		super("Execution cancelled");
+		itsCancellation = aCancellation;
+	}
+	
+	public JCancellation getCancellation()
+	{
+		return itsCancellation;
+	}
+}
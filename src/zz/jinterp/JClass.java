@@ -51,16 +51,35 @@ public abstract class JClass extends JType
 	private final JClass itsSuperclass;
 	private final JClass[] itsInterfaces;
 	
+	/**
+	 * This class and its superclasses, indexed by depth (the root class is at 0).
+	 */
+	private JClass[] itsSuperclassDisplay;
+	
 	private final Map<String, JBehavior> itsBehaviors = new HashMap<String, JBehavior>();
 	private final Map<String, JField> itsFields = new HashMap<String, JField>();
 	
-	private boolean itsClInitDone = false;
+	/**
+	 * Whether <clinit> was executed, for each heap.
+	 */
+	private final JHeap.Cell<Boolean> itsClInitDone;
+	
+	/**
+	 * The host thread that is currently running <clinit>, if any.
+	 */
+	private Thread itsClInitThread;
+	
+	/**
+	 * Estimated size of instances, computed when first needed.
+	 */
+	private long itsInstanceSize = -1;
 	
 	protected JClass(JInterpreter aInterpreter, JClass aSuperClass, JClass[] aInterfaces)
 	{
 		itsInterpreter = aInterpreter;
 		itsSuperclass = aSuperClass;
 		itsInterfaces = aInterfaces;
+		itsClInitDone = new JHeap.ValueCell<Boolean>(aInterpreter.getHeap(), false);
 	}
 
 	/**
@@ -76,19 +95,40 @@ public abstract class JClass extends JType
 	
 	/**
 	 * Calls <clinit> on this class if it exists.
+	 * Other threads that need the class block until initialization completes,
+	 * while recursive requests from the initializing thread return immediately.
 	 */
 	public void clInit(JFrame aParentFrame)
 	{
-		if (itsClInitDone) return;
-		itsClInitDone = true;
-		JBehavior theBehavior = getBehavior(getBehaviorKey("<clinit>", "()V"));
-		if (theBehavior != null) 
+		JHeap theHeap = getInterpreter().getHeap();
+		if (itsClInitDone.get(theHeap)) return;
+		synchronized (this)
 		{
-			theBehavior.invoke(aParentFrame, null);
+			if (itsClInitDone.get(theHeap) || itsClInitThread == Thread.currentThread()) return;
+			itsClInitThread = Thread.currentThread();
+			try
+			{
+				JBehavior theBehavior = getBehavior(getBehaviorKey("<clinit>", "()V"));
+				if (theBehavior != null) 
+				{
+					theBehavior.invoke(aParentFrame, null);
+				}
+			}
+			finally
+			{
+				itsClInitThread = null;
+				itsClInitDone.set(theHeap, true);
+			}
 		}
 	}
 	
-
+	/**
+	 * Whether <clinit> completed in the given heap.
+	 */
+	public boolean isInitialized(JHeap aHeap)
+	{
+		return itsClInitDone.get(aHeap);
+	}
 	
 	public abstract String getName();
 	
@@ -139,9 +179,20 @@ public abstract class JClass extends JType
 			theClass = theClass.getSuperclass();
 		}
 		
+		itsInterpreter.charge(null, theInstance, getInstanceSize());
 		return theInstance;
 	}
 	
+	/**
+	 * Returns the estimated size of instances of this class, 
+	 * see {@link JHeapAccount#getInstanceSize(JClass)}.
+	 */
+	public long getInstanceSize()
+	{
+		if (itsInstanceSize < 0) itsInstanceSize = JHeapAccount.getInstanceSize(this);
+		return itsInstanceSize;
+	}
+	
 	protected void putBehavior(String aKey, JBehavior aBehavior)
 	{
 		itsBehaviors.put(aKey, aBehavior);
@@ -158,6 +209,12 @@ public abstract class JClass extends JType
 				return (aAccess & Opcodes.ACC_PRIVATE) != 0;
 			}
 			
+			@Override
+			public boolean isStatic()
+			{
+				return (aAccess & Opcodes.ACC_STATIC) != 0;
+			}
+			
 			@Override
 			public int getArgCount()
 			{
@@ -243,6 +300,38 @@ public abstract class JClass extends JType
 		return null;
 	}
 	
+	private JClass[] getSuperclassDisplay()
+	{
+		JClass[] theDisplay = itsSuperclassDisplay;
+		if (theDisplay == null)
+		{
+			if (itsSuperclass == null) 
+			{
+				theDisplay = new JClass[] {this};
+			}
+			else
+			{
+				JClass[] theSuperDisplay = itsSuperclass.getSuperclassDisplay();
+				theDisplay = new JClass[theSuperDisplay.length+1];
+				System.arraycopy(theSuperDisplay, 0, theDisplay, 0, theSuperDisplay.length);
+				theDisplay[theSuperDisplay.length] = this;
+			}
+			itsSuperclassDisplay = theDisplay;
+		}
+		return theDisplay;
+	}
+	
+	/**
+	 * Whether this class is the given class or one of its subclasses, 
+	 * in constant time. Interfaces are not taken into account.
+	 */
+	public boolean isSubclassOf(JClass aClass)
+	{
+		JClass[] theDisplay = getSuperclassDisplay();
+		int theDepth = aClass.getSuperclassDisplay().length-1;
+		return theDepth < theDisplay.length && theDisplay[theDepth] == aClass;
+	}
+	
 	/**
 	 * Same semantics as {@link Class#isAssignableFrom(Class)}
 	 */
@@ -3,6 +3,7 @@
  */
 package zz.jinterp;
 
+import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.tree.ClassNode;
 
 import zz.jinterp.JNormalBehavior.JFrame;
@@ -15,7 +16,7 @@ public class JClass_java_io_FileSystem extends JNormalClass
 	{
 		super(aInterpreter, aNode);
 		
-		putBehavior("getFileSystem", "()Ljava/io/FileSystem;", 0, new Invocable()
+		putBehavior("getFileSystem", "()Ljava/io/FileSystem;", Opcodes.ACC_STATIC, new Invocable()
 		{
 			@Override
 			public JObject invoke(JFrame aParentFrame, JObject aTarget, JObject... aArgs)
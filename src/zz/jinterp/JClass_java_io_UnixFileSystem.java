@@ -3,6 +3,7 @@
  */
 package zz.jinterp;
 
+import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.tree.ClassNode;
 
 import zz.jinterp.JNormalBehavior.JFrame;
@@ -15,7 +16,7 @@ public class JClass_java_io_UnixFileSystem extends JNormalClass
 	{
 		super(aInterpreter, aNode);
 		
-		putBehavior("initIDs", "()V", 0, new Invocable()
+		putBehavior("initIDs", "()V", Opcodes.ACC_STATIC, new Invocable()
 		{
 			@Override
 			public JObject invoke(JFrame aParentFrame, JObject aTarget, JObject... aArgs)
@@ -31,8 +31,10 @@ Inc. MD5 Message-Digest Algorithm".
 */
 package zz.jinterp;
 
+import zz.jinterp.JNormalBehavior.ExceptionThrown;
 import zz.jinterp.JNormalBehavior.JFrame;
 import zz.jinterp.JPrimitive.JInt;
+import zz.jinterp.JPrimitive.JLong;
 
 
 public class JClass_java_lang_Object extends JReflectiveClass
@@ -87,4 +89,47 @@ public class JClass_java_lang_Object extends JReflectiveClass
 		int theCode = System.identityHashCode(aTarget);
 		return new JInt(theCode);
 	}
+	
+	/**
+	 * Returns the monitor of the target, provided it is owned by the current thread.
+	 */
+	private JMonitor getOwnedMonitor(JFrame aParentFrame, JInstance aTarget)
+	{
+		JMonitor theMonitor = aTarget.getMonitor();
+		if (! theMonitor.isHeldByCurrentThread()) throw new ExceptionThrown(getInterpreter().new_Exception(
+				"IllegalMonitorStateException", 
+				aParentFrame, 
+				"current thread not owner"));
+		return theMonitor;
+	}
+	
+	public void __wait(long timeout) {}
+	public JObject _wait(JFrame aParentFrame, JInstance aTarget, JObject[] aArgs)
+	{
+		JLong theTimeout = (JLong) aArgs[0];
+		JMonitor theMonitor = getOwnedMonitor(aParentFrame, aTarget);
+		try
+		{
+			theMonitor.await(theTimeout.v);
+		}
+		catch (InterruptedException e)
+		{
+			throw new ExceptionThrown(getInterpreter().new_Exception("InterruptedException", aParentFrame, "wait"));
+		}
+		return JPrimitive.VOID;
+	}
+	
+	public void __notify() {}
+	public JObject _notify(JFrame aParentFrame, JInstance aTarget, JObject[] aArgs)
+	{
+		getOwnedMonitor(aParentFrame, aTarget).signal();
+		return JPrimitive.VOID;
+	}
+	
+	public void __notifyAll() {}
+	public JObject _notifyAll(JFrame aParentFrame, JInstance aTarget, JObject[] aArgs)
+	{
+		getOwnedMonitor(aParentFrame, aTarget).signalAll();
+		return JPrimitive.VOID;
+	}
 }
@@ -53,7 +53,7 @@ public class JClass_java_lang_String extends JNormalClass
 	}
 	
     public static String __intern() { return null; }
-	public JObject _intern(JFrame aParentFrame, JInstance aTarget, JObject[] aArgs)
+	public synchronized JObject _intern(JFrame aParentFrame, JInstance aTarget, JObject[] aArgs)
 	{
 		JClass_java_lang_String theClass = (JClass_java_lang_String) aTarget.getType();
 		String theString = theClass.getInterpreter().toString(aTarget);
@@ -62,6 +62,7 @@ public class JClass_java_lang_String extends JNormalClass
 		{
 			theResult = aTarget;
 			itsInternedStrings.put(theString, theResult);
+			theClass.getInterpreter().getMetrics().getStripe().inc(JMetrics.INTERNED_STRINGS);
 		}
 		return theResult;
 	}
@@ -0,0 +1,360 @@
+/*
+ * Created on Oct 19, 2026
+ */
+package zz.jinterp;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.objectweb.asm.tree.ClassNode;
+
+import zz.jinterp.JNormalBehavior.ExceptionThrown;
+import zz.jinterp.JNormalBehavior.JFrame;
+import zz.jinterp.JPrimitive.JBoolean;
+import zz.jinterp.JPrimitive.JChar;
+import zz.jinterp.JPrimitive.JInt;
+import zz.jinterp.JPrimitive.JLong;
+
+/**
+ * Maps interpreted threads to host threads: each started interpreted thread
+ * runs its frames on its own host thread (see {@link JInterpreter#createHostThread(Runnable)}).
+ * @author gpothier
+ */
+public class JClass_java_lang_Thread extends JNormalClass
+{
+	public static final String NAME = "java/lang/Thread";
+
+	/**
+	 * The interpreted thread object of the current host thread.
+	 */
+	private final ThreadLocal<JInstance> itsCurrentThread = new ThreadLocal<JInstance>();
+
+	/**
+	 * Host threads of the interpreted threads that are alive.
+	 */
+	private final Map<JInstance, Thread> itsHostThreads = new ConcurrentHashMap<JInstance, Thread>();
+
+	private JInstance itsSystemGroup;
+	
+	/**
+	 * Values of Thread.threadStatus (JVMTI thread states).
+	 */
+	private static final int STATUS_RUNNABLE = 0x0005;
+	private static final int STATUS_TERMINATED = 0x0002;
+
+	public JClass_java_lang_Thread(JInterpreter aInterpreter, ClassNode aNode)
+	{
+		super(aInterpreter, aNode);
+		JReflectiveClass.initBehaviors(this, getClass());
+	}
+
+	/**
+	 * Returns the interpreted thread object of the current host thread.
+	 * If the host thread entered the interpreter directly (ie. it was not started
+	 * by interpreted code), a thread object is created for it.
+	 */
+	public JInstance getCurrentThread(JFrame aParentFrame)
+	{
+		JInstance theThread = itsCurrentThread.get();
+		if (theThread == null)
+		{
+			theThread = createThreadObject(aParentFrame, Thread.currentThread());
+			itsCurrentThread.set(theThread);
+		}
+		return theThread;
+	}
+
+	private synchronized JInstance getSystemGroup(JFrame aParentFrame)
+	{
+		if (itsSystemGroup == null)
+		{
+			itsSystemGroup = getInterpreter().instantiate(aParentFrame, "java/lang/ThreadGroup", "()V");
+		}
+		return itsSystemGroup;
+	}
+
+	/**
+	 * Creates an interpreted thread object that represents the given host thread.
+	 * The constructors of Thread cannot be used because they need a current thread.
+	 */
+	private JInstance createThreadObject(JFrame aParentFrame, Thread aHostThread)
+	{
+		JInstance theThread = newInstance();
+
+		JField fGroup = getField("group");
+		if (fGroup != null) theThread.putFieldValue(fGroup, getSystemGroup(aParentFrame));
+
+		JField fPriority = getField("priority");
+		if (fPriority != null) theThread.putFieldValue(fPriority, new JInt(Thread.NORM_PRIORITY));
+
+		JField fName = getField("name");
+		if (fName != null)
+		{
+			String theName = aHostThread.getName();
+			if (fName.getType() instanceof JArrayType)
+			{
+				JArray theValue = getInterpreter().newArray(theName.length());
+				for(int i=0;i<theName.length();i++) theValue.set(i, new JChar(theName.charAt(i)));
+				getInterpreter().charge(null, theValue, JHeapAccount.getArraySize(theName.length(), 2));
+				theThread.putFieldValue(fName, theValue);
+			}
+			else
+			{
+				theThread.putFieldValue(fName, getInterpreter().toJString(theName));
+			}
+		}
+
+		return theThread;
+	}
+
+	/**
+	 * Returns the host thread that runs the given interpreted thread,
+	 * or null if the thread is not alive.
+	 */
+	private Thread getHostThread(JInstance aThread)
+	{
+		if (itsCurrentThread.get() == aThread) return Thread.currentThread();
+		else return itsHostThreads.get(aThread);
+	}
+
+	private JInstance new_InterruptedException(JFrame aParentFrame)
+	{
+		return getInterpreter().new_Exception("InterruptedException", aParentFrame, "interrupted");
+	}
+
+	private static void __registerNatives() {}
+	public JObject _registerNatives(JFrame aParentFrame, JInstance aTarget, JObject[] aArgs)
+	{
+		return JPrimitive.VOID;
+	}
+
+	public static Thread __currentThread() { return null; }
+	public JObject _currentThread(JFrame aParentFrame, JInstance aTarget, JObject[] aArgs)
+	{
+		return getCurrentThread(aParentFrame);
+	}
+
+	public static void __yield() {}
+	public JObject _yield(JFrame aParentFrame, JInstance aTarget, JObject[] aArgs)
+	{
+		Thread.yield();
+		return JPrimitive.VOID;
+	}
+
+	public static void __sleep(long millis) {}
+	public JObject _sleep(JFrame aParentFrame, JInstance aTarget, JObject[] aArgs)
+	{
+		JLong theMillis = (JLong) aArgs[0];
+		try
+		{
+			Thread.sleep(theMillis.v);
+		}
+		catch (InterruptedException e)
+		{
+			throw new ExceptionThrown(new_InterruptedException(aParentFrame));
+		}
+		return JPrimitive.VOID;
+	}
+
+	/**
+	 * Starts a host thread that runs the interpreted thread, then its exit method.
+	 * The new thread inherits the heap (see {@link JInterpreter#setThreadHeap(JHeap)}), 
+	 * the thread heap account and the cancellation of the current thread, but not 
+	 * its fuel, which can only be used by one thread.
+	 */
+	private void __start0() {}
+	public JObject _start0(JFrame aParentFrame, final JInstance aTarget, JObject[] aArgs)
+	{
+		setStatus(aTarget, STATUS_RUNNABLE);
+		
+		final JInterpreter theInterpreter = getInterpreter();
+		final JBehavior theRun = aTarget.getType().getVirtualBehavior("run", "()V");
+		final JHeap theHeap = theInterpreter.getThreadHeap();
+		final JHeapAccount theAccount = theInterpreter.getThreadHeapAccount();
+		JCancellation theParentCancellation = theInterpreter.getCancellation();
+		final JCancellation theCancellation = theParentCancellation != null ? new JCancellation(theParentCancellation) : null;
+		
+		Thread theHostThread = theInterpreter.createHostThread(new Runnable()
+		{
+			public void run()
+			{
+				itsCurrentThread.set(aTarget);
+				theInterpreter.setThreadHeap(theHeap);
+				theInterpreter.setThreadHeapAccount(theAccount);
+				theInterpreter.setCancellation(theCancellation);
+				try
+				{
+					theRun.invoke(null, aTarget);
+				}
+				catch (ExceptionThrown e)
+				{
+					if (theCancellation == null || ! theCancellation.isSignal(e.getException())) 
+					{
+						dispatchUncaughtException(aTarget, e.getException());
+					}
+				}
+				catch (JAbortedException e)
+				{
+					// The execution was stopped by the host
+				}
+				catch (RuntimeException e)
+				{
+					dispatchUncaughtException(aTarget, newInternalError(e));
+				}
+				finally
+				{
+					exit(aTarget);
+					setStatus(aTarget, STATUS_TERMINATED);
+					itsHostThreads.remove(aTarget);
+					itsCurrentThread.remove();
+					theInterpreter.setThreadHeap(null);
+					theInterpreter.setThreadHeapAccount(null);
+					theInterpreter.setCancellation(null);
+				}
+			}
+		});
+
+		itsHostThreads.put(aTarget, theHostThread);
+		theHostThread.start();
+		return JPrimitive.VOID;
+	}
+	
+	/**
+	 * Sets the threadStatus field, so that a thread cannot be started twice.
+	 */
+	private void setStatus(JInstance aThread, int aStatus)
+	{
+		JField fStatus = getField("threadStatus");
+		if (fStatus != null) aThread.putFieldValue(fStatus, new JInt(aStatus));
+	}
+
+	/**
+	 * Passes the exception that terminated an interpreted thread to the
+	 * uncaught exception handler of the thread, as the JVM does, or to its 
+	 * group if the thread class has no dispatch method.
+	 * As in the JVM, exceptions thrown by the handler are ignored.
+	 */
+	private void dispatchUncaughtException(JInstance aThread, JInstance aException)
+	{
+		if (aException == null) return;
+		try
+		{
+			JBehavior theDispatch = getBehavior("dispatchUncaughtException", "(Ljava/lang/Throwable;)V");
+			if (theDispatch != null) 
+			{
+				theDispatch.invoke(null, aThread, aException);
+				return;
+			}
+			
+			JField fGroup = getField("group");
+			JInstance theGroup = fGroup != null ? (JInstance) aThread.getFieldValue(fGroup) : null;
+			if (theGroup != null) 
+			{
+				JBehavior theHandler = theGroup.getType().getVirtualBehavior(
+						"uncaughtException", 
+						"(Ljava/lang/Thread;Ljava/lang/Throwable;)V");
+				if (theHandler != null) theHandler.invoke(null, theGroup, aThread, aException);
+			}
+		}
+		catch (RuntimeException e)
+		{
+			// Ignored, as in the JVM
+		}
+	}
+	
+	/**
+	 * Creates the interpreted error passed to the uncaught exception handler 
+	 * when an interpreted thread fails because of an interpreter error,
+	 * or returns null if it cannot be created.
+	 */
+	private JInstance newInternalError(RuntimeException aException)
+	{
+		try
+		{
+			return getInterpreter().new_Exception("InternalError", null, aException.toString());
+		}
+		catch (RuntimeException e)
+		{
+			return null;
+		}
+	}
+	
+	/**
+	 * Runs the exit method of the interpreted thread, which removes it from its group.
+	 */
+	private void exit(JInstance aThread)
+	{
+		JBehavior theExit = getBehavior("exit", "()V");
+		if (theExit == null) return;
+		try
+		{
+			theExit.invoke(null, aThread);
+		}
+		catch (RuntimeException e)
+		{
+			// The thread terminates anyway, as in the JVM
+		}
+	}
+
+	public final boolean __isAlive() { return false; }
+	public JObject _isAlive(JFrame aParentFrame, JInstance aTarget, JObject[] aArgs)
+	{
+		return getHostThread(aTarget) != null ? JBoolean._true : JBoolean._false;
+	}
+
+	/**
+	 * Joins the host thread directly instead of interpreting the wait loop of Thread.join.
+	 */
+	public final void __join(long millis) {}
+	public JObject _join(JFrame aParentFrame, JInstance aTarget, JObject[] aArgs)
+	{
+		JLong theMillis = (JLong) aArgs[0];
+		Thread theHostThread = itsHostThreads.get(aTarget);
+		if (theHostThread != null && theHostThread != Thread.currentThread()) try
+		{
+			theHostThread.join(theMillis.v);
+		}
+		catch (InterruptedException e)
+		{
+			throw new ExceptionThrown(new_InterruptedException(aParentFrame));
+		}
+		return JPrimitive.VOID;
+	}
+
+	private boolean __isInterrupted(boolean ClearInterrupted) { return false; }
+	public JObject _isInterrupted(JFrame aParentFrame, JInstance aTarget, JObject[] aArgs)
+	{
+		boolean theClear = ((JPrimitive) aArgs[0]).intValue() != 0;
+		Thread theHostThread = getHostThread(aTarget);
+		if (theHostThread == null) return JBoolean._false;
+
+		boolean theResult = theClear && theHostThread == Thread.currentThread() ?
+				Thread.interrupted()
+				: theHostThread.isInterrupted();
+
+		return theResult ? JBoolean._true : JBoolean._false;
+	}
+
+	private void __interrupt0() {}
+	public JObject _interrupt0(JFrame aParentFrame, JInstance aTarget, JObject[] aArgs)
+	{
+		Thread theHostThread = getHostThread(aTarget);
+		if (theHostThread != null) theHostThread.interrupt();
+		return JPrimitive.VOID;
+	}
+
+	private void __setPriority0(int newPriority) {}
+	public JObject _setPriority0(JFrame aParentFrame, JInstance aTarget, JObject[] aArgs)
+	{
+		// Priorities are not mapped to host threads
+		return JPrimitive.VOID;
+	}
+
+	public static boolean __holdsLock(Object obj) { return false; }
+	public JObject _holdsLock(JFrame aParentFrame, JInstance aTarget, JObject[] aArgs)
+	{
+		JObject theObject = aArgs[0];
+		if (theObject == null) throw new ExceptionThrown(getInterpreter().new_NullPointerException(aParentFrame, "null"));
+		return theObject.getMonitor().isHeldByCurrentThread() ? JBoolean._true : JBoolean._false;
+	}
+}
@@ -5,7 +5,9 @@ package zz.jinterp;
 
 import org.objectweb.asm.tree.ClassNode;
 
+import zz.jinterp.JNormalBehavior.ExceptionThrown;
 import zz.jinterp.JNormalBehavior.JFrame;
+import zz.jinterp.JPrimitive.JInt;
 
 public class JClass_java_lang_Throwable extends JNormalClass
 {
@@ -20,8 +22,62 @@ public class JClass_java_lang_Throwable extends JNormalClass
     public synchronized Throwable __fillInStackTrace() { return null; }
 	public JObject _fillInStackTrace(JFrame aParentFrame, JInstance aTarget, JObject[] aArgs)
 	{
-		// TODO: implement (if needed)
+		// The trace is captured once, so that rethrowing the exception does not extend it
+		JStackTrace theStackTrace = aTarget.getStackTrace();
+		theStackTrace.clear();
+		
+		JFrame theFrame = aParentFrame;
+		while (theFrame != null && isCreating(theFrame, aTarget)) theFrame = theFrame.getParentFrame();
+		for (; theFrame != null; theFrame = theFrame.getParentFrame())
+		{
+			theStackTrace.add(theFrame.getBehavior(), theFrame.getInstructionPointer());
+		}
 		return aTarget;
 	}
+	
+	/**
+	 * Whether the given frame is a constructor or fillInStackTrace method of the
+	 * exception, which the JVM omits from traces.
+	 */
+	private static boolean isCreating(JFrame aFrame, JInstance aException)
+	{
+		JBehavior theBehavior = aFrame.getBehavior();
+		String theName = theBehavior.getName();
+		return ("<init>".equals(theName) || "fillInStackTrace".equals(theName))
+			&& aException.getType().isSubclassOf(theBehavior.getDeclaringClass());
+	}
+
+	private int __getStackTraceDepth() { return 0; }
+	public JObject _getStackTraceDepth(JFrame aParentFrame, JInstance aTarget, JObject[] aArgs)
+	{
+		return new JInt(aTarget.getStackTrace().size());
+	}
+	
+	/**
+	 * Elements are only created when the interpreted code asks for them.
+	 * As there is no line number information, the instruction pointer
+	 * is reported instead.
+	 */
+	private StackTraceElement __getStackTraceElement(int index) { return null; }
+	public JObject _getStackTraceElement(JFrame aParentFrame, JInstance aTarget, JObject[] aArgs)
+	{
+		int theIndex = ((JInt) aArgs[0]).v;
+		JStackTrace theStackTrace = aTarget.getStackTrace();
+		if (theIndex < 0 || theIndex >= theStackTrace.size())
+		{
+			throw new ExceptionThrown(getInterpreter().new_Exception("IndexOutOfBoundsException", aParentFrame, ""+theIndex));
+		}
+		
+		JBehavior theBehavior = theStackTrace.getBehavior(theIndex);
+		JInterpreter theInterpreter = getInterpreter();
+		return theInterpreter.instantiate(
+				aParentFrame, 
+				"java/lang/StackTraceElement", 
+				"(Ljava/lang/String;Ljava/lang/String;Ljava/lang/String;I)V", 
+				theInterpreter.toJString(theBehavior.getDeclaringClass().getName().replace('/', '.')),
+				theInterpreter.toJString(theBehavior.getName()),
+				null,
+				new JInt(theStackTrace.getIP(theIndex)));
+	}
 
 }
@@ -3,6 +3,7 @@
  */
 package zz.jinterp;
 
+import java.security.AccessControlContext;
 import java.security.PrivilegedAction;
 
 import org.objectweb.asm.tree.ClassNode;
@@ -28,4 +29,14 @@ public class JClass_java_security_AccessController extends JNormalClass
 		return theBehavior.invoke(aParentFrame, theAction);
 	}
 
+	/**
+	 * Returning null means that the stack only contains system code
+	 * (used by Thread constructors).
+	 */
+	private static AccessControlContext __getStackAccessControlContext() { return null; }
+	public JObject _getStackAccessControlContext(JFrame aParentFrame, JInstance aTarget, JObject[] aArgs)
+	{
+		return null;
+	}
+
 }
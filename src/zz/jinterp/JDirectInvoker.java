@@ -0,0 +1,380 @@
+/*
+ * Created on Oct 19, 2026
+ */
+package zz.jinterp;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import zz.jinterp.JNormalBehavior.JFrame;
+import zz.jinterp.JPrimitive.JBoolean;
+import zz.jinterp.JPrimitive.JByte;
+import zz.jinterp.JPrimitive.JChar;
+import zz.jinterp.JPrimitive.JDouble;
+import zz.jinterp.JPrimitive.JFloat;
+import zz.jinterp.JPrimitive.JInt;
+import zz.jinterp.JPrimitive.JLong;
+import zz.jinterp.JPrimitive.JShort;
+
+/**
+ * Calls the implementation method of a native behavior
+ * (see {@link JReflectiveClass#initBehaviors(JClass, Class)}),
+ * or a host method delegated by {@link JHostDelegation}.
+ * Invokers are generated once per method, as a class that
+ * calls the method directly, and are shared by all the interpreters.
+ * @author gpothier
+ */
+public abstract class JDirectInvoker implements Opcodes
+{
+	private static final Map<Method, JDirectInvoker> itsInvokers = new ConcurrentHashMap<Method, JDirectInvoker>();
+	private static final Map<Method, JDirectInvoker> itsHostInvokers = new ConcurrentHashMap<Method, JDirectInvoker>();
+	private static final AtomicInteger itsHostInvokerCount = new AtomicInteger();
+
+	private static final String INVOKER_NAME = Type.getInternalName(JDirectInvoker.class);
+
+	private static final String INVOKE_DESC = Type.getMethodDescriptor(
+			Type.getType(JObject.class),
+			new Type[] {
+				Type.getType(JClass.class),
+				Type.getType(JFrame.class),
+				Type.getType(JObject.class),
+				Type.getType(JObject[].class)});
+
+	private static final String TARGET_DESC = Type.getMethodDescriptor(
+			Type.getType(JObject.class),
+			new Type[] {
+				Type.getType(JFrame.class),
+				Type.getType(JInstance.class),
+				Type.getType(JObject[].class)});
+
+	/**
+	 * Calls the implementation method on the given native class.
+	 */
+	public abstract JObject invoke(JClass aOwner, JFrame aParentFrame, JObject aTarget, JObject[] aArgs);
+
+	/**
+	 * Returns the invoker for the given implementation method, which must have the
+	 * signature <code>JObject _name(JFrame, JInstance, JObject[])</code>.
+	 */
+	public static JDirectInvoker get(Method aMethod)
+	{
+		JDirectInvoker theInvoker = itsInvokers.get(aMethod);
+		if (theInvoker == null)
+		{
+			theInvoker = create(aMethod);
+			itsInvokers.put(aMethod, theInvoker);
+		}
+		return theInvoker;
+	}
+
+	/**
+	 * Returns the invoker for the given host method, which must be public and static,
+	 * and whose arguments and result must be primitives or strings.
+	 * The invoker converts the arguments to their host representation and the result 
+	 * back to its interpreted representation; strings are converted by the interpreter 
+	 * of the owner class. The target is ignored, and host exceptions are not caught.
+	 */
+	public static JDirectInvoker getHost(Method aMethod)
+	{
+		JDirectInvoker theInvoker = itsHostInvokers.get(aMethod);
+		if (theInvoker == null)
+		{
+			theInvoker = createHost(aMethod);
+			itsHostInvokers.put(aMethod, theInvoker);
+		}
+		return theInvoker;
+	}
+
+	private static JDirectInvoker create(Method aMethod)
+	{
+		Class<?> theClass = aMethod.getDeclaringClass();
+
+		// Generated classes are in a separate loader and can only access public members
+		if (! Modifier.isPublic(theClass.getModifiers()) || ! Modifier.isPublic(aMethod.getModifiers()))
+		{
+			return new ReflectiveInvoker(aMethod);
+		}
+
+		String theName = theClass.getName()+"$$Invoker_"+aMethod.getName();
+		byte[] theBytecode = generate(theName.replace('.', '/'), aMethod);
+		try
+		{
+			Loader theLoader = new Loader(theClass.getClassLoader());
+			return (JDirectInvoker) theLoader.define(theName, theBytecode).getDeclaredConstructor().newInstance();
+		}
+		catch (Exception e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static byte[] generate(String aName, Method aMethod)
+	{
+		ClassWriter theWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		theWriter.visit(V1_5, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, aName, null, INVOKER_NAME, null);
+
+		MethodVisitor theInit = theWriter.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+		theInit.visitCode();
+		theInit.visitVarInsn(ALOAD, 0);
+		theInit.visitMethodInsn(INVOKESPECIAL, INVOKER_NAME, "<init>", "()V");
+		theInit.visitInsn(RETURN);
+		theInit.visitMaxs(0, 0);
+		theInit.visitEnd();
+
+		String theOwner = Type.getInternalName(aMethod.getDeclaringClass());
+		MethodVisitor theInvoke = theWriter.visitMethod(ACC_PUBLIC, "invoke", INVOKE_DESC, null, null);
+		theInvoke.visitCode();
+		theInvoke.visitVarInsn(ALOAD, 1);
+		theInvoke.visitTypeInsn(CHECKCAST, theOwner);
+		theInvoke.visitVarInsn(ALOAD, 2);
+		theInvoke.visitVarInsn(ALOAD, 3);
+		theInvoke.visitTypeInsn(CHECKCAST, Type.getInternalName(JInstance.class));
+		theInvoke.visitVarInsn(ALOAD, 4);
+		theInvoke.visitMethodInsn(INVOKEVIRTUAL, theOwner, aMethod.getName(), TARGET_DESC);
+		theInvoke.visitInsn(ARETURN);
+		theInvoke.visitMaxs(0, 0);
+		theInvoke.visitEnd();
+
+		theWriter.visitEnd();
+		return theWriter.toByteArray();
+	}
+
+	private static JDirectInvoker createHost(Method aMethod)
+	{
+		// Host classes can be in java.*, where classes cannot be defined
+		String theName = JDirectInvoker.class.getName()+"$$Host_"+itsHostInvokerCount.incrementAndGet();
+		byte[] theBytecode = generateHost(theName.replace('.', '/'), aMethod);
+		
+		ClassLoader theParent = aMethod.getDeclaringClass().getClassLoader();
+		if (theParent == null) theParent = JDirectInvoker.class.getClassLoader();
+		try
+		{
+			Loader theLoader = new Loader(theParent);
+			return (JDirectInvoker) theLoader.define(theName, theBytecode).getDeclaredConstructor().newInstance();
+		}
+		catch (Exception e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static byte[] generateHost(String aName, Method aMethod)
+	{
+		ClassWriter theWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		theWriter.visit(V1_5, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, aName, null, INVOKER_NAME, null);
+
+		MethodVisitor theInit = theWriter.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+		theInit.visitCode();
+		theInit.visitVarInsn(ALOAD, 0);
+		theInit.visitMethodInsn(INVOKESPECIAL, INVOKER_NAME, "<init>", "()V");
+		theInit.visitInsn(RETURN);
+		theInit.visitMaxs(0, 0);
+		theInit.visitEnd();
+
+		String theDesc = Type.getMethodDescriptor(aMethod);
+		MethodVisitor theInvoke = theWriter.visitMethod(ACC_PUBLIC, "invoke", INVOKE_DESC, null, null);
+		theInvoke.visitCode();
+		
+		Type[] theArgTypes = Type.getArgumentTypes(theDesc);
+		for(int i=0;i<theArgTypes.length;i++)
+		{
+			Type theType = theArgTypes[i];
+			if (theType.getSort() == Type.OBJECT) 
+			{
+				theInvoke.visitVarInsn(ALOAD, 1);
+				theInvoke.visitVarInsn(ALOAD, 4);
+				theInvoke.visitLdcInsn(i);
+				theInvoke.visitInsn(AALOAD);
+				theInvoke.visitMethodInsn(INVOKESTATIC, INVOKER_NAME, "toHostString", "(Lzz/jinterp/JClass;Lzz/jinterp/JObject;)Ljava/lang/String;");
+			}
+			else
+			{
+				theInvoke.visitVarInsn(ALOAD, 4);
+				theInvoke.visitLdcInsn(i);
+				theInvoke.visitInsn(AALOAD);
+				theInvoke.visitMethodInsn(INVOKESTATIC, INVOKER_NAME, getHostConversion(theType), "(Lzz/jinterp/JObject;)"+theType.getDescriptor());
+			}
+		}
+		
+		Type theReturnType = Type.getReturnType(theDesc);
+		theInvoke.visitMethodInsn(INVOKESTATIC, Type.getInternalName(aMethod.getDeclaringClass()), aMethod.getName(), theDesc);
+		if (theReturnType.getSort() == Type.OBJECT)
+		{
+			theInvoke.visitVarInsn(ALOAD, 1);
+			theInvoke.visitMethodInsn(INVOKESTATIC, INVOKER_NAME, "toJObject", "(Ljava/lang/String;Lzz/jinterp/JClass;)Lzz/jinterp/JObject;");
+		}
+		else
+		{
+			theInvoke.visitMethodInsn(INVOKESTATIC, INVOKER_NAME, "toJObject", "("+theReturnType.getDescriptor()+")Lzz/jinterp/JObject;");
+		}
+		theInvoke.visitInsn(ARETURN);
+		theInvoke.visitMaxs(0, 0);
+		theInvoke.visitEnd();
+
+		theWriter.visitEnd();
+		return theWriter.toByteArray();
+	}
+	
+	private static String getHostConversion(Type aType)
+	{
+		switch(aType.getSort())
+		{
+		case Type.INT: return "toHostInt";
+		case Type.BOOLEAN: return "toHostBoolean";
+		case Type.CHAR: return "toHostChar";
+		case Type.BYTE: return "toHostByte";
+		case Type.SHORT: return "toHostShort";
+		case Type.LONG: return "toHostLong";
+		case Type.FLOAT: return "toHostFloat";
+		case Type.DOUBLE: return "toHostDouble";
+		default: throw new IllegalArgumentException("Not handled: "+aType);
+		}
+	}
+	
+	// Conversions called by the host invokers, which are in another class loader.
+	
+	public static int toHostInt(JObject aValue)
+	{
+		return ((JPrimitive) aValue).intValue();
+	}
+	
+	public static boolean toHostBoolean(JObject aValue)
+	{
+		return ((JPrimitive) aValue).intValue() != 0;
+	}
+	
+	public static char toHostChar(JObject aValue)
+	{
+		return (char) ((JPrimitive) aValue).intValue();
+	}
+	
+	public static byte toHostByte(JObject aValue)
+	{
+		return (byte) ((JPrimitive) aValue).intValue();
+	}
+	
+	public static short toHostShort(JObject aValue)
+	{
+		return (short) ((JPrimitive) aValue).intValue();
+	}
+	
+	public static long toHostLong(JObject aValue)
+	{
+		return ((JLong) aValue).v;
+	}
+	
+	public static float toHostFloat(JObject aValue)
+	{
+		return ((JFloat) aValue).v;
+	}
+	
+	public static double toHostDouble(JObject aValue)
+	{
+		return ((JDouble) aValue).v;
+	}
+	
+	public static String toHostString(JClass aOwner, JObject aValue)
+	{
+		return aValue != null ? aOwner.getInterpreter().toString((JInstance) aValue) : null;
+	}
+	
+	public static JObject toJObject(int aValue)
+	{
+		return new JInt(aValue);
+	}
+	
+	public static JObject toJObject(boolean aValue)
+	{
+		return new JBoolean(aValue);
+	}
+	
+	public static JObject toJObject(char aValue)
+	{
+		return new JChar(aValue);
+	}
+	
+	public static JObject toJObject(byte aValue)
+	{
+		return new JByte(aValue);
+	}
+	
+	public static JObject toJObject(short aValue)
+	{
+		return new JShort(aValue);
+	}
+	
+	public static JObject toJObject(long aValue)
+	{
+		return new JLong(aValue);
+	}
+	
+	public static JObject toJObject(float aValue)
+	{
+		return new JFloat(aValue);
+	}
+	
+	public static JObject toJObject(double aValue)
+	{
+		return new JDouble(aValue);
+	}
+	
+	public static JObject toJObject(String aValue, JClass aOwner)
+	{
+		return aValue != null ? aOwner.getInterpreter().toJString(aValue) : null;
+	}
+
+	private static class Loader extends ClassLoader
+	{
+		public Loader(ClassLoader aParent)
+		{
+			super(aParent);
+		}
+
+		public Class<?> define(String aName, byte[] aBytecode)
+		{
+			return defineClass(aName, aBytecode, 0, aBytecode.length);
+		}
+	}
+
+	/**
+	 * Fallback for implementation methods that generated classes cannot access.
+	 */
+	private static class ReflectiveInvoker extends JDirectInvoker
+	{
+		private final Method itsMethod;
+
+		public ReflectiveInvoker(Method aMethod)
+		{
+			itsMethod = aMethod;
+			itsMethod.setAccessible(true);
+		}
+
+		@Override
+		public JObject invoke(JClass aOwner, JFrame aParentFrame, JObject aTarget, JObject[] aArgs)
+		{
+			try
+			{
+				return (JObject) itsMethod.invoke(aOwner, aParentFrame, aTarget, aArgs);
+			}
+			catch (InvocationTargetException e)
+			{
+				// Let natives throw interpreted exceptions
+				if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+				throw new RuntimeException(e);
+			}
+			catch (Exception e)
+			{
+				throw new RuntimeException(e);
+			}
+		}
+	}
+}
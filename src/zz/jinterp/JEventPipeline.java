@@ -0,0 +1,541 @@
+/*
+ * Created on Oct 19, 2026
+ */
+package zz.jinterp;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Delivers the execution events of an interpreter to in-process {@link Listener}s,
+ * such as coverage collectors or watchpoints.
+ * Each interpreted thread fills its own batches of events, and hands full batches
+ * over to a consumer thread through a lock-free single-producer queue. Listeners are
+ * therefore called on consumer threads, once per batch, and never by interpreted code.
+ * Batches are recycled: listeners must not keep references to them.
+ * <p>
+ * When a queue is full, the producing thread applies the back-pressure policy
+ * of the pipeline: {@link #DROP}, {@link #BLOCK} or {@link #SAMPLE}.
+ * @author gpothier
+ */
+public class JEventPipeline extends JEventRecorder
+{
+	/**
+	 * Batches that do not fit in the queue are discarded.
+	 */
+	public static final int DROP = 0;
+
+	/**
+	 * The producing thread waits until the queue has room.
+	 */
+	public static final int BLOCK = 1;
+
+	/**
+	 * Once the queue fills up, only one batch out of the sample rate is
+	 * kept, until the consumer catches up.
+	 */
+	public static final int SAMPLE = 2;
+
+	private final int itsBatchSize;
+	private final int itsCapacity;
+	private final int itsPolicy;
+	private final int itsSampleRate;
+	private final Thread[] itsConsumers;
+
+	private final List<Listener> itsListeners = new CopyOnWriteArrayList<Listener>();
+	private final List<Sink> itsSinks = new CopyOnWriteArrayList<Sink>();
+	private final AtomicInteger itsNextConsumer = new AtomicInteger();
+	private volatile ErrorHandler itsErrorHandler;
+
+	private volatile boolean itsRecordFieldReads;
+	private volatile boolean itsClosed;
+	private final AtomicLong itsDroppedEvents = new AtomicLong();
+	private final AtomicLong itsListenerFailures = new AtomicLong();
+
+	/**
+	 * @param aBatchSize Number of events per batch.
+	 * @param aCapacity Number of batches each thread can have in flight, rounded
+	 * up to a power of two.
+	 * @param aPolicy What producing threads do when their queue is full.
+	 * @param aSampleRate For the {@link #SAMPLE} policy, one batch out of this number
+	 * is kept while the queue is saturated.
+	 * @param aConsumerCount Number of consumer threads. Each producing thread is
+	 * served by a single consumer thread.
+	 */
+	public JEventPipeline(int aBatchSize, int aCapacity, int aPolicy, int aSampleRate, int aConsumerCount)
+	{
+		if (aPolicy < DROP || aPolicy > SAMPLE) throw new IllegalArgumentException("Invalid policy: "+aPolicy);
+		itsBatchSize = aBatchSize;
+		itsCapacity = Integer.highestOneBit(Math.max(aCapacity, 1)*2-1);
+		itsPolicy = aPolicy;
+		itsSampleRate = Math.max(aSampleRate, 1);
+		itsConsumers = new Thread[aConsumerCount];
+		for(int i=0;i<aConsumerCount;i++) itsConsumers[i] = new Consumer(i);
+	}
+
+	/**
+	 * Adds a listener. Listeners may be called concurrently by
+	 * several consumer threads.
+	 */
+	public void addListener(Listener aListener)
+	{
+		itsListeners.add(aListener);
+	}
+
+	public void removeListener(Listener aListener)
+	{
+		itsListeners.remove(aListener);
+	}
+
+	/**
+	 * Sets the handler that is notified of the exceptions thrown by listeners,
+	 * or null to only count them (see {@link #getListenerFailures()}).
+	 */
+	public void setErrorHandler(ErrorHandler aErrorHandler)
+	{
+		itsErrorHandler = aErrorHandler;
+	}
+
+	/**
+	 * Whether field reads produce events. Off by default.
+	 */
+	public void setRecordFieldReads(boolean aRecordFieldReads)
+	{
+		itsRecordFieldReads = aRecordFieldReads;
+	}
+
+	/**
+	 * Returns the number of events that were discarded because of back-pressure.
+	 */
+	public long getDroppedEvents()
+	{
+		return itsDroppedEvents.get();
+	}
+
+	/**
+	 * Returns the number of batches whose delivery to a listener failed
+	 * because the listener threw an exception. The failing listener still 
+	 * receives the following batches.
+	 */
+	public long getListenerFailures()
+	{
+		return itsListenerFailures.get();
+	}
+
+	/**
+	 * Starts the consumer threads.
+	 */
+	public void start()
+	{
+		for (Thread theConsumer : itsConsumers) theConsumer.start();
+	}
+
+	/**
+	 * Stops the consumer threads once they have delivered the published batches,
+	 * and waits for them to terminate. Events produced afterwards are dropped.
+	 * The pipeline should be removed from the interpreter first.
+	 */
+	public void close() throws InterruptedException
+	{
+		itsClosed = true;
+		for (Thread theConsumer : itsConsumers)
+		{
+			LockSupport.unpark(theConsumer);
+			theConsumer.join();
+		}
+	}
+
+	@Override
+	protected JEventSink createSink()
+	{
+		Sink theSink = new Sink(Thread.currentThread(), itsNextConsumer.getAndIncrement() % Math.max(itsConsumers.length, 1));
+		itsSinks.add(theSink);
+		return theSink;
+	}
+
+	/**
+	 * Returns the number of threads whose events are collected.
+	 */
+	int getSinkCount()
+	{
+		return itsSinks.size();
+	}
+
+	/**
+	 * Delivers the batches published by the sinks served by the given consumer.
+	 * The sinks of terminated threads are removed once drained.
+	 * @return Whether at least one batch was delivered.
+	 */
+	private boolean consume(int aConsumer)
+	{
+		boolean theDelivered = false;
+		for (Sink theSink : itsSinks)
+		{
+			if (theSink.itsConsumer != aConsumer) continue;
+
+			// Checked before draining, so that the last batches of the thread are delivered
+			boolean theTerminated = ! theSink.itsThread.isAlive();
+			
+			Batch theBatch;
+			while ((theBatch = theSink.itsPublished.poll()) != null)
+			{
+				for (Listener theListener : itsListeners) deliver(theListener, theBatch);
+				theBatch.itsSize = 0;
+				theSink.itsFree.offer(theBatch);
+				theDelivered = true;
+			}
+			
+			if (theTerminated) itsSinks.remove(theSink);
+		}
+		return theDelivered;
+	}
+
+	/**
+	 * Delivers a batch to a listener. Exceptions thrown by the listener are 
+	 * counted and passed to the error handler, so that the consumer thread keeps 
+	 * delivering batches; otherwise the producing threads would block or lose their events.
+	 */
+	private void deliver(Listener aListener, Batch aBatch)
+	{
+		try
+		{
+			aListener.events(aBatch);
+		}
+		catch (Throwable e)
+		{
+			itsListenerFailures.incrementAndGet();
+			ErrorHandler theHandler = itsErrorHandler;
+			if (theHandler != null) theHandler.listenerFailed(aListener, e);
+		}
+	}
+
+	/**
+	 * Receives batches of events, on a consumer thread.
+	 */
+	public static interface Listener
+	{
+		/**
+		 * Called for each batch, in the order the producing thread filled them.
+		 * The batch is only valid during the call.
+		 * Exceptions are counted (see {@link JEventPipeline#getListenerFailures()}),
+		 * passed to the error handler if any, and do not stop the delivery of the following batches.
+		 */
+		public void events(Batch aBatch);
+	}
+
+	/**
+	 * Notified of the exceptions thrown by listeners, on a consumer thread.
+	 */
+	public static interface ErrorHandler
+	{
+		/**
+		 * Called when a listener throws an exception. Exceptions thrown by the
+		 * handler itself are not caught.
+		 */
+		public void listenerFailed(Listener aListener, Throwable aError);
+	}
+
+	/**
+	 * A batch of events of one thread.
+	 * The meaning of the values of an event depends on its kind:
+	 * <ul>
+	 * <li>{@link #ENTER}: the behavior.</li>
+	 * <li>{@link #EXIT}: the behavior, and 1 as int if the frame ends because of an exception.</li>
+	 * <li>{@link #FIELD_READ}, {@link #FIELD_WRITE}: the field, the target (null for static fields) and the value.</li>
+	 * <li>{@link #ARRAY_STORE}: the array as target, the index as int, and the value.</li>
+	 * <li>{@link #EXCEPTION}: the behavior, the exception as target, and the instruction pointer as int.</li>
+	 * </ul>
+	 */
+	public static final class Batch
+	{
+		public static final int ENTER = 0;
+		public static final int EXIT = 1;
+		public static final int FIELD_READ = 2;
+		public static final int FIELD_WRITE = 3;
+		public static final int ARRAY_STORE = 4;
+		public static final int EXCEPTION = 5;
+
+		private final Thread itsThread;
+		private final int[] itsKinds;
+		private final JMember[] itsMembers;
+		private final JObject[] itsTargets;
+		private final JObject[] itsValues;
+		private final int[] itsInts;
+		private int itsSize;
+
+		Batch(Thread aThread, int aCapacity)
+		{
+			itsThread = aThread;
+			itsKinds = new int[aCapacity];
+			itsMembers = new JMember[aCapacity];
+			itsTargets = new JObject[aCapacity];
+			itsValues = new JObject[aCapacity];
+			itsInts = new int[aCapacity];
+		}
+
+		/**
+		 * Adds an event, and returns whether the batch is now full.
+		 */
+		boolean add(int aKind, JMember aMember, JObject aTarget, JObject aValue, int aInt)
+		{
+			int i = itsSize++;
+			itsKinds[i] = aKind;
+			itsMembers[i] = aMember;
+			itsTargets[i] = aTarget;
+			itsValues[i] = aValue;
+			itsInts[i] = aInt;
+			return itsSize == itsKinds.length;
+		}
+
+		/**
+		 * The thread that produced the events.
+		 */
+		public Thread getThread()
+		{
+			return itsThread;
+		}
+
+		public int size()
+		{
+			return itsSize;
+		}
+
+		public int getKind(int aIndex)
+		{
+			return itsKinds[aIndex];
+		}
+
+		public JBehavior getBehavior(int aIndex)
+		{
+			return (JBehavior) itsMembers[aIndex];
+		}
+
+		public JField getField(int aIndex)
+		{
+			return (JField) itsMembers[aIndex];
+		}
+
+		public JObject getTarget(int aIndex)
+		{
+			return itsTargets[aIndex];
+		}
+
+		public JObject getValue(int aIndex)
+		{
+			return itsValues[aIndex];
+		}
+
+		public int getInt(int aIndex)
+		{
+			return itsInts[aIndex];
+		}
+	}
+
+	/**
+	 * A bounded single-producer, single-consumer queue.
+	 */
+	static final class Ring<T>
+	{
+		private final Object[] itsItems;
+		private final int itsMask;
+
+		/**
+		 * Index of the next item to poll, only written by the consumer.
+		 */
+		private final AtomicLong itsHead = new AtomicLong();
+
+		/**
+		 * Index of the next item to offer, only written by the producer.
+		 */
+		private final AtomicLong itsTail = new AtomicLong();
+
+		/**
+		 * @param aCapacity A power of two.
+		 */
+		Ring(int aCapacity)
+		{
+			itsItems = new Object[aCapacity];
+			itsMask = aCapacity-1;
+		}
+
+		/**
+		 * Adds an item, unless the queue is full. Only called by the producer.
+		 */
+		public boolean offer(T aItem)
+		{
+			long theTail = itsTail.get();
+			if (theTail - itsHead.get() == itsItems.length) return false;
+			itsItems[(int) theTail & itsMask] = aItem;
+			itsTail.lazySet(theTail+1);
+			return true;
+		}
+
+		/**
+		 * Removes the oldest item, or returns null if the queue is empty.
+		 * Only called by the consumer.
+		 */
+		@SuppressWarnings("unchecked")
+		public T poll()
+		{
+			long theHead = itsHead.get();
+			if (theHead == itsTail.get()) return null;
+			int theIndex = (int) theHead & itsMask;
+			T theItem = (T) itsItems[theIndex];
+			itsItems[theIndex] = null;
+			itsHead.lazySet(theHead+1);
+			return theItem;
+		}
+
+		/**
+		 * Approximate number of items.
+		 */
+		public int size()
+		{
+			return (int) (itsTail.get() - itsHead.get());
+		}
+	}
+
+	private class Sink extends JEventSink
+	{
+		private final Thread itsThread;
+		
+		/**
+		 * The index of the consumer thread that serves this sink.
+		 */
+		final int itsConsumer;
+
+		/**
+		 * Batches handed over to the consumer.
+		 */
+		final Ring<Batch> itsPublished = new Ring<Batch>(itsCapacity);
+
+		/**
+		 * Delivered batches, given back by the consumer.
+		 */
+		final Ring<Batch> itsFree = new Ring<Batch>(itsCapacity);
+
+		private Batch itsBatch;
+
+		/**
+		 * Whether the queue was found full, for the {@link JEventPipeline#SAMPLE} policy.
+		 */
+		private boolean itsSampling;
+		private int itsSkipped;
+
+		public Sink(Thread aThread, int aConsumer)
+		{
+			super(JEventPipeline.this);
+			itsThread = aThread;
+			itsConsumer = aConsumer;
+			itsBatch = new Batch(aThread, itsBatchSize);
+		}
+
+		private void add(int aKind, JMember aMember, JObject aTarget, JObject aValue, int aInt)
+		{
+			if (itsBatch.add(aKind, aMember, aTarget, aValue, aInt)) publish();
+		}
+
+		private void publish()
+		{
+			Batch theBatch = itsBatch;
+			if (theBatch.itsSize == 0) return;
+
+			if (itsPolicy == SAMPLE && itsSampling)
+			{
+				if (itsPublished.size() <= itsCapacity/2) itsSampling = false;
+				else if (++itsSkipped % itsSampleRate != 0)
+				{
+					discard(theBatch);
+					return;
+				}
+			}
+
+			while (! itsPublished.offer(theBatch))
+			{
+				if (itsPolicy == BLOCK && ! itsClosed) LockSupport.parkNanos(1000);
+				else
+				{
+					if (itsPolicy == SAMPLE) itsSampling = true;
+					discard(theBatch);
+					return;
+				}
+			}
+
+			theBatch = itsFree.poll();
+			itsBatch = theBatch != null ? theBatch : new Batch(itsThread, itsBatchSize);
+		}
+
+		private void discard(Batch aBatch)
+		{
+			itsDroppedEvents.addAndGet(aBatch.itsSize);
+			aBatch.itsSize = 0;
+		}
+
+		@Override
+		public void enter(JBehavior aBehavior)
+		{
+			add(Batch.ENTER, aBehavior, null, null, 0);
+		}
+
+		@Override
+		public void exit(JBehavior aBehavior, boolean aThrown)
+		{
+			add(Batch.EXIT, aBehavior, null, null, aThrown ? 1 : 0);
+		}
+
+		@Override
+		public void fieldRead(JField aField, JObject aTarget, JObject aValue)
+		{
+			if (itsRecordFieldReads) add(Batch.FIELD_READ, aField, aTarget, aValue, 0);
+		}
+
+		@Override
+		public void fieldWrite(JField aField, JObject aTarget, JObject aValue)
+		{
+			add(Batch.FIELD_WRITE, aField, aTarget, aValue, 0);
+		}
+
+		@Override
+		public void arrayStore(JArray aArray, int aIndex, JObject aValue)
+		{
+			add(Batch.ARRAY_STORE, null, aArray, aValue, aIndex);
+		}
+
+		@Override
+		public void exception(JBehavior aBehavior, int aIP, JInstance aException)
+		{
+			add(Batch.EXCEPTION, aBehavior, aException, null, aIP);
+		}
+
+		@Override
+		public void flush()
+		{
+			publish();
+		}
+	}
+
+	private class Consumer extends Thread
+	{
+		private final int itsIndex;
+
+		public Consumer(int aIndex)
+		{
+			super("JEventPipeline-"+aIndex);
+			itsIndex = aIndex;
+			setDaemon(true);
+		}
+
+		@Override
+		public void run()
+		{
+			while (! itsClosed)
+			{
+				if (! consume(itsIndex)) LockSupport.parkNanos(50000);
+			}
+			consume(itsIndex);
+		}
+	}
+}
@@ -0,0 +1,35 @@
+/*
+ * Created on Oct 19, 2026
+ */
+package zz.jinterp;
+
+/**
+ * Receives the execution events of an interpreter, through one {@link JEventSink}
+ * per thread. A recorder is enabled with {@link JInterpreter#setRecorder(JEventRecorder)};
+ * frames that start while no recorder is set do not produce events.
+ * @author gpothier
+ */
+public abstract class JEventRecorder
+{
+	private final ThreadLocal<JEventSink> itsSinks = new ThreadLocal<JEventSink>()
+	{
+		@Override
+		protected JEventSink initialValue()
+		{
+			return createSink();
+		}
+	};
+
+	/**
+	 * Returns the sink of the current thread.
+	 */
+	public JEventSink getSink()
+	{
+		return itsSinks.get();
+	}
+
+	/**
+	 * Creates the sink of the current thread.
+	 */
+	protected abstract JEventSink createSink();
+}
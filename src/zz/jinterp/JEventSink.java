@@ -0,0 +1,89 @@
+/*
+ * Created on Oct 19, 2026
+ */
+package zz.jinterp;
+
+import zz.jinterp.JPrimitive.JDouble;
+import zz.jinterp.JPrimitive.JFloat;
+import zz.jinterp.JPrimitive.JLong;
+
+/**
+ * Receives the execution events of one thread. Sinks are only called by
+ * the thread they belong to, and should buffer events rather than
+ * process them immediately.
+ * @author gpothier
+ */
+public abstract class JEventSink
+{
+	private final JEventRecorder itsRecorder;
+
+	protected JEventSink(JEventRecorder aRecorder)
+	{
+		itsRecorder = aRecorder;
+	}
+
+	public JEventRecorder getRecorder()
+	{
+		return itsRecorder;
+	}
+
+	/**
+	 * A frame of the given behavior starts.
+	 */
+	public abstract void enter(JBehavior aBehavior);
+
+	/**
+	 * The innermost frame ends.
+	 * @param aThrown Whether the frame ends because of an exception.
+	 */
+	public abstract void exit(JBehavior aBehavior, boolean aThrown);
+
+	/**
+	 * A field is written.
+	 * @param aTarget The written object, or null for static fields.
+	 */
+	public abstract void fieldWrite(JField aField, JObject aTarget, JObject aValue);
+
+	/**
+	 * A field is read. Ignored by default, as reads are much more frequent
+	 * than writes.
+	 * @param aTarget The read object, or null for static fields.
+	 */
+	public void fieldRead(JField aField, JObject aTarget, JObject aValue)
+	{
+	}
+
+	public abstract void arrayStore(JArray aArray, int aIndex, JObject aValue);
+
+	/**
+	 * An exception reaches the innermost frame, at the given instruction.
+	 */
+	public abstract void exception(JBehavior aBehavior, int aIP, JInstance aException);
+
+	/**
+	 * Called when the outermost frame of the thread ends, so that buffered
+	 * events can be made visible.
+	 */
+	public abstract void flush();
+
+	/**
+	 * Identifies an object in events. Identifiers are cheap but not unique.
+	 */
+	public static int getObjectId(JObject aObject)
+	{
+		return aObject != null ? System.identityHashCode(aObject) : 0;
+	}
+
+	/**
+	 * Returns the bits of a value: the value itself for primitives,
+	 * the identifier for objects (see {@link #getObjectId(JObject)}).
+	 */
+	public static long getValueBits(JObject aValue)
+	{
+		if (aValue instanceof JLong) return ((JLong) aValue).v;
+		else if (aValue instanceof JDouble) return Double.doubleToRawLongBits(((JDouble) aValue).v);
+		else if (aValue instanceof JFloat) return Float.floatToRawIntBits(((JFloat) aValue).v);
+		else if (aValue instanceof JPrimitive) return ((JPrimitive) aValue).intValue();
+		else return getObjectId(aValue);
+	}
+}
@@ -0,0 +1,83 @@
+/*
+ * Created on Oct 19, 2026
+ */
+package zz.jinterp;
+
+/**
+ * An instruction budget, that bounds the time an interpreted computation can run.
+ * Fuel is enabled for a thread with {@link JInterpreter#setFuel(JFuel)}, and applies 
+ * to the invocations that the thread starts afterwards. Use a new fuel object 
+ * for each invocation to get a per-invocation budget.
+ * <p>
+ * Fuel is not consumed for each instruction: frames charge the instructions
+ * executed since their previous charge when they take a branch, and one unit
+ * when they start. Loops and calls are therefore always charged, while
+ * straight-line code is charged at its next branch.
+ * <p>
+ * When the budget runs out, the {@link Refueler} (if any) can grant more fuel, and
+ * execution resumes where it stopped. Otherwise a {@link JFuelExhaustedException} 
+ * aborts the computation.
+ * A fuel object must only be used by one thread at a time.
+ * @author gpothier
+ */
+public class JFuel
+{
+	private final Refueler itsRefueler;
+	private long itsRemaining;
+	
+	public JFuel(long aBudget)
+	{
+		this(aBudget, null);
+	}
+	
+	public JFuel(long aBudget, Refueler aRefueler)
+	{
+		itsRemaining = aBudget;
+		itsRefueler = aRefueler;
+	}
+	
+	/**
+	 * Returns the remaining fuel, which is negative after exhaustion.
+	 */
+	public long getRemaining()
+	{
+		return itsRemaining;
+	}
+	
+	/**
+	 * Adds fuel, for instance before retrying an aborted computation.
+	 */
+	public void refuel(long aAmount)
+	{
+		itsRemaining += aAmount;
+	}
+	
+	/**
+	 * Charges the given number of instructions.
+	 */
+	void consume(int aAmount)
+	{
+		if ((itsRemaining -= aAmount) < 0) exhausted();
+	}
+	
+	private void exhausted()
+	{
+		while (itsRemaining < 0)
+		{
+			long theAmount = itsRefueler != null ? itsRefueler.refuel(this) : 0;
+			if (theAmount <= 0) throw new JFuelExhaustedException(this);
+			itsRemaining += theAmount;
+		}
+	}
+	
+	/**
+	 * Called on the interpreted thread when its fuel runs out.
+	 */
+	public static interface Refueler
+	{
+		/**
+		 * Returns the amount of fuel to add, or 0 to abort the computation.
+		 */
+		public long refuel(JFuel aFuel);
+	}
+}
@@ -0,0 +1,26 @@
+/*
+ * Created on Oct 19, 2026
+ */
+package zz.jinterp;
+
+/**
+ * Thrown when the fuel of an interpreted computation runs out.
+ * @author gpothier
+ */
+public class JFuelExhaustedException extends JAbortedException
+{
+	private static final long serialVersionUID = 1L;
+	
+	private final JFuel itsFuel;
+
+	public JFuelExhaustedException(JFuel aFuel)
+	{
+		super("Fuel exhausted");
+		itsFuel = aFuel;
+	}
+	
+	public JFuel getFuel()
+	{
+		return itsFuel;
+	}
+}
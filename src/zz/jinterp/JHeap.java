@@ -0,0 +1,294 @@
+/*
+ * Created on Oct 19, 2026
+ */
+package zz.jinterp;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A version of the interpreted heap (instances, arrays, static fields and
+ * class initialization state).
+ * Heaps form a tree: {@link JInterpreter#snapshot()} freezes the current heap
+ * in constant time, and any number of copy-on-write children can then be
+ * forked from it with {@link JInterpreter#fork(JHeap)}. Children share the
+ * unmodified state of their ancestors and diverge independently.
+ * Only leaf heaps can be modified, and only through the interpreter
+ * that owns them (see {@link JInterpreter#setHeap(JHeap)}). Different threads
+ * can run against different heaps concurrently (see {@link JInterpreter#setThreadHeap(JHeap)}).
+ * @author gpothier
+ */
+public final class JHeap
+{
+	private final JHeap itsParent;
+	private volatile boolean itsFrozen = false;
+	private volatile boolean itsDiscarded = false;
+	
+	/**
+	 * The number of heaps that still use the state of this heap: the heap 
+	 * itself until it is discarded, and its children that have users.
+	 */
+	private final AtomicInteger itsUsers = new AtomicInteger(1);
+
+	JHeap(JHeap aParent)
+	{
+		if (aParent != null && ! aParent.isFrozen()) throw new IllegalArgumentException("Parent heap is not frozen");
+		itsParent = aParent;
+		if (itsParent != null) itsParent.itsUsers.incrementAndGet();
+	}
+
+	public JHeap getParent()
+	{
+		return itsParent;
+	}
+
+	/**
+	 * A frozen heap is a snapshot: its state can be shared but not modified.
+	 */
+	public boolean isFrozen()
+	{
+		return itsFrozen;
+	}
+
+	void freeze()
+	{
+		itsFrozen = true;
+	}
+
+	/**
+	 * Indicates that this heap will not be used anymore, so that
+	 * the state it holds can be reclaimed once all its descendants
+	 * are discarded too.
+	 */
+	public synchronized void discard()
+	{
+		if (itsDiscarded) return;
+		itsDiscarded = true;
+		release();
+	}
+	
+	private void release()
+	{
+		if (itsUsers.decrementAndGet() == 0 && itsParent != null) itsParent.release();
+	}
+	
+	/**
+	 * Whether the versions of this heap can be removed from cells: the heap 
+	 * and all its descendants are discarded.
+	 */
+	boolean isReclaimable()
+	{
+		return itsUsers.get() == 0;
+	}
+
+	public boolean isDiscarded()
+	{
+		return itsDiscarded;
+	}
+
+	/**
+	 * Holds the successive versions of a piece of state (eg. the fields of an object),
+	 * one for each heap in which it was modified.
+	 * <p>
+	 * The state of the heap in which the cell was created is held directly by the cell,
+	 * so that programs that do not take snapshots do not pay for versions. 
+	 * The state resolved for the last other heap that accessed the cell is cached.
+	 * <p>
+	 * Heaps that are not descendants of the heap in which the cell was created
+	 * see the state the cell was created with. This is the case of the
+	 * static state of classes loaded after a snapshot, seen from another fork 
+	 * of the snapshot. For mutable state the creation state is the object
+	 * that the creating heap modifies in place, so objects that are shared
+	 * between heaps, such as interned strings, are seen with their latest state.
+	 * @param <T> The type of the state.
+	 */
+	public static abstract class Cell<T>
+	{
+		/**
+		 * The heap in which the cell was created.
+		 */
+		private final JHeap itsHeap;
+		
+		/**
+		 * The state in the creating heap.
+		 */
+		private T itsState;
+		
+		/**
+		 * The state the cell was created with, visible from every heap.
+		 */
+		private final T itsInitial;
+		
+		/**
+		 * The states of the other heaps that modified the cell, most recent first.
+		 * Guarded by the cell.
+		 */
+		private Version<T> itsVersions;
+		
+		/**
+		 * The state resolved for the last other heap that accessed the cell:
+		 * either the version of that heap, or a read-only alias of the 
+		 * state of one of its ancestors.
+		 */
+		private volatile Version<T> itsResolved;
+
+		/**
+		 * @param aHeap The heap in which the state is created.
+		 */
+		public Cell(JHeap aHeap, T aState)
+		{
+			itsHeap = aHeap;
+			itsState = aState;
+			itsInitial = aState;
+		}
+
+		/**
+		 * Returns the state visible from the given heap, which must not be modified.
+		 */
+		public T get(JHeap aHeap)
+		{
+			if (aHeap == itsHeap) return itsState;
+			Version<T> theResolved = itsResolved;
+			if (theResolved == null || theResolved.heap != aHeap) theResolved = resolve(aHeap);
+			return theResolved.state;
+		}
+
+		/**
+		 * Returns a version of the state that can be modified in the given heap,
+		 * copying it from the nearest ancestor if needed.
+		 */
+		public T getWritable(JHeap aHeap)
+		{
+			if (aHeap == itsHeap) return itsState;
+			Version<T> theResolved = itsResolved;
+			if (theResolved != null && theResolved.heap == aHeap && theResolved.owned) return theResolved.state;
+
+			synchronized (this)
+			{
+				theResolved = resolve(aHeap);
+				if (! theResolved.owned) theResolved = addVersion(aHeap, copy(theResolved.state));
+				return theResolved.state;
+			}
+		}
+
+		/**
+		 * Replaces the state visible from the given heap.
+		 */
+		public void set(JHeap aHeap, T aState)
+		{
+			if (aHeap == itsHeap)
+			{
+				itsState = aState;
+				return;
+			}
+
+			synchronized (this)
+			{
+				Version<T> theResolved = resolve(aHeap);
+				if (theResolved.owned) theResolved.state = aState;
+				else addVersion(aHeap, aState);
+			}
+		}
+
+		/**
+		 * Returns a copy of the given state, that can be modified independently.
+		 */
+		protected abstract T copy(T aState);
+
+		/**
+		 * Finds the state visible from the given heap, other than the creating heap,
+		 * and caches it. The versions of discarded heaps are removed on the way.
+		 */
+		private synchronized Version<T> resolve(JHeap aHeap)
+		{
+			Version<T> theResolved = itsResolved;
+			if (theResolved != null && theResolved.heap == aHeap) return theResolved;
+			
+			Version<T> theVersions = itsVersions = prune(itsVersions);
+			theResolved = null;
+			for (JHeap theHeap = aHeap; theHeap != null && theResolved == null; theHeap = theHeap.itsParent)
+			{
+				if (theHeap == itsHeap) theResolved = new Version<T>(aHeap, itsState, false, null);
+				else
+				{
+					Version<T> theVersion = find(theVersions, theHeap);
+					if (theVersion == null) continue;
+					
+					// Ancestors are frozen, so their state can be aliased
+					theResolved = theHeap == aHeap ? theVersion : new Version<T>(aHeap, theVersion.state, false, null);
+				}
+			}
+			if (theResolved == null) theResolved = new Version<T>(aHeap, itsInitial, false, null);
+			
+			itsResolved = theResolved;
+			return theResolved;
+		}
+		
+		private Version<T> addVersion(JHeap aHeap, T aState)
+		{
+			Version<T> theVersion = new Version<T>(aHeap, aState, true, prune(itsVersions));
+			itsVersions = theVersion;
+			itsResolved = theVersion;
+			return theVersion;
+		}
+
+		private static <T> Version<T> find(Version<T> aVersions, JHeap aHeap)
+		{
+			for (Version<T> theVersion = aVersions; theVersion != null; theVersion = theVersion.next)
+			{
+				if (theVersion.heap == aHeap) return theVersion;
+			}
+			return null;
+		}
+
+		/**
+		 * Unlinks the versions of the heaps whose descendants are all discarded.
+		 * Versions are unlinked in place, as the cached version must remain in the chain.
+		 */
+		private static <T> Version<T> prune(Version<T> aHead)
+		{
+			while (aHead != null && aHead.heap.isReclaimable()) aHead = aHead.next;
+			for (Version<T> theVersion = aHead; theVersion != null; theVersion = theVersion.next)
+			{
+				while (theVersion.next != null && theVersion.next.heap.isReclaimable()) theVersion.next = theVersion.next.next;
+			}
+			return aHead;
+		}
+	}
+
+	/**
+	 * A cell whose state is immutable and can therefore be shared between versions.
+	 */
+	public static class ValueCell<T> extends Cell<T>
+	{
+		public ValueCell(JHeap aHeap, T aState)
+		{
+			super(aHeap, aState);
+		}
+
+		@Override
+		protected T copy(T aState)
+		{
+			return aState;
+		}
+	}
+
+	private static final class Version<T>
+	{
+		final JHeap heap;
+		T state;
+		
+		/**
+		 * Whether the state belongs to the heap, or is an alias of the state of an ancestor.
+		 */
+		final boolean owned;
+		Version<T> next;
+
+		public Version(JHeap aHeap, T aState, boolean aOwned, Version<T> aNext)
+		{
+			heap = aHeap;
+			state = aState;
+			owned = aOwned;
+			next = aNext;
+		}
+	}
+}
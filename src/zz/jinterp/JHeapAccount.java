@@ -0,0 +1,320 @@
+/*
+ * Created on Oct 19, 2026
+ */
+package zz.jinterp;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import zz.jinterp.JNormalBehavior.ExceptionThrown;
+import zz.jinterp.JNormalBehavior.JFrame;
+
+/**
+ * Accounts for the memory used by interpreted objects, and optionally limits it.
+ * An account applies either to a whole interpreter ({@link JInterpreter#setHeapAccount(JHeapAccount)})
+ * or to the invocations of a thread ({@link JInterpreter#setThreadHeapAccount(JHeapAccount)}).
+ * <p>
+ * Each allocation is charged an estimation of the size the object would have
+ * in a JVM, and the charge is released when the object is garbage collected.
+ * Arrays created by interpreted code are instead charged an estimation of 
+ * their host representation, before they are allocated, so that large arrays 
+ * cannot exhaust the host heap. Instances are still charged their JVM size, 
+ * which is less than their host representation: the limit does not 
+ * strictly bound host memory.
+ * When an allocation exceeds the limit, the host garbage collector is run
+ * to release the charges of unreachable objects, and if the limit is still
+ * exceeded an interpreted {@link OutOfMemoryError} is thrown. Collections are 
+ * rate-limited: allocations that exceed the limit less than {@link #GC_INTERVAL}
+ * after the previous collection of the account wait for the end of the interval,
+ * and threads that wait together share one collection.
+ * <p>
+ * Each charged object is tracked by a weak reference and an entry in a
+ * concurrent set, about 80 bytes of host memory that are not charged.
+ * For accounts that mostly see small objects, the host memory used is
+ * therefore up to several times the charged size.
+ * @author gpothier
+ */
+public class JHeapAccount
+{
+	private static final int HEADER_SIZE = 16;
+	private static final int REFERENCE_SIZE = 4;
+	
+	/**
+	 * Minimum time between two garbage collections run by an account, in milliseconds.
+	 */
+	public static final long GC_INTERVAL = 20;
+	
+	/**
+	 * Set while an {@link OutOfMemoryError} is being created, so that its
+	 * own allocations do not fail.
+	 */
+	private static final ThreadLocal<Boolean> itsRaising = new ThreadLocal<Boolean>();
+	
+	private final long itsLimit;
+	private final AtomicLong itsLive = new AtomicLong();
+	private final AtomicLong itsAllocated = new AtomicLong();
+	private volatile long itsPeak;
+	
+	/**
+	 * Number of garbage collections run by the account.
+	 */
+	private volatile int itsCollections;
+	
+	/**
+	 * Time of the last collection (see {@link System#nanoTime()}), guarded by the account.
+	 */
+	private long itsLastCollection = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(GC_INTERVAL);
+	
+	private final ReferenceQueue<JObject> itsQueue = new ReferenceQueue<JObject>();
+	
+	/**
+	 * Keeps the charges of live objects reachable.
+	 */
+	private final Set<Charge> itsCharges = Collections.newSetFromMap(new ConcurrentHashMap<Charge, Boolean>());
+	
+	/**
+	 * Creates an account without limit.
+	 */
+	public JHeapAccount()
+	{
+		this(Long.MAX_VALUE);
+	}
+	
+	/**
+	 * @param aLimit Maximum size of the live objects, in bytes.
+	 */
+	public JHeapAccount(long aLimit)
+	{
+		itsLimit = aLimit;
+	}
+	
+	public long getLimit()
+	{
+		return itsLimit;
+	}
+	
+	/**
+	 * Estimated size of the live objects, in bytes. Objects that are unreachable
+	 * but not yet collected are counted.
+	 */
+	public long getLive()
+	{
+		release();
+		return itsLive.get();
+	}
+	
+	/**
+	 * Highest value of {@link #getLive()} so far (approximate).
+	 */
+	public long getPeak()
+	{
+		return itsPeak;
+	}
+	
+	/**
+	 * Estimated size of all the objects allocated so far, in bytes.
+	 */
+	public long getAllocated()
+	{
+		return itsAllocated.get();
+	}
+	
+	/**
+	 * Charges a new object to this account.
+	 * @throws ExceptionThrown An interpreted {@link OutOfMemoryError} if the limit is exceeded.
+	 */
+	void charge(JInterpreter aInterpreter, JFrame aParentFrame, JObject aObject, long aSize)
+	{
+		reserve(aInterpreter, aParentFrame, aSize);
+		track(aObject, aSize);
+	}
+	
+	/**
+	 * Charges an object that is about to be allocated. The reservation must then
+	 * be either attached to the object with {@link #track(JObject, long)}, 
+	 * or given back with {@link #cancel(long)}.
+	 * @throws ExceptionThrown An interpreted {@link OutOfMemoryError} if the limit is exceeded.
+	 */
+	void reserve(JInterpreter aInterpreter, JFrame aParentFrame, long aSize)
+	{
+		release();
+		long theLive = itsLive.addAndGet(aSize);
+		if (theLive > itsLimit && itsRaising.get() == null)
+		{
+			collect();
+			theLive = reclaim();
+			if (theLive > itsLimit)
+			{
+				itsLive.addAndGet(-aSize);
+				throw new ExceptionThrown(newOutOfMemoryError(aInterpreter, aParentFrame, aSize));
+			}
+		}
+		if (theLive > itsPeak) itsPeak = theLive;
+	}
+	
+	/**
+	 * Attaches a reservation to the allocated object, so that it is released
+	 * when the object is collected.
+	 */
+	void track(JObject aObject, long aSize)
+	{
+		itsAllocated.addAndGet(aSize);
+		itsCharges.add(new Charge(aObject, aSize, itsQueue));
+	}
+	
+	/**
+	 * Gives back a reservation whose object could not be allocated.
+	 */
+	void cancel(long aSize)
+	{
+		itsLive.addAndGet(-aSize);
+	}
+	
+	private JInstance newOutOfMemoryError(JInterpreter aInterpreter, JFrame aParentFrame, long aSize)
+	{
+		itsRaising.set(Boolean.TRUE);
+		try
+		{
+			return aInterpreter.new_Exception(
+					"OutOfMemoryError", 
+					aParentFrame, 
+					"Cannot allocate "+aSize+" bytes, heap limit is "+itsLimit+" bytes");
+		}
+		finally
+		{
+			itsRaising.remove();
+		}
+	}
+	
+	/**
+	 * Releases the charges of the objects that were collected.
+	 */
+	private void release()
+	{
+		Reference<? extends JObject> theReference;
+		while ((theReference = itsQueue.poll()) != null) release((Charge) theReference);
+	}
+	
+	private void release(Charge aCharge)
+	{
+		if (itsCharges.remove(aCharge)) itsLive.addAndGet(-aCharge.itsSize);
+	}
+	
+	/**
+	 * Runs the garbage collector, at most once per {@link #GC_INTERVAL}.
+	 * If another thread ran a collection while the current thread was waiting
+	 * for it, that collection is used instead.
+	 */
+	private void collect()
+	{
+		int theCollections = itsCollections;
+		synchronized (this)
+		{
+			if (itsCollections != theCollections) return;
+			
+			long theWait = itsLastCollection + TimeUnit.MILLISECONDS.toNanos(GC_INTERVAL) - System.nanoTime();
+			if (theWait > 0) LockSupport.parkNanos(theWait);
+			System.gc();
+			itsLastCollection = System.nanoTime();
+			itsCollections++;
+		}
+	}
+	
+	/**
+	 * Waits a little for the references cleared by a garbage collection to be 
+	 * enqueued, and releases their charges.
+	 * @return The remaining live size.
+	 */
+	private long reclaim()
+	{
+		try
+		{
+			Reference<? extends JObject> theReference;
+			while (itsLive.get() > itsLimit && (theReference = itsQueue.remove(10)) != null) 
+			{
+				release((Charge) theReference);
+				release();
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		return itsLive.get();
+	}
+	
+	/**
+	 * Estimated size of an instance of the given class.
+	 */
+	public static long getInstanceSize(JClass aClass)
+	{
+		long theSize = HEADER_SIZE;
+		for (JClass theClass = aClass; theClass != null; theClass = theClass.getSuperclass())
+		{
+			for (JField theField : theClass.getFields())
+			{
+				if (theField instanceof JStaticField) continue;
+				theSize += getValueSize(theField.getType());
+			}
+		}
+		return align(theSize);
+	}
+	
+	/**
+	 * Estimated size of an array.
+	 * @param aElementSize Size of each element, see {@link #getValueSize(JType)}.
+	 */
+	public static long getArraySize(int aLength, int aElementSize)
+	{
+		return align(HEADER_SIZE + (long) aLength*aElementSize);
+	}
+	
+	/**
+	 * Estimated size of the host representation of an array created by interpreted 
+	 * code: one reference per element, plus, for arrays of primitives, one boxed 
+	 * value per element as if the array were filled.
+	 * @param aElementSize Size of each element in a JVM (see {@link #getValueSize(JType)}), 
+	 * or 0 for arrays of references, whose elements are charged separately.
+	 */
+	public static long getHostArraySize(int aLength, int aElementSize)
+	{
+		long theElementSize = REFERENCE_SIZE;
+		if (aElementSize > 0) theElementSize += align(HEADER_SIZE + aElementSize);
+		return align(HEADER_SIZE + aLength*theElementSize);
+	}
+	
+	/**
+	 * Size of a value of the given type in fields and arrays.
+	 * References are assumed to be compressed.
+	 */
+	public static int getValueSize(JType aType)
+	{
+		if (aType == JPrimitiveType.LONG || aType == JPrimitiveType.DOUBLE) return 8;
+		else if (aType == JPrimitiveType.CHAR || aType == JPrimitiveType.SHORT) return 2;
+		else if (aType == JPrimitiveType.BYTE || aType == JPrimitiveType.BOOLEAN) return 1;
+		else return 4;
+	}
+	
+	private static long align(long aSize)
+	{
+		return (aSize + 7) & ~7L;
+	}
+	
+	private static class Charge extends WeakReference<JObject>
+	{
+		private final long itsSize;
+		
+		public Charge(JObject aObject, long aSize, ReferenceQueue<JObject> aQueue)
+		{
+			super(aObject, aQueue);
+			itsSize = aSize;
+		}
+	}
+}
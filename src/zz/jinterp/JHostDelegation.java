@@ -0,0 +1,279 @@
+/*
+ * Created on Oct 19, 2026
+ */
+package zz.jinterp;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.objectweb.asm.Type;
+
+import zz.jinterp.JNormalBehavior.ExceptionThrown;
+import zz.jinterp.JNormalBehavior.JFrame;
+
+/**
+ * An allow-list of pure host methods that interpreted code calls directly
+ * on the host JVM instead of interpreting their bytecode.
+ * Only static methods whose arguments and result are primitives or strings
+ * can be delegated; they are called through a {@link JDirectInvoker}.
+ * Host exceptions are rethrown as interpreted exceptions of the same class,
+ * or as interpreted {@link RuntimeException}s or {@link InternalError}s if that class 
+ * cannot be instantiated by the interpreter. Their causes are converted as well.
+ * <p>
+ * Delegated methods are registered as natives (see {@link #install(JInterpreter)}),
+ * so they must be installed before the classes that declare them are loaded.
+ * @author gpothier
+ */
+public class JHostDelegation
+{
+	private final List<Plan> itsPlans = new ArrayList<Plan>();
+
+	/**
+	 * Returns an allow-list of common pure JDK methods: the delegable
+	 * methods of {@link Math} and {@link StrictMath} except random(), 
+	 * and the conversion and classification methods of the wrapper classes.
+	 */
+	public static JHostDelegation createDefault()
+	{
+		JHostDelegation theDelegation = new JHostDelegation();
+		theDelegation.allowAll(Math.class, "random");
+		theDelegation.allowAll(StrictMath.class, "random");
+
+		theDelegation.allow(Integer.class, "toString", int.class);
+		theDelegation.allow(Integer.class, "toString", int.class, int.class);
+		theDelegation.allow(Integer.class, "toHexString", int.class);
+		theDelegation.allow(Integer.class, "toBinaryString", int.class);
+		theDelegation.allow(Integer.class, "parseInt", String.class);
+		theDelegation.allow(Integer.class, "parseInt", String.class, int.class);
+		theDelegation.allow(Integer.class, "bitCount", int.class);
+		theDelegation.allow(Integer.class, "numberOfLeadingZeros", int.class);
+		theDelegation.allow(Integer.class, "numberOfTrailingZeros", int.class);
+
+		theDelegation.allow(Long.class, "toString", long.class);
+		theDelegation.allow(Long.class, "toString", long.class, int.class);
+		theDelegation.allow(Long.class, "toHexString", long.class);
+		theDelegation.allow(Long.class, "parseLong", String.class);
+		theDelegation.allow(Long.class, "parseLong", String.class, int.class);
+		theDelegation.allow(Long.class, "bitCount", long.class);
+
+		theDelegation.allow(Double.class, "toString", double.class);
+		theDelegation.allow(Double.class, "parseDouble", String.class);
+		theDelegation.allow(Float.class, "toString", float.class);
+		theDelegation.allow(Float.class, "parseFloat", String.class);
+
+		theDelegation.allow(Character.class, "isDigit", char.class);
+		theDelegation.allow(Character.class, "isLetter", char.class);
+		theDelegation.allow(Character.class, "isLetterOrDigit", char.class);
+		theDelegation.allow(Character.class, "isWhitespace", char.class);
+		theDelegation.allow(Character.class, "isUpperCase", char.class);
+		theDelegation.allow(Character.class, "isLowerCase", char.class);
+		theDelegation.allow(Character.class, "toUpperCase", char.class);
+		theDelegation.allow(Character.class, "toLowerCase", char.class);
+		theDelegation.allow(Character.class, "digit", char.class, int.class);
+
+		return theDelegation;
+	}
+
+	/**
+	 * Allows the specified method.
+	 * @throws IllegalArgumentException if the method cannot be delegated.
+	 */
+	public void allow(Class<?> aClass, String aName, Class<?>... aParameterTypes)
+	{
+		Method theMethod;
+		try
+		{
+			theMethod = aClass.getMethod(aName, aParameterTypes);
+		}
+		catch (NoSuchMethodException e)
+		{
+			throw new IllegalArgumentException(e);
+		}
+
+		if (! isDelegable(theMethod)) throw new IllegalArgumentException("Cannot delegate: "+theMethod);
+		itsPlans.add(new Plan(theMethod));
+	}
+
+	/**
+	 * Allows all the public static methods of the given class that can be delegated.
+	 * The caller must check that they are all pure.
+	 * @param aExcluded Names of the methods that must not be delegated.
+	 */
+	public void allowAll(Class<?> aClass, String... aExcluded)
+	{
+		List<String> theExcluded = Arrays.asList(aExcluded);
+		for (Method theMethod : aClass.getDeclaredMethods())
+		{
+			if (theExcluded.contains(theMethod.getName())) continue;
+			if (Modifier.isPublic(theMethod.getModifiers()) && isDelegable(theMethod)) itsPlans.add(new Plan(theMethod));
+		}
+	}
+
+	private static boolean isDelegable(Method aMethod)
+	{
+		if (! Modifier.isStatic(aMethod.getModifiers())) return false;
+		if (! Modifier.isPublic(aMethod.getDeclaringClass().getModifiers())) return false;
+		for (Class<?> theType : aMethod.getParameterTypes()) if (! isConvertible(theType)) return false;
+
+		Class<?> theReturnType = aMethod.getReturnType();
+		return theReturnType != void.class && isConvertible(theReturnType);
+	}
+
+	private static boolean isConvertible(Class<?> aType)
+	{
+		return (aType.isPrimitive() && aType != void.class) || aType == String.class;
+	}
+
+	/**
+	 * Registers the allowed methods in the native registry of the given interpreter.
+	 * @throws IllegalStateException if the interpreter already loaded a class 
+	 * that declares an allowed method: its behaviors are already bound, 
+	 * and delegation would not apply.
+	 */
+	public void install(JInterpreter aInterpreter)
+	{
+		for (Plan thePlan : itsPlans)
+		{
+			if (aInterpreter.isLoaded(thePlan.className)) 
+			{
+				throw new IllegalStateException("Class already loaded, cannot delegate: "+thePlan.method);
+			}
+		}
+		
+		for (Plan thePlan : itsPlans)
+		{
+			aInterpreter.getNativeRegistry().register(
+					thePlan.className,
+					thePlan.method.getName(),
+					thePlan.desc,
+					new HostNative(aInterpreter, thePlan));
+		}
+	}
+
+	/**
+	 * How to call a host method.
+	 */
+	private static class Plan
+	{
+		final Method method;
+		final String className;
+		final String desc;
+		final JDirectInvoker invoker;
+
+		public Plan(Method aMethod)
+		{
+			method = aMethod;
+			className = Type.getInternalName(aMethod.getDeclaringClass());
+			desc = Type.getMethodDescriptor(aMethod);
+			invoker = JDirectInvoker.getHost(aMethod);
+		}
+	}
+
+	/**
+	 * Calls a host method.
+	 */
+	private static class HostNative extends JNative.Generic
+	{
+		/**
+		 * Maximum number of causes of a host exception that are converted.
+		 */
+		private static final int MAX_CAUSES = 8;
+		
+		private final JInterpreter itsInterpreter;
+		private final Plan itsPlan;
+		
+		/**
+		 * The interpreted class that declares the method, which converts strings.
+		 * Retrieved on the first call, when the class is loaded.
+		 */
+		private volatile JClass itsOwner;
+
+		public HostNative(JInterpreter aInterpreter, Plan aPlan)
+		{
+			itsInterpreter = aInterpreter;
+			itsPlan = aPlan;
+		}
+
+		@Override
+		public JObject invoke(JFrame aParentFrame, JObject aTarget, JObject[] aArgs)
+		{
+			JClass theOwner = itsOwner;
+			if (theOwner == null)
+			{
+				theOwner = itsInterpreter.getClass(itsPlan.className);
+				itsOwner = theOwner;
+			}
+			
+			try
+			{
+				return itsPlan.invoker.invoke(theOwner, aParentFrame, null, aArgs);
+			}
+			catch (ExceptionThrown e)
+			{
+				throw e;
+			}
+			catch (Throwable e)
+			{
+				throw new ExceptionThrown(toInterpreted(aParentFrame, e, 0));
+			}
+		}
+		
+		/**
+		 * Converts a host exception and its causes to interpreted exceptions. 
+		 * Exceptions whose class cannot be loaded by the interpreter or has no 
+		 * (String) constructor are converted to a {@link RuntimeException}, or 
+		 * an {@link InternalError} for errors, whose message is the description of 
+		 * the host exception.
+		 */
+		private JInstance toInterpreted(JFrame aParentFrame, Throwable aException, int aDepth)
+		{
+			JInstance theException = newException(aParentFrame, Type.getInternalName(aException.getClass()), aException.getMessage());
+			if (theException == null)
+			{
+				String theClassName = aException instanceof Error ? "java/lang/InternalError" : "java/lang/RuntimeException";
+				theException = newException(aParentFrame, theClassName, aException.toString());
+				if (theException == null) throw new RuntimeException("Cannot convert host exception", aException);
+			}
+			
+			Throwable theCause = aException.getCause();
+			if (theCause != null && theCause != aException && aDepth < MAX_CAUSES)
+			{
+				JBehavior theInitCause = theException.getType().getVirtualBehavior(
+						"initCause", 
+						"(Ljava/lang/Throwable;)Ljava/lang/Throwable;");
+				if (theInitCause != null) 
+				{
+					theInitCause.invoke(aParentFrame, theException, toInterpreted(aParentFrame, theCause, aDepth+1));
+				}
+			}
+			return theException;
+		}
+		
+		/**
+		 * Instantiates the given interpreted exception class with a message,
+		 * or returns null if the class cannot be loaded or has no (String) constructor.
+		 */
+		private JInstance newException(JFrame aParentFrame, String aClassName, String aMessage)
+		{
+			JClass theClass;
+			try
+			{
+				theClass = itsInterpreter.getClass(aClassName);
+			}
+			catch (RuntimeException e)
+			{
+				return null;
+			}
+			
+			JBehavior theConstructor = theClass != null ? theClass.getBehavior("<init>", "(Ljava/lang/String;)V") : null;
+			if (theConstructor == null) return null;
+			
+			JInstance theException = theClass.newInstance();
+			theConstructor.invoke(aParentFrame, theException, aMessage != null ? itsInterpreter.toJString(aMessage) : null);
+			return theException;
+		}
+	}
+}
@@ -31,9 +31,6 @@ Inc. MD5 Message-Digest Algorithm".
 */
 package zz.jinterp;
 
-import java.util.ArrayList;
-import java.util.List;
-
 public abstract class JInstance extends JObject
 {
 	private final JClass itsClass;
@@ -41,7 +38,9 @@ public abstract class JInstance extends JObject
 	/**
 	 * Used only for instances of Throwable.
 	 */
-	private List<String> itsStackTraceInfo;
+	private JStackTrace itsStackTrace;
+	
+	private JMonitor itsMonitor;
 	
 	public JInstance(JClass aClass)
 	{
@@ -57,10 +56,17 @@ public abstract class JInstance extends JObject
 	public abstract JObject getFieldValue(JField aField);
 	public abstract void putFieldValue(JField aField, JObject aValue);
 	
-	public List<String> getStackTraceInfo()
+	@Override
+	public synchronized JMonitor getMonitor()
+	{
+		if (itsMonitor == null) itsMonitor = new JMonitor();
+		return itsMonitor;
+	}
+	
+	public JStackTrace getStackTrace()
 	{
-		if (itsStackTraceInfo == null) itsStackTraceInfo = new ArrayList<String>();
-		return itsStackTraceInfo;
+		if (itsStackTrace == null) itsStackTrace = new JStackTrace();
+		return itsStackTrace;
 	}
 	
 	@Override
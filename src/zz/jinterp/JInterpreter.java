@@ -31,14 +31,16 @@ Inc. MD5 Message-Digest Algorithm".
 */
 package zz.jinterp;
 
-import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.ClassNode;
 
 import zz.jinterp.JClass_java_lang_Class.Instance;
+import zz.jinterp.JNormalBehavior.ExceptionThrown;
 import zz.jinterp.JNormalBehavior.JFrame;
 import zz.jinterp.JPrimitive.JBoolean;
 import zz.jinterp.JPrimitive.JByte;
@@ -63,12 +65,68 @@ public abstract class JInterpreter
 	 */
 	public static final JObject[] NOARGS = {};
 	
+	private static final Object VIRTUAL_THREAD_BUILDER;
+	private static final Method VIRTUAL_THREAD_UNSTARTED;
+	
+	static
+	{
+		Object theBuilder = null;
+		Method theUnstarted = null;
+		try
+		{
+			theBuilder = Thread.class.getMethod("ofVirtual").invoke(null);
+			theUnstarted = Class.forName("java.lang.Thread$Builder").getMethod("unstarted", Runnable.class);
+		}
+		catch (Exception e)
+		{
+			// Virtual threads are not available on this host JVM
+			theBuilder = null;
+			theUnstarted = null;
+		}
+		VIRTUAL_THREAD_BUILDER = theBuilder;
+		VIRTUAL_THREAD_UNSTARTED = theUnstarted;
+	}
+	
 	private Map<String, JClass> itsLoadedClasses;
 	private Map<JType, JClass_java_lang_Class.Instance> itsLoadedMetaclasses;
 	private JClass_java_lang_Object itsObjectClass;
 	private JClass_java_lang_Class itsMetaclassClass;
+	
+	private volatile JHeap itsHeap = new JHeap(null);
+	private final ThreadLocal<JHeap> itsThreadHeap = new ThreadLocal<JHeap>();
+	
+	/**
+	 * Whether a thread heap was ever set, to avoid looking them up otherwise.
+	 */
+	private volatile boolean itsThreadHeaps;
+	
+	private final JNativeRegistry itsNativeRegistry = new JNativeRegistry(JNativeRegistry.getDefault(), this);
+	
+	private volatile JProfiler itsProfiler;
+	private volatile JSampler itsSampler;
+	private volatile JEventRecorder itsRecorder;
+	
+	private final JMetrics itsMetrics = new JMetrics(this);
+	
+	private volatile JHeapAccount itsHeapAccount;
+	private volatile int itsSuperinstructions = JSuperinstructions.ALL;
+	private final ThreadLocal<JHeapAccount> itsThreadHeapAccount = new ThreadLocal<JHeapAccount>();
+	
+	/**
+	 * Whether a thread heap account was ever set, to avoid looking them up otherwise.
+	 */
+	private volatile boolean itsThreadHeapAccounts;
+	
+	private final ThreadLocal<JFuel> itsFuel = new ThreadLocal<JFuel>();
+	private final ThreadLocal<JCancellation> itsCancellation = new ThreadLocal<JCancellation>();
+	
+	/**
+	 * Nesting level of {@link #getClass(String)}, so that the loading time 
+	 * of classes loaded by other classes is not counted twice.
+	 */
+	private int itsLoadDepth;
 
-	private void checkInit()
+	private synchronized void checkInit()
 	{
 		if (itsLoadedClasses == null) init();
 	}
@@ -84,17 +142,7 @@ public abstract class JInterpreter
 		itsLoadedClasses.put(JClass_java_lang_Object.NAME, itsObjectClass);
 		itsLoadedClasses.put(JClass_java_lang_Class.NAME, itsMetaclassClass);
 		
-		loadNativeClass(JClass_java_lang_System.NAME);
-		loadNativeClass(JClass_java_lang_Float.NAME);
-		loadNativeClass(JClass_java_lang_Double.NAME);
-		loadNativeClass(JClass_java_lang_String.NAME);
-		loadNativeClass(JClass_java_io_FileSystem.NAME);
-		loadNativeClass(JClass_java_io_UnixFileSystem.NAME);
-		loadNativeClass(JClass_java_lang_Throwable.NAME);
-		loadNativeClass(JClass_java_security_AccessController.NAME);
-		loadNativeClass(JClass_sun_reflect_ReflectionFactory$GetReflectionFactoryAction.NAME);
-		loadNativeClass(JClass_sun_reflect_ReflectionFactory.NAME);
-		loadNativeClass(JClass_java_io_ObjectStreamClass.NAME);
+		// Other native classes are created when first used (see JNativeClasses)
 	}
 	
 	/**
@@ -103,40 +151,252 @@ public abstract class JInterpreter
 	 */
 	protected abstract byte[] getClassBytecode(String aName);
 	
-	public JClass getClass(String aName)
+	public synchronized JClass getClass(String aName)
 	{
 		checkInit();
 		JClass theClass = itsLoadedClasses.get(aName);
 		if (theClass == null)
 		{
-			byte[] theBytecode = getClassBytecode(aName);
-			theClass = new JNormalClass(this, JNormalClass.readClass(theBytecode));
-			itsLoadedClasses.put(aName, theClass);
-			theClass.init();
+			long theStartTime = System.nanoTime();
+			itsLoadDepth++;
+			try
+			{
+				byte[] theBytecode = getClassBytecode(aName);
+				ClassNode theClassNode = JNormalClass.readClass(theBytecode);
+				JNativeClasses.Factory theFactory = JNativeClasses.get(aName);
+				theClass = theFactory != null ? 
+						theFactory.create(this, theClassNode) 
+						: new JNormalClass(this, theClassNode);
+				
+				itsLoadedClasses.put(aName, theClass);
+				theClass.init();
+			}
+			finally
+			{
+				JMetrics.Stripe theStripe = itsMetrics.getStripe();
+				if (--itsLoadDepth == 0) theStripe.add(JMetrics.CLASS_LOAD_TIME, System.nanoTime() - theStartTime);
+				theStripe.inc(JMetrics.CLASSES_LOADED);
+			}
 		}
 		return theClass;
 	}
 	
-	protected void loadNativeClass(String aName)
+	/**
+	 * Whether the given class has already been loaded by this interpreter.
+	 * @param aName Class name in JVM notation
+	 */
+	public synchronized boolean isLoaded(String aName)
 	{
-		checkInit();
-		byte[] theBytecode = getClassBytecode(aName);
-		ClassNode theClassNode = JNormalClass.readClass(theBytecode);
+		return itsLoadedClasses != null && itsLoadedClasses.containsKey(aName);
+	}
+	
+	/**
+	 * Returns the registry of the native implementations supplied by the application
+	 * for this interpreter. Implementations must be registered before the classes
+	 * they implement are loaded.
+	 */
+	public JNativeRegistry getNativeRegistry()
+	{
+		return itsNativeRegistry;
+	}
+	
+	/**
+	 * Returns the counters of this interpreter, which are always enabled.
+	 */
+	public JMetrics getMetrics()
+	{
+		return itsMetrics;
+	}
+	
+	/**
+	 * Returns the profiler that is currently enabled, or null.
+	 */
+	public JProfiler getProfiler()
+	{
+		return itsProfiler;
+	}
+	
+	/**
+	 * Enables profiling with the given profiler, or disables it if null.
+	 * Only the frames that start after the call are affected.
+	 */
+	public void setProfiler(JProfiler aProfiler)
+	{
+		itsProfiler = aProfiler;
+	}
+	
+	/**
+	 * Returns the sequences that are fused into superinstructions, 
+	 * as a combination of the {@link JSuperinstructions} flags.
+	 */
+	public int getSuperinstructions()
+	{
+		return itsSuperinstructions;
+	}
+	
+	/**
+	 * Sets the sequences that are fused into superinstructions (all by default).
+	 * Only the behaviors that are prepared after the call are affected.
+	 * @param aSuperinstructions A combination of the {@link JSuperinstructions} flags.
+	 */
+	public void setSuperinstructions(int aSuperinstructions)
+	{
+		itsSuperinstructions = aSuperinstructions;
+	}
+	
+	/**
+	 * Returns the sampler for which frames are published, or null.
+	 */
+	public JSampler getSampler()
+	{
+		return itsSampler;
+	}
+	
+	/**
+	 * Publishes frames for the given sampler, or stops publishing them if null.
+	 * Only the frames that start after the call are published.
+	 */
+	public void setSampler(JSampler aSampler)
+	{
+		itsSampler = aSampler;
+	}
+	
+	/**
+	 * Returns the recorder that receives execution events, or null.
+	 */
+	public JEventRecorder getRecorder()
+	{
+		return itsRecorder;
+	}
+	
+	/**
+	 * Sends execution events to the given recorder, or stops producing them if null.
+	 * Only the frames that start after the call produce events.
+	 */
+	public void setRecorder(JEventRecorder aRecorder)
+	{
+		itsRecorder = aRecorder;
+	}
+	
+	/**
+	 * Returns the heap account of the whole interpreter, or null.
+	 */
+	public JHeapAccount getHeapAccount()
+	{
+		return itsHeapAccount;
+	}
+	
+	/**
+	 * Charges the objects allocated afterwards by any thread to the given account,
+	 * or stops accounting if null.
+	 */
+	public void setHeapAccount(JHeapAccount aAccount)
+	{
+		itsHeapAccount = aAccount;
+	}
+	
+	/**
+	 * Returns the heap account of the current thread, or null.
+	 */
+	public JHeapAccount getThreadHeapAccount()
+	{
+		return itsThreadHeapAccounts ? itsThreadHeapAccount.get() : null;
+	}
+	
+	/**
+	 * Charges the objects allocated afterwards by the current thread to the given account,
+	 * in addition to the account of the interpreter, or stops if null.
+	 */
+	public void setThreadHeapAccount(JHeapAccount aAccount)
+	{
+		if (aAccount != null) 
+		{
+			itsThreadHeapAccounts = true;
+			itsThreadHeapAccount.set(aAccount);
+		}
+		else itsThreadHeapAccount.remove();
+	}
+	
+	/**
+	 * Charges a new object to the heap accounts, if any.
+	 * Natives that create objects by other means than {@link JClass#newInstance()},
+	 * {@link #newArray(int)} and {@link #toJString(String)} should call it.
+	 * @param aSize Estimated size of the object, see {@link JHeapAccount#getInstanceSize(JClass)} 
+	 * and {@link JHeapAccount#getArraySize(int, int)}.
+	 */
+	public void charge(JFrame aParentFrame, JObject aObject, long aSize)
+	{
+		JHeapAccount theAccount = itsHeapAccount;
+		if (theAccount != null) theAccount.charge(this, aParentFrame, aObject, aSize);
+		if (itsThreadHeapAccounts)
+		{
+			theAccount = itsThreadHeapAccount.get();
+			if (theAccount != null) theAccount.charge(this, aParentFrame, aObject, aSize);
+		}
+	}
+	
+	/**
+	 * Creates an array for interpreted code. The array is charged to the heap 
+	 * accounts, if any, before it is allocated 
+	 * (see {@link JHeapAccount#getHostArraySize(int, int)}).
+	 * @param aElementSize Size of each element in a JVM, or 0 for arrays of references.
+	 * @throws ExceptionThrown An interpreted {@link OutOfMemoryError} if a limit is exceeded.
+	 */
+	public JArray newArray(JFrame aParentFrame, int aSize, int aElementSize)
+	{
+		JHeapAccount theAccount = itsHeapAccount;
+		JHeapAccount theThreadAccount = itsThreadHeapAccounts ? itsThreadHeapAccount.get() : null;
+		if ((theAccount == null && theThreadAccount == null) || aSize < 0) return newArray(aSize);
+		
+		long theSize = JHeapAccount.getHostArraySize(aSize, aElementSize);
+		if (theAccount != null) theAccount.reserve(this, aParentFrame, theSize);
+		
+		JArray theArray = null;
+		boolean theThreadReserved = false;
 		try
 		{
-			Class theClass = Class.forName("zz.jinterp.JClass_"+aName.replace('/', '_'));
-			Constructor theConstructor = theClass.getConstructor(JInterpreter.class, ClassNode.class);
-			JClass theInstance = (JClass) theConstructor.newInstance(this, theClassNode);
-			itsLoadedClasses.put(aName, theInstance);
-			theInstance.init();
+			if (theThreadAccount != null)
+			{
+				theThreadAccount.reserve(this, aParentFrame, theSize);
+				theThreadReserved = true;
+			}
+			theArray = newArray(aSize);
 		}
-		catch (Exception e)
+		finally
 		{
-			throw new RuntimeException(e);
+			if (theArray == null)
+			{
+				if (theAccount != null) theAccount.cancel(theSize);
+				if (theThreadReserved) theThreadAccount.cancel(theSize);
+			}
 		}
+		
+		if (theAccount != null) theAccount.track(theArray, theSize);
+		if (theThreadAccount != null) theThreadAccount.track(theArray, theSize);
+		return theArray;
+	}
+	
+	/**
+	 * Returns the fuel of the current thread, or null if it is not limited.
+	 */
+	public JFuel getFuel()
+	{
+		return itsFuel.get();
+	}
+	
+	/**
+	 * Limits the invocations that the current thread starts afterwards 
+	 * with the given fuel, or removes the limit if null.
+	 * Threads started by interpreted code are not limited, as a fuel object
+	 * can only be used by one thread.
+	 */
+	public void setFuel(JFuel aFuel)
+	{
+		if (aFuel != null) itsFuel.set(aFuel);
+		else itsFuel.remove();
 	}
 	
-	public Instance getMetaclass(JType aType)
+	public synchronized Instance getMetaclass(JType aType)
 	{
 		checkInit();
 		Instance theInstance = itsLoadedMetaclasses.get(aType);
@@ -155,6 +415,108 @@ public abstract class JInterpreter
 		return theClass.getVirtualBehavior(aMethodName, aSignature);
 	}
 	
+	/**
+	 * Resolves a behavior once and returns a handle that can be used
+	 * to invoke it repeatedly, possibly from several threads.
+	 * @param aClassName Class name in JVM notation
+	 * @param aMethodName Name of the method 
+	 * @param aSignature Signature of the method in JVM notation
+	 */
+	public JBehaviorHandle lookup(String aClassName, String aMethodName, String aSignature)
+	{
+		JClass theClass = getClass(aClassName);
+		JBehavior theBehavior = theClass.getBehavior(aMethodName, aSignature);
+		if (theBehavior == null) theBehavior = theClass.getVirtualBehavior(aMethodName, aSignature);
+		if (theBehavior == null) throw new IllegalArgumentException("Behavior not found: "+aClassName+"."+aMethodName+aSignature);
+		return new JBehaviorHandle(theBehavior, aMethodName, aSignature);
+	}
+	
+	/**
+	 * Returns the heap that holds the state of interpreted objects
+	 * for the current thread.
+	 */
+	public JHeap getHeap()
+	{
+		if (itsThreadHeaps)
+		{
+			JHeap theHeap = itsThreadHeap.get();
+			if (theHeap != null) return theHeap;
+		}
+		return itsHeap;
+	}
+	
+	/**
+	 * Returns the heap of the current thread, if it differs from the heap of
+	 * the interpreter, or null.
+	 */
+	public JHeap getThreadHeap()
+	{
+		return itsThreadHeaps ? itsThreadHeap.get() : null;
+	}
+	
+	/**
+	 * Executes the code run afterwards by the current thread against the given heap,
+	 * which must have been forked from a snapshot of this interpreter, 
+	 * or against the heap of the interpreter if null. 
+	 * Unlike {@link #setHeap(JHeap)}, this lets several forks be used concurrently.
+	 * Interpreted threads started by the current thread inherit its heap.
+	 */
+	public void setThreadHeap(JHeap aHeap)
+	{
+		if (aHeap != null) 
+		{
+			if (aHeap.isFrozen()) throw new IllegalArgumentException("Cannot execute against a snapshot, use fork");
+			itsThreadHeaps = true;
+			itsThreadHeap.set(aHeap);
+		}
+		else itsThreadHeap.remove();
+	}
+	
+	/**
+	 * Freezes the heap of the current thread and returns it, in constant time.
+	 * The thread continues in a copy-on-write child of the snapshot,
+	 * and other children can be created with {@link #fork(JHeap)}.
+	 */
+	public synchronized JHeap snapshot()
+	{
+		JHeap theThreadHeap = getThreadHeap();
+		JHeap theSnapshot = theThreadHeap != null ? theThreadHeap : itsHeap;
+		theSnapshot.freeze();
+		if (theThreadHeap != null) itsThreadHeap.set(new JHeap(theSnapshot));
+		else itsHeap = new JHeap(theSnapshot);
+		return theSnapshot;
+	}
+	
+	/**
+	 * Creates a new copy-on-write heap that starts with the state of the given snapshot.
+	 * Use {@link #setHeap(JHeap)} or {@link #setThreadHeap(JHeap)} to execute code against it.
+	 */
+	public JHeap fork(JHeap aSnapshot)
+	{
+		return new JHeap(aSnapshot);
+	}
+	
+	/**
+	 * Switches the interpreter to the given heap, which must have been
+	 * forked from a snapshot of this interpreter.
+	 * This should not be done while interpreted threads are running.
+	 */
+	public synchronized void setHeap(JHeap aHeap)
+	{
+		if (aHeap.isFrozen()) throw new IllegalArgumentException("Cannot execute against a snapshot, use fork");
+		itsHeap = aHeap;
+	}
+	
+	/**
+	 * Creates a new array.
+	 * This method can be overridden by subclasses if they need
+	 * some special handling of arrays.
+	 */
+	public JArray newArray(int aSize)
+	{
+		return new SimpleArray(this, aSize);
+	}
+	
 	/**
 	 * Creates a static field descriptor.
 	 * This method can be overridden by subclasses if they need
@@ -184,6 +546,73 @@ public abstract class JInterpreter
 		return theBehavior.invoke(aParentFrame, aThis, aArgs);
 	}
 	
+	/**
+	 * Same as {@link #invoke(JFrame, String, String, String, JObject, JObject...)},
+	 * but the execution stops when the given token is cancelled.
+	 * @throws JCancelledException If the token was cancelled.
+	 */
+	public JObject invokeCancellable(
+			JCancellation aCancellation,
+			String aClassName, 
+			String aMethodName, 
+			String aSignature, 
+			JObject aThis, 
+			JObject... aArgs)
+	{
+		JCancellation thePrevious = itsCancellation.get();
+		itsCancellation.set(aCancellation);
+		try
+		{
+			return invoke(null, aClassName, aMethodName, aSignature, aThis, aArgs);
+		}
+		catch (ExceptionThrown e)
+		{
+			if (aCancellation.isSignal(e.getException())) throw new JCancelledException(aCancellation);
+			throw e;
+		}
+		finally
+		{
+			if (thePrevious != null) itsCancellation.set(thePrevious);
+			else itsCancellation.remove();
+		}
+	}
+	
+	/**
+	 * Same as {@link #invokeCancellable(JCancellation, String, String, String, JObject, JObject...)}
+	 * with a token that is cancelled after the given time.
+	 * @param aUnwind Whether the finally handlers of the cancelled execution are run.
+	 */
+	public JObject invokeWithDeadline(
+			long aTimeout,
+			TimeUnit aUnit,
+			boolean aUnwind,
+			String aClassName, 
+			String aMethodName, 
+			String aSignature, 
+			JObject aThis, 
+			JObject... aArgs)
+	{
+		return invokeCancellable(new JCancellation(aTimeout, aUnit, aUnwind), aClassName, aMethodName, aSignature, aThis, aArgs);
+	}
+	
+	/**
+	 * Returns the cancellation token of the invocation that the current thread
+	 * is running, or null.
+	 */
+	public JCancellation getCancellation()
+	{
+		return itsCancellation.get();
+	}
+	
+	/**
+	 * Sets the cancellation token of the current thread, or removes it if null.
+	 */
+	void setCancellation(JCancellation aCancellation)
+	{
+		if (aCancellation != null) itsCancellation.set(aCancellation);
+		else itsCancellation.remove();
+	}
+	
 	public JInstance instantiate(
 			JFrame aParentFrame,
 			String aClassName, 
@@ -305,10 +734,12 @@ public abstract class JInterpreter
 		theInstance.putFieldValue(fOffset, JInt._0);
 		theInstance.putFieldValue(fCount, new JInt(aString.length()));
 		theInstance.putFieldValue(fHash, new JInt(aString.hashCode()));
+		charge(null, theInstance, theClass.getInstanceSize());
 		
-		JArray theValue = new SimpleArray(aString.length());
+		JArray theValue = newArray(aString.length());
 		for(int i=0;i<aString.length();i++) theValue.set(i, new JChar(aString.charAt(i)));
 		theInstance.putFieldValue(fValue, theValue);
+		charge(null, theValue, JHeapAccount.getArraySize(aString.length(), 2));
 		
 		return theInstance;
 	}
@@ -335,6 +766,29 @@ public abstract class JInterpreter
 		return new String(theChars);
 	}
 	
+	/**
+	 * Creates the host thread that runs an interpreted thread.
+	 * By default a virtual thread is used when the host JVM supports them, 
+	 * so that mostly-blocked interpreted threads are cheap; otherwise a 
+	 * platform thread is created.
+	 * This method can be overridden by subclasses (eg. to use a specific thread factory).
+	 */
+	protected Thread createHostThread(Runnable aRunnable)
+	{
+		if (VIRTUAL_THREAD_BUILDER != null)
+		{
+			try
+			{
+				return (Thread) VIRTUAL_THREAD_UNSTARTED.invoke(VIRTUAL_THREAD_BUILDER, aRunnable);
+			}
+			catch (Exception e)
+			{
+				throw new RuntimeException(e);
+			}
+		}
+		else return new Thread(aRunnable);
+	}
+	
 	/**
 	 * Returns the object to use as an implementation of java.io.FileSystem.
 	 */
@@ -31,14 +31,28 @@ Inc. MD5 Message-Digest Algorithm".
 */
 package zz.jinterp;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 public class JMember
 {
+	private static final AtomicInteger itsNextId = new AtomicInteger();
+	
 	private final JClass itsClass;
+	private final int itsId = itsNextId.incrementAndGet();
 	
 	public JMember(JClass aClass)
 	{
 		itsClass = aClass;
 	}
+	
+	/**
+	 * A positive number that identifies this member among all the members
+	 * of all the interpreters (eg. in execution events).
+	 */
+	public int getId()
+	{
+		return itsId;
+	}
 
 	public JClass getDeclaringClass()
 	{
@@ -0,0 +1,275 @@
+/*
+ * Created on Oct 19, 2026
+ */
+package zz.jinterp;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * The counters of an interpreter (see {@link JInterpreter#getMetrics()}).
+ * Counters are striped: each thread updates its own {@link Stripe}, without
+ * synchronization, and the stripes are only summed when a counter is read.
+ * Values read while interpreted code is running are therefore approximate.
+ * @author gpothier
+ */
+public class JMetrics implements JMetricsMXBean
+{
+	public static final int CLASSES_LOADED = 0;
+	public static final int CLASS_LOAD_TIME = 1;
+	public static final int BEHAVIORS_PREPARED = 2;
+	public static final int INSTRUCTIONS = 3;
+	public static final int INTERPRETED_INVOCATIONS = 4;
+	public static final int NATIVE_INVOCATIONS = 5;
+	public static final int INLINE_CACHE_HITS = 6;
+	public static final int INLINE_CACHE_MISSES = 7;
+	public static final int EXCEPTIONS = 8;
+	public static final int OBJECTS_ALLOCATED = 9;
+	public static final int ARRAYS_ALLOCATED = 10;
+	public static final int INTERNED_STRINGS = 11;
+	public static final int INLINED_INVOCATIONS = 12;
+	
+	private static final String[] NAMES = {
+		"classesLoaded",
+		"classLoadTime",
+		"behaviorsPrepared",
+		"instructions",
+		"interpretedInvocations",
+		"nativeInvocations",
+		"inlineCacheHits",
+		"inlineCacheMisses",
+		"exceptions",
+		"objectsAllocated",
+		"arraysAllocated",
+		"internedStrings",
+		"inlinedInvocations",
+	};
+	
+	private final ThreadLocal<Stripe> itsStripe = new ThreadLocal<Stripe>()
+	{
+		@Override
+		protected Stripe initialValue()
+		{
+			Stripe theStripe = new Stripe();
+			itsStripes.add(theStripe);
+			return theStripe;
+		}
+	};
+	
+	private final List<Stripe> itsStripes = new CopyOnWriteArrayList<Stripe>();
+	
+	private final JInterpreter itsInterpreter;
+	
+	JMetrics(JInterpreter aInterpreter)
+	{
+		itsInterpreter = aInterpreter;
+	}
+	
+	/**
+	 * Returns the stripe of the current thread.
+	 */
+	public Stripe getStripe()
+	{
+		return itsStripe.get();
+	}
+	
+	/**
+	 * Returns the sum of the given counter over all the threads.
+	 */
+	public long get(int aCounter)
+	{
+		long theTotal = 0;
+		for (Stripe theStripe : itsStripes) theTotal += theStripe.itsCounts[aCounter];
+		return theTotal;
+	}
+	
+	/**
+	 * Returns all the counters, indexed by name, including the frame depth high-water mark.
+	 */
+	public Map<String, Long> getAll()
+	{
+		Map<String, Long> theResult = new LinkedHashMap<String, Long>();
+		for(int i=0;i<NAMES.length;i++) theResult.put(NAMES[i], get(i));
+		theResult.put("maxFrameDepth", (long) getMaxFrameDepth());
+		theResult.put("liveBytes", getLiveBytes());
+		theResult.put("peakBytes", getPeakBytes());
+		theResult.put("allocatedBytes", getAllocatedBytes());
+		return theResult;
+	}
+	
+	public long getClassesLoaded()
+	{
+		return get(CLASSES_LOADED);
+	}
+	
+	public long getClassLoadTime()
+	{
+		return get(CLASS_LOAD_TIME);
+	}
+	
+	public long getBehaviorsPrepared()
+	{
+		return get(BEHAVIORS_PREPARED);
+	}
+	
+	public long getInstructions()
+	{
+		return get(INSTRUCTIONS);
+	}
+	
+	public long getInterpretedInvocations()
+	{
+		return get(INTERPRETED_INVOCATIONS);
+	}
+	
+	public long getNativeInvocations()
+	{
+		return get(NATIVE_INVOCATIONS);
+	}
+	
+	public long getInlineCacheHits()
+	{
+		return get(INLINE_CACHE_HITS);
+	}
+	
+	public long getInlineCacheMisses()
+	{
+		return get(INLINE_CACHE_MISSES);
+	}
+	
+	public double getInlineCacheHitRate()
+	{
+		long theHits = getInlineCacheHits();
+		long theLookups = theHits + getInlineCacheMisses();
+		return theLookups != 0 ? (double) theHits / theLookups : 0;
+	}
+	
+	public long getExceptions()
+	{
+		return get(EXCEPTIONS);
+	}
+	
+	public long getObjectsAllocated()
+	{
+		return get(OBJECTS_ALLOCATED);
+	}
+	
+	public long getArraysAllocated()
+	{
+		return get(ARRAYS_ALLOCATED);
+	}
+	
+	public long getInternedStrings()
+	{
+		return get(INTERNED_STRINGS);
+	}
+	
+	public long getInlinedInvocations()
+	{
+		return get(INLINED_INVOCATIONS);
+	}
+	
+	public int getMaxFrameDepth()
+	{
+		int theMax = 0;
+		for (Stripe theStripe : itsStripes) theMax = Math.max(theMax, theStripe.itsMaxDepth);
+		return theMax;
+	}
+	
+	/**
+	 * Returns the live size estimated by the heap account of the interpreter, 
+	 * or 0 if there is no account.
+	 */
+	public long getLiveBytes()
+	{
+		JHeapAccount theAccount = itsInterpreter.getHeapAccount();
+		return theAccount != null ? theAccount.getLive() : 0;
+	}
+	
+	public long getPeakBytes()
+	{
+		JHeapAccount theAccount = itsInterpreter.getHeapAccount();
+		return theAccount != null ? theAccount.getPeak() : 0;
+	}
+	
+	public long getAllocatedBytes()
+	{
+		JHeapAccount theAccount = itsInterpreter.getHeapAccount();
+		return theAccount != null ? theAccount.getAllocated() : 0;
+	}
+	
+	/**
+	 * Clears the counters of all the threads.
+	 * Increments that happen concurrently may be lost.
+	 */
+	public void reset()
+	{
+		for (Stripe theStripe : itsStripes) 
+		{
+			for(int i=0;i<theStripe.itsCounts.length;i++) theStripe.itsCounts[i] = 0;
+			theStripe.itsMaxDepth = theStripe.itsDepth;
+		}
+	}
+	
+	/**
+	 * Registers these metrics with the platform MBean server.
+	 * @param aName Distinguishes the interpreter from others.
+	 * @return The name of the registered bean, for {@link #unregister(ObjectName)}.
+	 */
+	public ObjectName register(String aName) throws JMException
+	{
+		ObjectName theName = new ObjectName("zz.jinterp:type=JInterpreter,name="+ObjectName.quote(aName));
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, theName);
+		return theName;
+	}
+	
+	public void unregister(ObjectName aName) throws JMException
+	{
+		ManagementFactory.getPlatformMBeanServer().unregisterMBean(aName);
+	}
+	
+	/**
+	 * The counters of one thread. Only updated by that thread.
+	 */
+	public static final class Stripe
+	{
+		private final long[] itsCounts = new long[NAMES.length];
+		private int itsDepth;
+		private int itsMaxDepth;
+		
+		public void inc(int aCounter)
+		{
+			itsCounts[aCounter]++;
+		}
+		
+		public void add(int aCounter, long aValue)
+		{
+			itsCounts[aCounter] += aValue;
+		}
+		
+		/**
+		 * Called when an interpreted frame starts.
+		 */
+		public void enterFrame()
+		{
+			itsCounts[INTERPRETED_INVOCATIONS]++;
+			if (++itsDepth > itsMaxDepth) itsMaxDepth = itsDepth;
+		}
+		
+		/**
+		 * Called when an interpreted frame ends.
+		 * @param aInstructions The number of instructions executed by the frame.
+		 */
+		public void exitFrame(long aInstructions)
+		{
+			itsCounts[INSTRUCTIONS] += aInstructions;
+			itsDepth--;
+		}
+	}
+}
@@ -0,0 +1,67 @@
+/*
+ * Created on Oct 19, 2026
+ */
+package zz.jinterp;
+
+/**
+ * Management interface of the metrics of an interpreter.
+ * See {@link JMetrics#register(String)}.
+ * @author gpothier
+ */
+public interface JMetricsMXBean
+{
+	public long getClassesLoaded();
+	
+	/**
+	 * Time spent loading classes, in nanoseconds.
+	 */
+	public long getClassLoadTime();
+	
+	public long getBehaviorsPrepared();
+	
+	/**
+	 * Number of instruction dispatches of interpreted frames. Superinstructions and 
+	 * trivial methods inlined at call sites count as one dispatch, so this is less 
+	 * than the number of executed bytecodes.
+	 */
+	public long getInstructions();
+	
+	public long getInterpretedInvocations();
+	public long getNativeInvocations();
+	public long getInlineCacheHits();
+	public long getInlineCacheMisses();
+	
+	/**
+	 * Ratio of inline cache hits to lookups, or 0 if there was no lookup.
+	 */
+	public double getInlineCacheHitRate();
+	
+	public long getExceptions();
+	public long getObjectsAllocated();
+	public long getArraysAllocated();
+	public long getInternedStrings();
+	
+	/**
+	 * Invocations of trivial methods that were executed at the call site, without a frame.
+	 */
+	public long getInlinedInvocations();
+	
+	/**
+	 * The highest number of nested interpreted frames of any thread.
+	 */
+	public int getMaxFrameDepth();
+	
+	/**
+	 * Estimated size of the live interpreted objects, in bytes, if the interpreter
+	 * has a heap account (see {@link JInterpreter#setHeapAccount(JHeapAccount)}).
+	 */
+	public long getLiveBytes();
+	
+	public long getPeakBytes();
+	public long getAllocatedBytes();
+	
+	/**
+	 * Clears all the counters.
+	 */
+	public void reset();
+}
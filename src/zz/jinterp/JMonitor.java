@@ -0,0 +1,61 @@
+/*
+ * Created on Oct 19, 2026
+ */
+package zz.jinterp;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The monitor of an interpreted object, used for MONITORENTER/MONITOREXIT,
+ * synchronized methods and wait/notify.
+ * Monitors are backed by host locks so that interpreted threads can run on
+ * host threads.
+ * @author gpothier
+ */
+public class JMonitor
+{
+	private final ReentrantLock itsLock = new ReentrantLock();
+	private final Condition itsCondition = itsLock.newCondition();
+
+	public void enter()
+	{
+		itsLock.lock();
+	}
+
+	/**
+	 * Releases the monitor.
+	 * @return false if the current thread does not own the monitor.
+	 */
+	public boolean exit()
+	{
+		if (! itsLock.isHeldByCurrentThread()) return false;
+		itsLock.unlock();
+		return true;
+	}
+
+	public boolean isHeldByCurrentThread()
+	{
+		return itsLock.isHeldByCurrentThread();
+	}
+
+	/**
+	 * Same semantics as {@link Object#wait(long)}, the caller must own the monitor.
+	 */
+	public void await(long aTimeout) throws InterruptedException
+	{
+		if (aTimeout == 0) itsCondition.await();
+		else itsCondition.await(aTimeout, TimeUnit.MILLISECONDS);
+	}
+
+	public void signal()
+	{
+		itsCondition.signal();
+	}
+
+	public void signalAll()
+	{
+		itsCondition.signalAll();
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ * Created on Oct 19, 2026
+ */
+package zz.jinterp;
+
+import zz.jinterp.JNormalBehavior.JFrame;
+
+/**
+ * An implementation of an interpreted method supplied by the application
+ * (see {@link JNativeRegistry}).
+ * Implementations extend one of the nested classes. The typed ones are
+ * called without packing the arguments into an array, and can only
+ * implement static methods with the matching descriptor.
+ * Implementations can be called concurrently by several interpreted threads.
+ * @author gpothier
+ */
+public abstract class JNative
+{
+	JNative()
+	{
+	}
+
+	/**
+	 * Checks that this implementation can be bound to a method with the given descriptor.
+	 */
+	abstract boolean accepts(String aDesc);
+
+	/**
+	 * Implements any method.
+	 * Interpreted exceptions can be raised with {@link JNormalBehavior.ExceptionThrown}.
+	 */
+	public static abstract class Generic extends JNative
+	{
+		public abstract JObject invoke(JFrame aParentFrame, JObject aTarget, JObject[] aArgs);
+
+		@Override
+		boolean accepts(String aDesc)
+		{
+			return true;
+		}
+	}
+
+	/**
+	 * Implements a static method with descriptor <code>(I)I</code>.
+	 */
+	public static abstract class IntToInt extends JNative
+	{
+		public abstract int apply(int a0);
+
+		@Override
+		boolean accepts(String aDesc)
+		{
+			return "(I)I".equals(aDesc);
+		}
+	}
+
+	/**
+	 * Implements a static method with descriptor <code>(II)I</code>.
+	 */
+	public static abstract class IntIntToInt extends JNative
+	{
+		public abstract int apply(int a0, int a1);
+
+		@Override
+		boolean accepts(String aDesc)
+		{
+			return "(II)I".equals(aDesc);
+		}
+	}
+
+	/**
+	 * Implements a static method with descriptor <code>(J)J</code>.
+	 */
+	public static abstract class LongToLong extends JNative
+	{
+		public abstract long apply(long a0);
+
+		@Override
+		boolean accepts(String aDesc)
+		{
+			return "(J)J".equals(aDesc);
+		}
+	}
+
+	/**
+	 * Implements a static method with descriptor <code>(JJ)J</code>.
+	 */
+	public static abstract class LongLongToLong extends JNative
+	{
+		public abstract long apply(long a0, long a1);
+
+		@Override
+		boolean accepts(String aDesc)
+		{
+			return "(JJ)J".equals(aDesc);
+		}
+	}
+}
@@ -0,0 +1,94 @@
+/*
+ * Created on Oct 19, 2026
+ */
+package zz.jinterp;
+
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import zz.jinterp.JNormalBehavior.JFrame;
+import zz.jinterp.JPrimitive.JInt;
+import zz.jinterp.JPrimitive.JLong;
+
+/**
+ * A behavior bound to an implementation supplied through {@link JNativeRegistry}.
+ * Frames call typed implementations directly with the values of their
+ * operand stack (see {@link #getNative()}).
+ * @author gpothier
+ */
+public class JNativeBehavior extends JBehavior
+{
+	private final String itsName;
+	private final int itsAccess;
+	private final int itsArgCount;
+	private final JNative itsNative;
+
+	public JNativeBehavior(JClass aClass, String aName, String aDesc, int aAccess, JNative aNative)
+	{
+		super(aClass);
+		if (! (aNative instanceof JNative.Generic) && (aAccess & Opcodes.ACC_STATIC) == 0)
+		{
+			throw new IllegalArgumentException("Typed implementations can only implement static methods: "+aClass.getName()+"."+aName);
+		}
+
+		itsName = aName;
+		itsAccess = aAccess;
+		itsArgCount = Type.getArgumentTypes(aDesc).length;
+		itsNative = aNative;
+	}
+
+	public JNative getNative()
+	{
+		return itsNative;
+	}
+
+	@Override
+	public String getName()
+	{
+		return itsName;
+	}
+
+	@Override
+	public int getArgCount()
+	{
+		return itsArgCount;
+	}
+
+	@Override
+	public boolean isPrivate()
+	{
+		return (itsAccess & Opcodes.ACC_PRIVATE) != 0;
+	}
+
+	@Override
+	public boolean isStatic()
+	{
+		return (itsAccess & Opcodes.ACC_STATIC) != 0;
+	}
+
+	@Override
+	protected JObject invoke0(JFrame aParentFrame, JObject aTarget, JObject... aArgs)
+	{
+		if (itsNative instanceof JNative.Generic)
+		{
+			return ((JNative.Generic) itsNative).invoke(aParentFrame, aTarget, aArgs);
+		}
+		else if (itsNative instanceof JNative.IntToInt)
+		{
+			return new JInt(((JNative.IntToInt) itsNative).apply(((JInt) aArgs[0]).v));
+		}
+		else if (itsNative instanceof JNative.IntIntToInt)
+		{
+			return new JInt(((JNative.IntIntToInt) itsNative).apply(((JInt) aArgs[0]).v, ((JInt) aArgs[1]).v));
+		}
+		else if (itsNative instanceof JNative.LongToLong)
+		{
+			return new JLong(((JNative.LongToLong) itsNative).apply(((JLong) aArgs[0]).v));
+		}
+		else if (itsNative instanceof JNative.LongLongToLong)
+		{
+			return new JLong(((JNative.LongLongToLong) itsNative).apply(((JLong) aArgs[0]).v, ((JLong) aArgs[1]).v));
+		}
+		else throw new RuntimeException("Not handled: "+itsNative);
+	}
+}
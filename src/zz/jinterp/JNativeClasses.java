@@ -0,0 +1,160 @@
+/*
+ * Created on Oct 19, 2026
+ */
+package zz.jinterp;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.objectweb.asm.tree.ClassNode;
+
+/**
+ * The table of the classes that have native implementations, indexed by
+ * class name (in JVM notation). The interpreter creates native classes
+ * through this table when they are first used, instead of looking
+ * for their implementation reflectively.
+ * New native classes must be added here.
+ * @author gpothier
+ */
+public final class JNativeClasses
+{
+	private static final Map<String, Factory> itsFactories = new HashMap<String, Factory>();
+	
+	static
+	{
+		put(JClass_java_lang_System.NAME, new Factory()
+		{
+			@Override
+			public JClass create(JInterpreter aInterpreter, ClassNode aNode)
+			{
+				return new JClass_java_lang_System(aInterpreter, aNode);
+			}
+		});
+		
+		put(JClass_java_lang_Float.NAME, new Factory()
+		{
+			@Override
+			public JClass create(JInterpreter aInterpreter, ClassNode aNode)
+			{
+				return new JClass_java_lang_Float(aInterpreter, aNode);
+			}
+		});
+		
+		put(JClass_java_lang_Double.NAME, new Factory()
+		{
+			@Override
+			public JClass create(JInterpreter aInterpreter, ClassNode aNode)
+			{
+				return new JClass_java_lang_Double(aInterpreter, aNode);
+			}
+		});
+		
+		put(JClass_java_lang_String.NAME, new Factory()
+		{
+			@Override
+			public JClass create(JInterpreter aInterpreter, ClassNode aNode)
+			{
+				return new JClass_java_lang_String(aInterpreter, aNode);
+			}
+		});
+		
+		put(JClass_java_io_FileSystem.NAME, new Factory()
+		{
+			@Override
+			public JClass create(JInterpreter aInterpreter, ClassNode aNode)
+			{
+				return new JClass_java_io_FileSystem(aInterpreter, aNode);
+			}
+		});
+		
+		put(JClass_java_io_UnixFileSystem.NAME, new Factory()
+		{
+			@Override
+			public JClass create(JInterpreter aInterpreter, ClassNode aNode)
+			{
+				return new JClass_java_io_UnixFileSystem(aInterpreter, aNode);
+			}
+		});
+		
+		put(JClass_java_lang_Throwable.NAME, new Factory()
+		{
+			@Override
+			public JClass create(JInterpreter aInterpreter, ClassNode aNode)
+			{
+				return new JClass_java_lang_Throwable(aInterpreter, aNode);
+			}
+		});
+		
+		put(JClass_java_security_AccessController.NAME, new Factory()
+		{
+			@Override
+			public JClass create(JInterpreter aInterpreter, ClassNode aNode)
+			{
+				return new JClass_java_security_AccessController(aInterpreter, aNode);
+			}
+		});
+		
+		put(JClass_sun_reflect_ReflectionFactory$GetReflectionFactoryAction.NAME, new Factory()
+		{
+			@Override
+			public JClass create(JInterpreter aInterpreter, ClassNode aNode)
+			{
+				return new JClass_sun_reflect_ReflectionFactory$GetReflectionFactoryAction(aInterpreter, aNode);
+			}
+		});
+		
+		put(JClass_sun_reflect_ReflectionFactory.NAME, new Factory()
+		{
+			@Override
+			public JClass create(JInterpreter aInterpreter, ClassNode aNode)
+			{
+				return new JClass_sun_reflect_ReflectionFactory(aInterpreter, aNode);
+			}
+		});
+		
+		put(JClass_java_io_ObjectStreamClass.NAME, new Factory()
+		{
+			@Override
+			public JClass create(JInterpreter aInterpreter, ClassNode aNode)
+			{
+				return new JClass_java_io_ObjectStreamClass(aInterpreter, aNode);
+			}
+		});
+		
+		put(JClass_java_lang_Thread.NAME, new Factory()
+		{
+			@Override
+			public JClass create(JInterpreter aInterpreter, ClassNode aNode)
+			{
+				return new JClass_java_lang_Thread(aInterpreter, aNode);
+			}
+		});
+	}
+	
+	private JNativeClasses()
+	{
+	}
+	
+	private static void put(String aName, Factory aFactory)
+	{
+		itsFactories.put(aName, aFactory);
+	}
+	
+	/**
+	 * Returns the factory of the native class with the given name,
+	 * or null if the class has no native implementation.
+	 */
+	public static Factory get(String aName)
+	{
+		return itsFactories.get(aName);
+	}
+	
+	/**
+	 * Creates a native class from its bytecode.
+	 * @author gpothier
+	 */
+	public static abstract class Factory
+	{
+		public abstract JClass create(JInterpreter aInterpreter, ClassNode aNode);
+	}
+}
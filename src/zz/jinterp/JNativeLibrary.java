@@ -0,0 +1,21 @@
+/*
+ * Created on Oct 19, 2026
+ */
+package zz.jinterp;
+
+/**
+ * A set of native implementations supplied by an application.
+ * Libraries are discovered with {@link java.util.ServiceLoader}: to be found
+ * automatically, a library must have a public no-arg constructor and be listed in
+ * <code>META-INF/services/zz.jinterp.JNativeLibrary</code>.
+ * Libraries can also be registered explicitly on a particular interpreter,
+ * through {@link JInterpreter#getNativeRegistry()}.
+ * @author gpothier
+ */
+public abstract class JNativeLibrary
+{
+	/**
+	 * Registers the implementations of this library.
+	 */
+	public abstract void register(JNativeRegistry aRegistry);
+}
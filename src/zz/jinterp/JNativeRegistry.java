@@ -0,0 +1,188 @@
+/*
+ * Created on Oct 19, 2026
+ */
+package zz.jinterp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import zz.utils.Utils;
+
+/**
+ * Maps (class, name, descriptor) triples to native implementations supplied
+ * by the application. When a class is loaded, its methods that have a
+ * registered implementation are bound to it instead of to their bytecode;
+ * methods declared native in the interpreted class can be implemented this way.
+ * Implementations must therefore be registered before the classes they
+ * implement are loaded.
+ * <p>
+ * Each interpreter has its own registry, whose parent is the default registry.
+ * The default registry contains the libraries found by {@link ServiceLoader}.
+ * <p>
+ * Typed implementations can only implement static methods; this is checked
+ * at registration when the bytecode of the class is available.
+ * @author gpothier
+ */
+public final class JNativeRegistry
+{
+	private static JNativeRegistry DEFAULT;
+
+	private final JNativeRegistry itsParent;
+
+	/**
+	 * The interpreter that provides the bytecode of the implemented classes,
+	 * or null to look them up in the host class path.
+	 */
+	private final JInterpreter itsInterpreter;
+
+	/**
+	 * Implementations, indexed by class name and then by behavior key
+	 * (see {@link JClass#getBehaviorKey(String, String)}).
+	 */
+	private final Map<String, Map<String, JNative>> itsNatives = new ConcurrentHashMap<String, Map<String, JNative>>();
+
+	/**
+	 * @param aParent A registry whose implementations are inherited, or null.
+	 */
+	public JNativeRegistry(JNativeRegistry aParent)
+	{
+		this(aParent, null);
+	}
+
+	JNativeRegistry(JNativeRegistry aParent, JInterpreter aInterpreter)
+	{
+		itsParent = aParent;
+		itsInterpreter = aInterpreter;
+	}
+
+	/**
+	 * Returns the registry that contains the libraries listed as services.
+	 */
+	public static synchronized JNativeRegistry getDefault()
+	{
+		if (DEFAULT == null)
+		{
+			JNativeRegistry theRegistry = new JNativeRegistry(null);
+			for (JNativeLibrary theLibrary : ServiceLoader.load(JNativeLibrary.class)) theRegistry.register(theLibrary);
+			DEFAULT = theRegistry;
+		}
+		return DEFAULT;
+	}
+
+	public JNativeRegistry getParent()
+	{
+		return itsParent;
+	}
+
+	public void register(JNativeLibrary aLibrary)
+	{
+		aLibrary.register(this);
+	}
+
+	/**
+	 * Registers the implementation of a method.
+	 * @param aClassName Name of the class, in JVM notation
+	 * @param aName Name of the method
+	 * @param aDesc Descriptor of the method
+	 * @throws IllegalArgumentException if the implementation does not match the 
+	 * descriptor, or if it is typed and the method is not static.
+	 */
+	public void register(String aClassName, String aName, String aDesc, JNative aNative)
+	{
+		if (! aNative.accepts(aDesc)) throw new IllegalArgumentException("Implementation does not match descriptor: "+aName+aDesc);
+		if (! (aNative instanceof JNative.Generic)) checkStatic(aClassName, aName, aDesc);
+
+		Map<String, JNative> theNatives;
+		synchronized (itsNatives)
+		{
+			theNatives = itsNatives.get(aClassName);
+			if (theNatives == null)
+			{
+				theNatives = new ConcurrentHashMap<String, JNative>();
+				itsNatives.put(aClassName, theNatives);
+			}
+		}
+		theNatives.put(JClass.getBehaviorKey(aName, aDesc), aNative);
+	}
+
+	/**
+	 * Checks that the given method is static, if the class can be found
+	 * (otherwise {@link JNativeBehavior} checks it when the class is loaded).
+	 */
+	private void checkStatic(String aClassName, String aName, String aDesc)
+	{
+		ClassNode theClassNode = readClass(aClassName);
+		if (theClassNode == null) return;
+		
+		for (Object theObject : theClassNode.methods)
+		{
+			MethodNode theMethod = (MethodNode) theObject;
+			if (theMethod.name.equals(aName) 
+					&& theMethod.desc.equals(aDesc)
+					&& (theMethod.access & Opcodes.ACC_STATIC) == 0)
+			{
+				throw new IllegalArgumentException("Typed implementations can only implement static methods: "+aClassName+"."+aName);
+			}
+		}
+	}
+	
+	private ClassNode readClass(String aClassName)
+	{
+		byte[] theBytecode;
+		if (itsInterpreter != null) theBytecode = itsInterpreter.getClassBytecode(aClassName);
+		else
+		{
+			InputStream theStream = JNativeRegistry.class.getClassLoader().getResourceAsStream(aClassName+".class");
+			if (theStream == null) return null;
+			try
+			{
+				theBytecode = Utils.readInputStream_byte(theStream);
+			}
+			catch (IOException e)
+			{
+				throw new RuntimeException(e);
+			}
+		}
+		if (theBytecode == null) return null;
+		
+		ClassNode theNode = new ClassNode();
+		new ClassReader(theBytecode).accept(theNode, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+		return theNode;
+	}
+
+	/**
+	 * Whether some implementations are registered for the given class.
+	 */
+	public boolean hasNatives(String aClassName)
+	{
+		for (JNativeRegistry theRegistry = this; theRegistry != null; theRegistry = theRegistry.itsParent)
+		{
+			if (theRegistry.itsNatives.containsKey(aClassName)) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the implementation of the given method, or null.
+	 * @param aKey The behavior key (see {@link JClass#getBehaviorKey(String, String)}).
+	 */
+	public JNative get(String aClassName, String aKey)
+	{
+		for (JNativeRegistry theRegistry = this; theRegistry != null; theRegistry = theRegistry.itsParent)
+		{
+			Map<String, JNative> theNatives = theRegistry.itsNatives.get(aClassName);
+			if (theNatives == null) continue;
+			JNative theNative = theNatives.get(aKey);
+			if (theNative != null) return theNative;
+		}
+		return null;
+	}
+}
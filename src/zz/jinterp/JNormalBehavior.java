@@ -31,6 +31,8 @@ Inc. MD5 Message-Digest Algorithm".
 */
 package zz.jinterp;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -42,8 +44,16 @@ import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.commons.EmptyVisitor;
 import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.IincInsnNode;
+import org.objectweb.asm.tree.IntInsnNode;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.LdcInsnNode;
 import org.objectweb.asm.tree.MethodNode;
 import org.objectweb.asm.tree.TryCatchBlockNode;
+import org.objectweb.asm.tree.VarInsnNode;
+import org.objectweb.asm.tree.analysis.AnalyzerException;
 
 import zz.jinterp.JPrimitive.JBitNumber;
 import zz.jinterp.JPrimitive.JByte;
@@ -54,18 +64,107 @@ import zz.jinterp.JPrimitive.JInt;
 import zz.jinterp.JPrimitive.JLong;
 import zz.jinterp.JPrimitive.JNumber;
 import zz.jinterp.JPrimitive.JShort;
-import zz.jinterp.SimpleInterp.SimpleArray;
 import zz.utils.Utils;
 
 public class JNormalBehavior extends JASMBehavior
 {
+	/**
+	 * Maximum number of instructions of the arithmetic methods that are 
+	 * considered trivial, see {@link #classify()}.
+	 */
+	private static final int MAX_TRIVIAL_LENGTH = 12;
+	
+	/**
+	 * Maps labels to the instruction pointer of the first executed instruction 
+	 * that follows them. Labels of GOTO instructions are threaded to the final target.
+	 */
 	private final Map<Label, Integer> itsLabelToInsnMap = new HashMap<Label, Integer>();
 	
+	/**
+	 * The executed instructions, indexed by instruction pointer.
+	 * Labels, NOPs and dead code are removed, so instruction pointers 
+	 * differ from the indices of the method node, see {@link #itsOriginalIPs}.
+	 * Instructions that resolve symbols replace themselves by a
+	 * {@link QuickInsn} the first time they are executed, without 
+	 * synchronization (see {@link QuickInsn} for why this is safe); the
+	 * method node itself is never modified.
+	 */
+	private final AbstractInsnNode[] itsCode;
+	
+	/**
+	 * Maps instruction pointers to the index of the instruction in the method node.
+	 * Exception ranges, stack traces and profiles use the original indices.
+	 */
+	private final int[] itsOriginalIPs;
+	
+	/**
+	 * Maps the indices of the method node to the instruction pointer of the 
+	 * first executed instruction at or after them.
+	 */
+	private final int[] itsCompactIPs;
+	
+	/**
+	 * The sequences that are fused into superinstructions (see {@link JSuperinstructions}).
+	 */
+	private final int itsSuperinstructions;
+	
+	/**
+	 * The implementation of this behavior that is executed at call sites, 
+	 * if it is trivial (see {@link #classify()}), otherwise null.
+	 */
+	private final Trivial itsTrivial;
+	
 	public JNormalBehavior(JClass aClass, MethodNode aMethodNode)
 	{
 		super(aClass, aMethodNode);
-		Setup theSetup = new Setup();
-		getNode().accept((MethodVisitor) theSetup);
+		itsSuperinstructions = getInterpreter().getSuperinstructions();
+		
+		AbstractInsnNode[] theCode = aMethodNode.instructions.toArray();
+		boolean[] theRemoved = decode(theCode);
+		
+		int theCount = 0;
+		for(int i=0;i<theCode.length;i++) if (! theRemoved[i]) theCount++;
+		itsCode = new AbstractInsnNode[theCount];
+		itsOriginalIPs = new int[theCount];
+		itsCompactIPs = new int[theCode.length+1];
+		int theIP = 0;
+		for(int i=0;i<theCode.length;i++)
+		{
+			itsCompactIPs[i] = theIP;
+			if (theRemoved[i]) continue;
+			itsCode[theIP] = theCode[i];
+			itsOriginalIPs[theIP] = i;
+			theIP++;
+		}
+		itsCompactIPs[theCode.length] = theIP;
+		
+		mapLabels(theCode);
+		itsTrivial = classify();
+		getInterpreter().getMetrics().getStripe().inc(JMetrics.BEHAVIORS_PREPARED);
+	}
+	
+	/**
+	 * Returns the index in the method node of the instruction at the given instruction pointer.
+	 */
+	public int getOriginalIP(int aIP)
+	{
+		return aIP >= 0 ? itsOriginalIPs[aIP] : aIP;
+	}
+	
+	/**
+	 * Whether this behavior is executed at its call sites without a frame.
+	 */
+	public boolean isTrivial()
+	{
+		return itsTrivial != null;
+	}
+	
+	/**
+	 * Returns the number of instructions that remain after decoding.
+	 */
+	public int getCodeSize()
+	{
+		return itsCode.length;
 	}
 	
 	@Override
@@ -75,11 +174,7 @@ public class JNormalBehavior extends JASMBehavior
 		if ((getNode().access & Opcodes.ACC_STATIC) == 0) 
 		{
 			// Not static
-			if (aTarget == null) 
-			{
-				aParentFrame.throwEx(getInterpreter().new_NullPointerException(aParentFrame, "null"));
-				return null;
-			}
+			if (aTarget == null) throw new ExceptionThrown(getInterpreter().new_NullPointerException(aParentFrame, "null"));
 			theArgs = new JObject[aArgs.length+1];
 			theArgs[0] = aTarget;
 			System.arraycopy(aArgs, 0, theArgs, 1, aArgs.length);
@@ -91,106 +186,552 @@ public class JNormalBehavior extends JASMBehavior
 			theArgs = aArgs;
 		}
 		
+		JFuel theFuel = aParentFrame != null ? aParentFrame.itsFuel : getInterpreter().getFuel();
+		if (theFuel != null) theFuel.consume(1);
+		JCancellation theCancellation = aParentFrame != null ? aParentFrame.itsCancellation : getInterpreter().getCancellation();
+		if (theCancellation != null) theCancellation.poll(getInterpreter(), aParentFrame);
+		
+		JMonitor theMonitor = null;
+		if ((getNode().access & Opcodes.ACC_SYNCHRONIZED) != 0)
+		{
+			JObject theLock = aTarget != null ? aTarget : getInterpreter().getMetaclass(getDeclaringClass());
+			theMonitor = theLock.getMonitor();
+			theMonitor.enter();
+		}
+		
 		JFrame theFrame = new JFrame(aParentFrame, theArgs, getNode().maxLocals, getNode().maxStack);
+		JMetrics.Stripe theStripe = aParentFrame != null ? aParentFrame.itsStripe : getInterpreter().getMetrics().getStripe();
+		theFrame.itsStripe = theStripe;
+		theStripe.enterFrame();
+		theFrame.itsFuel = theFuel;
+		theFrame.itsCancellation = theCancellation;
+		
+		JProfiler theProfiler = getInterpreter().getProfiler();
+		JSampler theSampler = getInterpreter().getSampler();
+		JSampler.Slot theSlot = null;
+		if (theSampler != null)
+		{
+			theSlot = theSampler.getSlot();
+			theSlot.setTop(theFrame);
+		}
+		
+		JEventRecorder theRecorder = getInterpreter().getRecorder();
+		JEventSink theSink = null;
+		if (theRecorder != null)
+		{
+			// Frames of a thread share the sink of the thread
+			theSink = aParentFrame != null && aParentFrame.itsSink != null && aParentFrame.itsSink.getRecorder() == theRecorder ?
+					aParentFrame.itsSink
+					: theRecorder.getSink();
+			theFrame.itsSink = theSink;
+			theSink.enter(this);
+		}
+		
+		boolean theThrown = true;
+		long theInstructions = 0;
 		try
 		{
-			while (theFrame.step() != -1);
+			if (theProfiler == null) while (theFrame.step() != -1) theInstructions++;
+			else theFrame.runProfiled(theProfiler);
+			theThrown = false;
 		}
-		catch (ExceptionThrown e)
+		finally
 		{
-			List<String> theStackTraceInfo = e.getException().getStackTraceInfo();
-			StringBuilder theBuilder = new StringBuilder();
-			for (String theEntry : theStackTraceInfo)
+			if (theSink != null) 
 			{
-				theBuilder.append(theEntry);
-				theBuilder.append('\n');
+				theSink.exit(this, theThrown);
+				if (aParentFrame == null) theSink.flush();
 			}
-			throw new RuntimeException("Exception thrown during evaluation: "+e.getException().getType()+"\n"+theBuilder);
+			theStripe.exitFrame(theInstructions);
+			if (theSlot != null) theSlot.setTop(aParentFrame);
+			if (theMonitor != null) theMonitor.exit();
 		}
 		return theFrame.itsReturnValue;
 	}
 	
-	private class Setup extends EmptyVisitor
+	/**
+	 * Prepares the executed instructions: arithmetic and comparison instructions 
+	 * are replaced by handlers specialized for the inferred types of their operands 
+	 * (see {@link JTypeInference}), then the peephole pass runs (see {@link #optimize})
+	 * and superinstructions are fused.
+	 * Labels and NOPs are always removed; methods that cannot be analyzed keep 
+	 * the other instructions and the generic handlers.
+	 * @param aCode The instructions of the method node, replaced in place.
+	 * @return For each instruction, whether it is removed from the executed stream.
+	 */
+	private boolean[] decode(AbstractInsnNode[] aCode)
 	{
-		private int itsInstructionCounter = 0;
-
-		@Override
-		public void visitLabel(Label aLabel)
+		boolean[] theRemoved = new boolean[aCode.length];
+		for(int i=0;i<aCode.length;i++)
 		{
-			itsLabelToInsnMap.put(aLabel, itsInstructionCounter);
-			itsInstructionCounter++;
+			int theOpcode = aCode[i].getOpcode();
+			theRemoved[i] = theOpcode < 0 || theOpcode == Opcodes.NOP;
 		}
 		
-		@Override
-		public void visitFieldInsn(int aOpcode, String aOwner, String aName, String aDesc)
+		JTypeInference theTypes;
+		try
 		{
-			itsInstructionCounter++;
+			theTypes = new JTypeInference(getDeclaringClass().getName(), getNode());
 		}
-
-		@Override
-		public void visitIincInsn(int aVar, int aIncrement)
+		catch (AnalyzerException e)
 		{
-			itsInstructionCounter++;
+			return theRemoved;
 		}
-
-		@Override
-		public void visitInsn(int aOpcode)
+		
+		for(int i=0;i<aCode.length;i++)
 		{
-			itsInstructionCounter++;
+			if (! theTypes.isReachable(i)) continue;
+			AbstractInsnNode theInsn = aCode[i];
+			int theOpcode = theInsn.getOpcode();
+			switch(theOpcode)
+			{
+			case Opcodes.INEG:
+				aCode[i] = new IntInsn(theOpcode, theTypes.isExactInt(i, 0));
+				break;
+				
+			case Opcodes.IADD:
+			case Opcodes.ISUB:
+			case Opcodes.IMUL:
+			case Opcodes.IDIV:
+			case Opcodes.IREM:
+			case Opcodes.ISHL:
+			case Opcodes.ISHR:
+			case Opcodes.IUSHR:
+			case Opcodes.IAND:
+			case Opcodes.IOR:
+			case Opcodes.IXOR:
+				aCode[i] = new IntInsn(theOpcode, theTypes.isExactInt(i, 0) && theTypes.isExactInt(i, 1));
+				break;
+				
+			case Opcodes.LADD:
+			case Opcodes.LSUB:
+			case Opcodes.LMUL:
+			case Opcodes.LDIV:
+			case Opcodes.LREM:
+			case Opcodes.LNEG:
+			case Opcodes.LAND:
+			case Opcodes.LOR:
+			case Opcodes.LXOR:
+				aCode[i] = new LongInsn(theOpcode, false);
+				break;
+				
+			case Opcodes.LSHL:
+			case Opcodes.LSHR:
+			case Opcodes.LUSHR:
+				aCode[i] = new LongInsn(theOpcode, theTypes.isExactInt(i, 0));
+				break;
+				
+			case Opcodes.FADD:
+			case Opcodes.FSUB:
+			case Opcodes.FMUL:
+			case Opcodes.FDIV:
+			case Opcodes.FREM:
+			case Opcodes.FNEG:
+				aCode[i] = new FloatInsn(theOpcode);
+				break;
+				
+			case Opcodes.DADD:
+			case Opcodes.DSUB:
+			case Opcodes.DMUL:
+			case Opcodes.DDIV:
+			case Opcodes.DREM:
+			case Opcodes.DNEG:
+				aCode[i] = new DoubleInsn(theOpcode);
+				break;
+				
+			case Opcodes.IFEQ:
+			case Opcodes.IFNE:
+			case Opcodes.IFLT:
+			case Opcodes.IFGE:
+			case Opcodes.IFGT:
+			case Opcodes.IFLE:
+				aCode[i] = new IntJumpInsn(
+						theOpcode, 
+						((JumpInsnNode) theInsn).label.getLabel(), 
+						theTypes.isExactInt(i, 0));
+				break;
+				
+			case Opcodes.IF_ICMPEQ:
+			case Opcodes.IF_ICMPNE:
+			case Opcodes.IF_ICMPLT:
+			case Opcodes.IF_ICMPGE:
+			case Opcodes.IF_ICMPGT:
+			case Opcodes.IF_ICMPLE:
+				aCode[i] = new IntJumpInsn(
+						theOpcode, 
+						((JumpInsnNode) theInsn).label.getLabel(), 
+						theTypes.isExactInt(i, 0) && theTypes.isExactInt(i, 1));
+				break;
+				
+			case Opcodes.IINC: {
+				IincInsnNode theIinc = (IincInsnNode) theInsn;
+				aCode[i] = new IincInsn(theIinc.var, theIinc.incr, theTypes.isExactIntLocal(i, theIinc.var));
+			} break;
+			}
 		}
-
-		@Override
-		public void visitIntInsn(int aOpcode, int aOperand)
+		
+		optimize(aCode, theRemoved, theTypes);
+		if (itsSuperinstructions != JSuperinstructions.NONE) fuse(aCode, theRemoved, theTypes);
+		return theRemoved;
+	}
+	
+	/**
+	 * Peephole pass: removes unreachable instructions, stores immediately followed 
+	 * by the only load of the same variable, and jumps to the next instruction,
+	 * and folds int arithmetic on constants.
+	 * Instructions are never combined across a label, so jump targets and
+	 * exception ranges keep their meaning.
+	 */
+	private void optimize(AbstractInsnNode[] aCode, boolean[] aRemoved, JTypeInference aTypes)
+	{
+		AbstractInsnNode[] theInsns = getNode().instructions.toArray();
+		int[] theLoads = new int[getNode().maxLocals];
+		for(int i=0;i<theInsns.length;i++)
 		{
-			itsInstructionCounter++;
+			if (! aTypes.isReachable(i)) aRemoved[i] = true;
+			
+			AbstractInsnNode theInsn = theInsns[i];
+			if (theInsn instanceof VarInsnNode 
+					&& (theInsn.getOpcode() < Opcodes.ISTORE || theInsn.getOpcode() == Opcodes.RET))
+			{
+				theLoads[((VarInsnNode) theInsn).var]++;
+			}
+			else if (theInsn instanceof IincInsnNode)
+			{
+				theLoads[((IincInsnNode) theInsn).var]++;
+			}
 		}
-
-		@Override
-		public void visitJumpInsn(int aOpcode, Label aLabel)
+		
+		// xSTORE n; xLOAD n leaves the value on the stack
+		for(int i=0;i<theInsns.length;i++)
 		{
-			itsInstructionCounter++;
+			if (aRemoved[i] || ! (theInsns[i] instanceof VarInsnNode)) continue;
+			int theOpcode = theInsns[i].getOpcode();
+			if (theOpcode < Opcodes.ISTORE || theOpcode > Opcodes.ASTORE) continue;
+			int theVar = ((VarInsnNode) theInsns[i]).var;
+			int j = nextKept(theInsns, aRemoved, i);
+			if (j >= 0
+					&& theLoads[theVar] == 1
+					&& theInsns[j].getOpcode() == theOpcode - (Opcodes.ISTORE - Opcodes.ILOAD)
+					&& ((VarInsnNode) theInsns[j]).var == theVar)
+			{
+				aRemoved[i] = aRemoved[j] = true;
+			}
 		}
-
-		@Override
-		public void visitLdcInsn(Object aCst)
+		
+		for(int i=0;i<theInsns.length;i++)
 		{
-			itsInstructionCounter++;
+			if (aRemoved[i]) continue;
+			while (isIntConstant(aCode[i]))
+			{
+				int j = nextKept(theInsns, aRemoved, i);
+				if (j < 0 || ! isIntConstant(aCode[j])) break;
+				int k = nextKept(theInsns, aRemoved, j);
+				if (k < 0 || ! isFoldable(aCode[k].getOpcode(), getIntConstant(aCode[j]))) break;
+				aCode[i] = new ConstantInsn(fold(aCode[k].getOpcode(), getIntConstant(aCode[i]), getIntConstant(aCode[j])));
+				aRemoved[j] = aRemoved[k] = true;
+			}
 		}
-
-		@Override
-		public void visitLookupSwitchInsn(Label aDflt, int[] aKeys, Label[] aLabels)
+		
+		for(int i=0;i<theInsns.length;i++)
 		{
-			itsInstructionCounter++;
+			if (aRemoved[i] || theInsns[i].getOpcode() != Opcodes.GOTO) continue;
+			int theTarget = getLabelIP(((JumpInsnNode) theInsns[i]).label);
+			int j = i+1;
+			while (j < theTarget && aRemoved[j]) j++;
+			if (j == theTarget) aRemoved[i] = true;
 		}
-
-		@Override
-		public void visitMethodInsn(int aOpcode, String aOwner, String aName, String aDesc)
+	}
+	
+	/**
+	 * Returns the index of the first instruction after the given one that is not removed,
+	 * or -1 if there is none or if a label comes first.
+	 */
+	private static int nextKept(AbstractInsnNode[] aInsns, boolean[] aRemoved, int aIndex)
+	{
+		for(int i=aIndex+1;i<aInsns.length;i++)
 		{
-			itsInstructionCounter++;
+			if (aInsns[i] instanceof LabelNode) return -1;
+			if (! aRemoved[i]) return i;
 		}
-
-		@Override
-		public void visitMultiANewArrayInsn(String aDesc, int aDims)
+		return -1;
+	}
+	
+	private static boolean isFoldable(int aOpcode, int aOperand2)
+	{
+		switch(aOpcode)
 		{
-			itsInstructionCounter++;
+		case Opcodes.IADD:
+		case Opcodes.ISUB:
+		case Opcodes.IMUL:
+		case Opcodes.ISHL:
+		case Opcodes.ISHR:
+		case Opcodes.IUSHR:
+		case Opcodes.IAND:
+		case Opcodes.IOR:
+		case Opcodes.IXOR:
+			return true;
+			
+		case Opcodes.IDIV:
+		case Opcodes.IREM:
+			// Division by zero must throw at run time
+			return aOperand2 != 0;
+			
+		default:
+			return false;
 		}
-
-		@Override
-		public void visitTableSwitchInsn(int aMin, int aMax, Label aDflt, Label[] aLabels)
+	}
+	
+	private static int fold(int aOpcode, int v1, int v2)
+	{
+		switch(aOpcode)
 		{
-			itsInstructionCounter++;
+		case Opcodes.IADD: return v1 + v2;
+		case Opcodes.ISUB: return v1 - v2;
+		case Opcodes.IMUL: return v1 * v2;
+		case Opcodes.IDIV: return v1 / v2;
+		case Opcodes.IREM: return v1 % v2;
+		case Opcodes.ISHL: return v1 << v2;
+		case Opcodes.ISHR: return v1 >> v2;
+		case Opcodes.IUSHR: return v1 >>> v2;
+		case Opcodes.IAND: return v1 & v2;
+		case Opcodes.IOR: return v1 | v2;
+		case Opcodes.IXOR: return v1 ^ v2;
+		default: throw new UnsupportedOperationException();
 		}
-
-		@Override
-		public void visitTypeInsn(int aOpcode, String aType)
+	}
+	
+	/**
+	 * Fuses the sequences enabled by {@link #itsSuperinstructions}.
+	 * The first instruction of a sequence is replaced by the superinstruction,
+	 * which then skips the other ones. ALOAD; GETFIELD is fused when the field
+	 * is resolved, see {@link JFrame#visitFieldInsn(int, String, String, String)}.
+	 */
+	private void fuse(AbstractInsnNode[] aCode, boolean[] aRemoved, JTypeInference aTypes)
+	{
+		AbstractInsnNode[] theInsns = getNode().instructions.toArray();
+		for(int i=0;i<theInsns.length;i++)
+		{
+			if (aRemoved[i]) continue;
+			int j = nextKept(theInsns, aRemoved, i);
+			int k = j >= 0 ? nextKept(theInsns, aRemoved, j) : -1;
+			if (k < 0) continue;
+			
+			switch(aCode[i].getOpcode())
+			{
+			case Opcodes.ILOAD: {
+				int theVar = ((VarInsnNode) theInsns[i]).var;
+				int l = nextKept(theInsns, aRemoved, k);
+				if ((itsSuperinstructions & JSuperinstructions.ADD_LOCALS) != 0
+						&& l >= 0
+						&& aCode[j].getOpcode() == Opcodes.ILOAD
+						&& aCode[k].getOpcode() == Opcodes.IADD
+						&& aCode[l].getOpcode() == Opcodes.ISTORE)
+				{
+					int theVar2 = ((VarInsnNode) theInsns[j]).var;
+					aCode[i] = new AddLocalsInsn(
+							theVar, 
+							theVar2, 
+							((VarInsnNode) theInsns[l]).var,
+							aTypes.isExactIntLocal(i, theVar) && aTypes.isExactIntLocal(i, theVar2));
+					i = l;
+				}
+				else if ((itsSuperinstructions & JSuperinstructions.COMPARE_CONSTANT) != 0
+						&& isIntConstant(aCode[j])
+						&& aCode[k].getOpcode() >= Opcodes.IF_ICMPEQ
+						&& aCode[k].getOpcode() <= Opcodes.IF_ICMPLE)
+				{
+					aCode[i] = new CompareConstantInsn(
+							aCode[k].getOpcode(), 
+							theVar, 
+							getIntConstant(aCode[j]), 
+							((JumpInsnNode) theInsns[k]).label.getLabel(),
+							aTypes.isExactIntLocal(i, theVar));
+					i = k;
+				}
+			} break;
+				
+			case Opcodes.ALOAD: {
+				int theOpcode = aCode[k].getOpcode();
+				if ((itsSuperinstructions & JSuperinstructions.LOAD_ELEMENT) != 0
+						&& aCode[j].getOpcode() == Opcodes.ILOAD
+						&& theOpcode >= Opcodes.IALOAD 
+						&& theOpcode <= Opcodes.SALOAD)
+				{
+					int theIndex = ((VarInsnNode) theInsns[j]).var;
+					aCode[i] = new LoadElementInsn(
+							((VarInsnNode) theInsns[i]).var, 
+							theIndex,
+							aTypes.isExactIntLocal(i, theIndex));
+					i = k;
+				}
+			} break;
+			}
+		}
+	}
+	
+	/**
+	 * Whether the given instruction pushes an int constant.
+	 */
+	private static boolean isIntConstant(AbstractInsnNode aInsn)
+	{
+		int theOpcode = aInsn.getOpcode();
+		return aInsn instanceof ConstantInsn
+			|| (theOpcode >= Opcodes.ICONST_M1 && theOpcode <= Opcodes.ICONST_5)
+			|| theOpcode == Opcodes.BIPUSH 
+			|| theOpcode == Opcodes.SIPUSH
+			|| (aInsn instanceof LdcInsnNode && ((LdcInsnNode) aInsn).cst instanceof Integer);
+	}
+	
+	private static int getIntConstant(AbstractInsnNode aInsn)
+	{
+		if (aInsn instanceof ConstantInsn) return ((ConstantInsn) aInsn).itsValue.v;
+		if (aInsn instanceof LdcInsnNode) return ((Integer) ((LdcInsnNode) aInsn).cst).intValue();
+		
+		int theOpcode = aInsn.getOpcode();
+		if (theOpcode == Opcodes.BIPUSH || theOpcode == Opcodes.SIPUSH) return ((IntInsnNode) aInsn).operand;
+		else return theOpcode - Opcodes.ICONST_0;
+	}
+	
+	/**
+	 * Recognizes the methods that cannot throw nor invoke other methods, and can
+	 * therefore be executed at the call site: field getters and setters, methods 
+	 * that return a constant or nothing, and int arithmetic on the arguments.
+	 * Works on the decoded instructions, so that folded constants are recognized.
+	 * @return The trivial implementation, or null if the method is not trivial.
+	 */
+	private Trivial classify()
+	{
+		if ((getNode().access & Opcodes.ACC_SYNCHRONIZED) != 0 || itsCode.length == 0) return null;
+		boolean theStatic = (getNode().access & Opcodes.ACC_STATIC) != 0;
+		int theLast = itsCode.length-1;
+		int theReturn = itsCode[theLast].getOpcode();
+		if (theReturn < Opcodes.IRETURN || theReturn > Opcodes.RETURN) return null;
+		
+		if (itsCode.length == 1 && theReturn == Opcodes.RETURN) 
 		{
-			itsInstructionCounter++;
+			return new ConstantTrivial(JPrimitive.VOID);
 		}
-
-		@Override
-		public void visitVarInsn(int aOpcode, int aVar)
+		
+		if (itsCode.length == 2 && theReturn == Opcodes.ARETURN && itsCode[0].getOpcode() == Opcodes.ACONST_NULL)
+		{
+			return new ConstantTrivial(null);
+		}
+		
+		if (! theStatic
+				&& itsCode.length == 3 
+				&& theReturn != Opcodes.RETURN
+				&& isLoad(itsCode[0], Opcodes.ALOAD, 0)
+				&& itsCode[1] instanceof FieldInsnNode
+				&& itsCode[1].getOpcode() == Opcodes.GETFIELD)
+		{
+			FieldInsnNode theField = (FieldInsnNode) itsCode[1];
+			return new GetterTrivial(theField.owner, theField.name);
+		}
+		
+		if (! theStatic
+				&& itsCode.length == 4
+				&& theReturn == Opcodes.RETURN
+				&& isLoad(itsCode[0], Opcodes.ALOAD, 0)
+				&& isLoad(itsCode[1], itsCode[1].getOpcode(), 1)
+				&& itsCode[2] instanceof FieldInsnNode
+				&& itsCode[2].getOpcode() == Opcodes.PUTFIELD)
+		{
+			FieldInsnNode theField = (FieldInsnNode) itsCode[2];
+			return new SetterTrivial(theField.owner, theField.name);
+		}
+		
+		if (theReturn != Opcodes.IRETURN || itsCode.length > MAX_TRIVIAL_LENGTH) return null;
+		
+		// Maps local variable slots to argument indices
+		Type[] theArgTypes = Type.getArgumentTypes(getNode().desc);
+		int[] theSlotToArg = new int[getNode().maxLocals];
+		Arrays.fill(theSlotToArg, -1);
+		int theSlot = theStatic ? 0 : 1;
+		for(int i=0;i<theArgTypes.length;i++)
+		{
+			theSlotToArg[theSlot] = i;
+			theSlot += theArgTypes[i].getSize();
+		}
+		
+		List<Expr> theStack = new ArrayList<Expr>();
+		for(int i=0;i<theLast;i++)
+		{
+			AbstractInsnNode theInsn = itsCode[i];
+			int theOpcode = theInsn.getOpcode();
+			if (isIntConstant(theInsn))
+			{
+				theStack.add(new ConstantExpr(getIntConstant(theInsn)));
+			}
+			else if (isLoad(theInsn, Opcodes.ILOAD, -1) && theSlotToArg[((VarInsnNode) theInsn).var] >= 0)
+			{
+				theStack.add(new ArgExpr(theSlotToArg[((VarInsnNode) theInsn).var]));
+			}
+			else if (theOpcode == Opcodes.INEG && theStack.size() >= 1)
+			{
+				theStack.add(new NegExpr(theStack.remove(theStack.size()-1)));
+			}
+			else if (theOpcode != Opcodes.IDIV 
+					&& theOpcode != Opcodes.IREM 
+					&& isFoldable(theOpcode, 0) 
+					&& theStack.size() >= 2)
+			{
+				Expr theRight = theStack.remove(theStack.size()-1);
+				Expr theLeft = theStack.remove(theStack.size()-1);
+				theStack.add(new BinaryExpr(theOpcode, theLeft, theRight));
+			}
+			else return null;
+		}
+		
+		return theStack.size() == 1 ? new ArithmeticTrivial(theStack.get(0)) : null;
+	}
+	
+	/**
+	 * Whether the given instruction is an original load instruction (not a 
+	 * superinstruction) with the given opcode.
+	 * @param aVar The loaded variable, or -1 for any variable.
+	 */
+	private static boolean isLoad(AbstractInsnNode aInsn, int aOpcode, int aVar)
+	{
+		return aInsn instanceof VarInsnNode
+			&& aInsn.getOpcode() == aOpcode
+			&& aOpcode >= Opcodes.ILOAD
+			&& aOpcode <= Opcodes.ALOAD
+			&& (aVar < 0 || ((VarInsnNode) aInsn).var == aVar);
+	}
+	
+	/**
+	 * Whether there is a label between the given indices of the method node.
+	 */
+	private boolean hasLabel(int aFrom, int aTo)
+	{
+		for(int i=aFrom+1;i<aTo;i++)
+		{
+			if (getNode().instructions.get(i) instanceof LabelNode) return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Maps labels to instruction pointers, and threads jumps to GOTO instructions.
+	 * @param aCode The instructions of the method node.
+	 */
+	private void mapLabels(AbstractInsnNode[] aCode)
+	{
+		for(int i=0;i<aCode.length;i++)
+		{
+			if (aCode[i] instanceof LabelNode) itsLabelToInsnMap.put(((LabelNode) aCode[i]).getLabel(), itsCompactIPs[i]);
+		}
+		
+		for (Map.Entry<Label, Integer> theEntry : itsLabelToInsnMap.entrySet())
 		{
-			itsInstructionCounter++;
+			int theIP = theEntry.getValue();
+			// Bounded, as GOTO instructions can form a cycle
+			for(int i=0;i<itsCode.length && theIP < itsCode.length && itsCode[theIP].getOpcode() == Opcodes.GOTO;i++)
+			{
+				theIP = itsLabelToInsnMap.get(((JumpInsnNode) itsCode[theIP]).label.getLabel());
+			}
+			theEntry.setValue(theIP);
 		}
 	}
 	
@@ -206,6 +747,31 @@ public class JNormalBehavior extends JASMBehavior
 		private int itsInstructionPointer;
 		private JObject itsReturnValue;
 		
+		/**
+		 * Receives the execution events of this frame, if recording is enabled.
+		 */
+		private JEventSink itsSink;
+		
+		/**
+		 * The metrics of the thread, shared by all its frames.
+		 */
+		private JMetrics.Stripe itsStripe;
+		
+		/**
+		 * The fuel of the thread, or null if it is not limited.
+		 */
+		private JFuel itsFuel;
+		
+		/**
+		 * The instruction from which fuel has not been charged yet.
+		 */
+		private int itsFuelMark;
+		
+		/**
+		 * The cancellation token of the invocation, or null.
+		 */
+		private JCancellation itsCancellation;
+		
 		public JFrame(JFrame aParentFrame, JObject[] aArgs, int aNLocals, int aStackSize)
 		{
 			itsParentFrame = aParentFrame;
@@ -222,21 +788,103 @@ public class JNormalBehavior extends JASMBehavior
 			return itsParentFrame;
 		}
 		
+		public JNormalBehavior getBehavior()
+		{
+			return JNormalBehavior.this;
+		}
+		
+		/**
+		 * The index in the method node of the instruction being executed. 
+		 * Can be read from other threads, but is then only approximate.
+		 */
+		public int getInstructionPointer()
+		{
+			return getOriginalIP(itsInstructionPointer);
+		}
+		
 		public int step()
 		{
-			AbstractInsnNode theInsnNode = getNode().instructions.get(itsInstructionPointer);
+			AbstractInsnNode theInsnNode = itsCode[itsInstructionPointer];
+			try
+			{
+				theInsnNode.accept(this);
+			}
+			catch (ExceptionThrown e)
+			{
+				handleEx(e);
+			}
+			catch (JAbortedException e)
+			{
+				throw e;
+			}
+			catch(Exception e)
+			{
+				e.printStackTrace();
+				handleEx(new ExceptionThrown(getInterpreter().new_Exception("RuntimeException", this, "JInterpreter exception: "+e.getMessage())));
+			}
+			return itsInstructionPointer;
+		}
+		
+		/**
+		 * Runs this frame to completion, updating the counters of the given profiler.
+		 */
+		private void runProfiled(JProfiler aProfiler)
+		{
+			JProfiler.ThreadData theData = aProfiler.getThreadData();
+			JProfiler.Counters theCounters = theData.enter(JNormalBehavior.this);
+			long[] theOpcodeCounts = theData.getOpcodeCounts();
+			AbstractInsnNode[] theCode = itsCode;
+			int[] theOriginalIPs = itsOriginalIPs;
+			long[] theExecutions = theCounters.executions(itsCompactIPs.length-1);
+			long theStartTime = System.nanoTime();
+			long theStartInstructions = theCounters.instructions;
+			try
+			{
+				do
+				{
+					int theOpcode = theCode[itsInstructionPointer].getOpcode();
+					if (theOpcode >= 0) 
+					{
+						theOpcodeCounts[theOpcode]++;
+						theExecutions[theOriginalIPs[itsInstructionPointer]]++;
+						theCounters.instructions++;
+					}
+				}
+				while (stepProfiled(theCounters) != -1);
+			}
+			finally
+			{
+				itsStripe.add(JMetrics.INSTRUCTIONS, theCounters.instructions - theStartInstructions);
+				theData.exit(theCounters, theStartTime);
+			}
+		}
+		
+		/**
+		 * Same as {@link #step()}, but counts exceptions.
+		 */
+		private int stepProfiled(JProfiler.Counters aCounters)
+		{
+			AbstractInsnNode theInsnNode = itsCode[itsInstructionPointer];
 			try
 			{
 				theInsnNode.accept(this);
 			}
 			catch (ExceptionThrown e)
 			{
-				throwEx(e.getException());
+				aCounters.thrown++;
+				handleEx(e);
+				aCounters.caught++;
+			}
+			catch (JAbortedException e)
+			{
+				throw e;
 			}
 			catch(Exception e)
 			{
 				e.printStackTrace();
-				throwEx(getInterpreter().new_Exception("RuntimeException", this, "JInterpreter exception: "+e.getMessage()));
+				aCounters.thrown++;
+				handleEx(new ExceptionThrown(getInterpreter().new_Exception("RuntimeException", this, "JInterpreter exception: "+e.getMessage())));
+				aCounters.caught++;
 			}
 			return itsInstructionPointer;
 		}
@@ -251,6 +899,16 @@ public class JNormalBehavior extends JASMBehavior
 			return itsStack[--itsStackSize];
 		}
 		
+		/**
+		 * Pops a value of the int category.
+		 * @param aExact Whether the value is known to be a {@link JInt}.
+		 */
+		private int popInt(boolean aExact)
+		{
+			JObject v = pop();
+			return aExact ? ((JInt) v).v : ((JPrimitive) v).intValue();
+		}
+		
 		private JObject local(int aIndex)
 		{
 			return itsLocals[aIndex];
@@ -261,52 +919,76 @@ public class JNormalBehavior extends JASMBehavior
 			itsLocals[aIndex] = aValue;
 		}
 		
-		private boolean match(JInstance aException, String aType)
+		/**
+		 * Returns the value of a local variable of the int category.
+		 * @param aExact Whether the variable is known to hold a {@link JInt}.
+		 */
+		private int localInt(int aIndex, boolean aExact)
 		{
-			JClass theClass = aException.getType();
-			while (theClass != null)
-			{
-				if (aType.equals(theClass.getName())) return true;
-				theClass = theClass.getSuperclass();
-			}
-			return false;
+			JObject v = itsLocals[aIndex];
+			return aExact ? ((JInt) v).v : ((JPrimitive) v).intValue();
 		}
-
+		
 		private TryCatchBlock getHandler(JInstance aException)
 		{
-			for (TryCatchBlock theBlock : getTryCatchBlocks())
+			// Cancellation can only be caught by finally handlers
+			boolean theFinallyOnly = itsCancellation != null && itsCancellation.isSignal(aException);
+			for (TryCatchBlock theBlock : getHandlers(itsOriginalIPs[itsInstructionPointer]))
 			{
-				if (itsInstructionPointer < theBlock.start || itsInstructionPointer >= theBlock.end) continue;
-				if (! match(aException, theBlock.type)) continue;
-				return theBlock;
+				if (theFinallyOnly ? theBlock.type == null : theBlock.catches(aException)) return theBlock;
 			}
 			return null;
 		}
 		
+		/**
+		 * Throws the given exception from the current instruction.
+		 * It is handled by {@link #step()}.
+		 */
 		private void throwEx(JInstance aException)
 		{
-			// Add stack trace info
-			List<String> theStackTraceInfo = aException.getStackTraceInfo();
-			theStackTraceInfo.add(getDeclaringClass().getName()+"."+getName()+":"+itsInstructionPointer);
+			throw new ExceptionThrown(aException);
+		}
+		
+		/**
+		 * Transfers control to the handler of the carried exception, 
+		 * or propagates the carrier to the parent frame.
+		 */
+		private void handleEx(ExceptionThrown aCarrier)
+		{
+			JInstance theException = aCarrier.getException();
+			int theIP = itsOriginalIPs[itsInstructionPointer];
+			if (aCarrier.startUnwinding()) itsStripe.inc(JMetrics.EXCEPTIONS);
+			if (itsSink != null) itsSink.exception(JNormalBehavior.this, theIP, theException);
 			
 			// Handle exception
-			TryCatchBlock theHandler = getHandler(aException);
+			TryCatchBlock theHandler = getHandler(theException);
 			if (theHandler != null) 
 			{
 				itsStackSize = 0;
-				push(aException);
-				itsInstructionPointer = theHandler.handler;
+				push(theException);
+				
+				// Like a jump: charge the instructions executed since the last one
+				int theTarget = itsCompactIPs[theHandler.handler];
+				if (itsFuel != null)
+				{
+					itsFuel.consume(itsInstructionPointer - itsFuelMark + 1);
+					itsFuelMark = theTarget;
+				}
+				itsInstructionPointer = theTarget;
 			}
 			else
 			{
-				throw new ExceptionThrown(aException);
+				throw aCarrier;
 			}
 		}
 		
-		@Override
-		public void visitLabel(Label aLabel)
+		/**
+		 * Replaces the current instruction by the given quick variant, and executes it.
+		 */
+		private void quicken(QuickInsn aQuick)
 		{
-			itsInstructionPointer++;
+			itsCode[itsInstructionPointer] = aQuick;
+			aQuick.execute(this);
 		}
 		
 		@Override
@@ -318,35 +1000,39 @@ public class JNormalBehavior extends JASMBehavior
 
 			switch(aOpcode)
 			{
-			case GETSTATIC:
-				theClass.clInit(this);
-				push(((JStaticField) theField).getStaticFieldValue());
+			case GETSTATIC: 
+				quicken(new QuickGetStatic(theClass, (JStaticField) theField));
 				break;
 				
-			case PUTSTATIC: {
-				theClass.clInit(this);
-				JObject v = pop();
-				((JStaticField) theField).putStaticFieldValue(v);
-			} break;
+			case PUTSTATIC: 
+				quicken(new QuickPutStatic(theClass, (JStaticField) theField));
+				break;
 				
 			case GETFIELD: {
-				JInstance target = (JInstance) pop();
-				JObject v = target.getFieldValue(theField);
-				push(v);
+				int theIP = itsInstructionPointer;
+				quicken(new QuickGetField(theField));
+				
+				// The load of the target can only be fused if it is still the original 
+				// instruction, and if the field instruction is not a jump target.
+				// It is read once, as another thread may fuse it concurrently.
+				AbstractInsnNode theLoad = theIP > 0 ? itsCode[theIP-1] : null;
+				if ((itsSuperinstructions & JSuperinstructions.LOAD_FIELD) != 0
+						&& theLoad instanceof VarInsnNode
+						&& theLoad.getOpcode() == ALOAD
+						&& ! hasLabel(itsOriginalIPs[theIP-1], itsOriginalIPs[theIP]))
+				{
+					itsCode[theIP-1] = new LoadFieldInsn(((VarInsnNode) theLoad).var, theField);
+				}
 			} break;
 				
-			case PUTFIELD: {
-				JObject v = pop();
-				JInstance target = (JInstance) pop();
-				
-				target.putFieldValue(theField, v);
-			} break;
+			case PUTFIELD: 
+				quicken(new QuickPutField(theField));
+				break;
 				
 			default: 
 				throw new UnsupportedOperationException();
 
 			}
-			itsInstructionPointer++;
 		}
 
 		@Override
@@ -447,27 +1133,34 @@ public class JNormalBehavior extends JASMBehavior
 				JInt index = (JInt) pop();
 				JArray array = (JArray) pop();
 				array.set(index.v, value);
+				if (itsSink != null) itsSink.arrayStore(array, index.v, value);
 			} break;
 				
 			case BASTORE: {
 				JPrimitive value = (JPrimitive) pop();
 				JInt index = (JInt) pop();
 				JArray array = (JArray) pop();
-				array.set(index.v, new JByte((byte) value.intValue()));
+				JObject v = new JByte((byte) value.intValue());
+				array.set(index.v, v);
+				if (itsSink != null) itsSink.arrayStore(array, index.v, v);
 			} break;
 			
 			case CASTORE: {
 				JPrimitive value = (JPrimitive) pop();
 				JInt index = (JInt) pop();
 				JArray array = (JArray) pop();
-				array.set(index.v, new JChar((char) value.intValue()));
+				JObject v = new JChar((char) value.intValue());
+				array.set(index.v, v);
+				if (itsSink != null) itsSink.arrayStore(array, index.v, v);
 			} break;
 			
 			case SASTORE: {
 				JPrimitive value = (JPrimitive) pop();
 				JInt index = (JInt) pop();
 				JArray array = (JArray) pop();
-				array.set(index.v, new JShort((short) value.intValue()));
+				JObject v = new JShort((short) value.intValue());
+				array.set(index.v, v);
+				if (itsSink != null) itsSink.arrayStore(array, index.v, v);
 			} break;
 				
 			case POP:
@@ -748,12 +1441,30 @@ public class JNormalBehavior extends JASMBehavior
 				throwEx(theException);
 			} return;
 				
-			case MONITORENTER:
-				throw new UnsupportedOperationException();
-				
-			case MONITOREXIT:
-				throw new UnsupportedOperationException();
-				
+			case MONITORENTER: {
+				JObject o = pop();
+				if (o == null) 
+				{
+					throwEx(getInterpreter().new_NullPointerException(this, "null"));
+					return;
+				}
+				o.getMonitor().enter();
+			} break;
+				
+			case MONITOREXIT: {
+				JObject o = pop();
+				if (o == null) 
+				{
+					throwEx(getInterpreter().new_NullPointerException(this, "null"));
+					return;
+				}
+				if (! o.getMonitor().exit())
+				{
+					throwEx(getInterpreter().new_Exception("IllegalMonitorStateException", this, "current thread not owner"));
+					return;
+				}
+			} break;
+				
 			default:
 				throw new UnsupportedOperationException();
 			}
@@ -773,7 +1484,9 @@ public class JNormalBehavior extends JASMBehavior
 				
 			case NEWARRAY: {
 				JInt size = (JInt) pop();
-				push(new SimpleArray(size.v));
+				JArray array = getInterpreter().newArray(this, size.v, getElementSize(aOperand));
+				push(array);
+				itsStripe.inc(JMetrics.ARRAYS_ALLOCATED);
 			} break;
 				
 			default: 
@@ -783,9 +1496,33 @@ public class JNormalBehavior extends JASMBehavior
 			itsInstructionPointer++;
 		}
 		
+		/**
+		 * Returns the size of the elements of arrays created by NEWARRAY with the given operand.
+		 */
+		private int getElementSize(int aArrayType)
+		{
+			switch(aArrayType)
+			{
+			case T_BOOLEAN: 
+			case T_BYTE: return 1;
+			case T_CHAR: 
+			case T_SHORT: return 2;
+			case T_LONG: 
+			case T_DOUBLE: return 8;
+			default: return 4;
+			}
+		}
+		
 		private void jump(Label aLabel)
 		{
-			itsInstructionPointer = itsLabelToInsnMap.get(aLabel);
+			int theTarget = itsLabelToInsnMap.get(aLabel);
+			if (itsFuel != null)
+			{
+				itsFuel.consume(itsInstructionPointer - itsFuelMark + 1);
+				itsFuelMark = theTarget;
+			}
+			if (itsCancellation != null && theTarget <= itsInstructionPointer) itsCancellation.poll(getInterpreter(), this);
+			itsInstructionPointer = theTarget;
 		}
 
 		@Override
@@ -974,50 +1711,119 @@ public class JNormalBehavior extends JASMBehavior
 			case INVOKEINTERFACE: {
 				JBehavior theBehavior = getInterpreter().getVirtual(aOwner, aName, aDesc);
 				if (theBehavior == null) Utils.rtex("Cannot find behavior: %s, %s, %s", aOwner, aName, aDesc);
-				JObject[] theArgs = new JObject[theBehavior.getArgCount()];
-				for(int i=theArgs.length-1;i>=0;i--) theArgs[i] = pop();
-				JInstance theTarget = (JInstance) pop();
-				
-				if (theTarget == null) 
-				{
-					throwEx(getInterpreter().new_NullPointerException(this, ""));
-					return;
-				}
-				
-				// Find the actual behavior
-				theBehavior = theTarget.getType().getVirtualBehavior(aName, aDesc);
-				
-				// Invoke
-				JObject theResult = theBehavior.invoke(this, theTarget, theArgs);
-				if (theResult != JPrimitive.VOID) push(theResult);
+				quicken(new QuickInvokeVirtual(aOpcode, aName, aDesc, theBehavior.getArgCount()));
 			} break;
 				
 			case INVOKESPECIAL: {
 				JClass theClass = getInterpreter().getClass(aOwner);
 				JBehavior theBehavior = theClass.getBehavior(aName, aDesc);
 				if (theBehavior == null) Utils.rtex("Behavior not found: %s %s in %s", aName, aDesc, aOwner);
-				JObject[] theArgs = new JObject[theBehavior.getArgCount()];
-				for(int i=theArgs.length-1;i>=0;i--) theArgs[i] = pop();
-				JObject theTarget = pop();
-				JObject theResult = theBehavior.invoke(this, theTarget, theArgs);
-				if (theResult != JPrimitive.VOID) push(theResult);
+				quicken(new QuickInvokeSpecial(theBehavior));
 			} break;
 			
 			case INVOKESTATIC: {
 				JClass theClass = getInterpreter().getClass(aOwner);
 				JBehavior theBehavior = theClass.getBehavior(JClass.getBehaviorKey(aName, aDesc));
 				if (theBehavior == null) Utils.rtex("Behavior not found: %s %s in %s", aName, aDesc, theClass.getName());
-				JObject[] theArgs = new JObject[theBehavior.getArgCount()];
-				for(int i=theArgs.length-1;i>=0;i--) theArgs[i] = pop();
-				JObject theResult = theBehavior.invoke(this, null, theArgs);
-				if (theResult != JPrimitive.VOID) push(theResult);
+				quicken(new QuickInvokeStatic(theBehavior));
 			} break;
 				
 			default: 
 				throw new UnsupportedOperationException();
 
 			}
-			itsInstructionPointer++;
+		}
+		
+		/**
+		 * Pops the given number of arguments from the operand stack.
+		 */
+		private JObject[] popArgs(int aCount)
+		{
+			JObject[] theArgs = new JObject[aCount];
+			for(int i=aCount-1;i>=0;i--) theArgs[i] = pop();
+			return theArgs;
+		}
+		
+		/**
+		 * Returns a value of the operand stack without popping it.
+		 * @param aDepth The depth of the value, 0 being the top of the stack.
+		 */
+		private JObject peek(int aDepth)
+		{
+			return itsStack[itsStackSize-1-aDepth];
+		}
+		
+		/**
+		 * Executes a trivial behavior with the arguments on the operand stack, without a frame.
+		 * The invocation is charged one unit of fuel and polls the cancellation, as 
+		 * {@link JNormalBehavior#invoke0(JFrame, JObject, JObject...)} does.
+		 * @return Whether the behavior was executed. It is not when events are recorded 
+		 * or the interpreter is profiled or sampled, so that the invocation is not missing.
+		 */
+		private boolean inline(Trivial aTrivial)
+		{
+			JInterpreter theInterpreter = getInterpreter();
+			if (itsSink != null || theInterpreter.getProfiler() != null || theInterpreter.getSampler() != null) return false;
+			if (! aTrivial.execute(this)) return false;
+			itsStripe.inc(JMetrics.INLINED_INVOCATIONS);
+			
+			if (itsFuel != null) itsFuel.consume(1);
+			if (itsCancellation != null) itsCancellation.poll(theInterpreter, this);
+			return true;
+		}
+		
+		/**
+		 * Pushes the result of an invocation, unless it is void.
+		 */
+		private void pushResult(JObject aResult)
+		{
+			if (aResult != JPrimitive.VOID) push(aResult);
+		}
+
+		/**
+		 * Counts the invocations of behaviors that are not interpreted.
+		 * Interpreted invocations are counted when their frame starts.
+		 */
+		private void countNative(JBehavior aBehavior)
+		{
+			if (! (aBehavior instanceof JNormalBehavior)) itsStripe.inc(JMetrics.NATIVE_INVOCATIONS);
+		}
+
+		/**
+		 * Calls a typed native implementation with the values of the operand stack.
+		 * @return Whether the implementation is typed.
+		 */
+		private boolean invokeTyped(JNativeBehavior aBehavior)
+		{
+			JNative theNative = aBehavior.getNative();
+			if (theNative instanceof JNative.Generic) return false;
+			
+			aBehavior.getDeclaringClass().clInit(this);
+			if (theNative instanceof JNative.IntToInt)
+			{
+				int a0 = ((JInt) pop()).v;
+				push(new JInt(((JNative.IntToInt) theNative).apply(a0)));
+			}
+			else if (theNative instanceof JNative.IntIntToInt)
+			{
+				int a1 = ((JInt) pop()).v;
+				int a0 = ((JInt) pop()).v;
+				push(new JInt(((JNative.IntIntToInt) theNative).apply(a0, a1)));
+			}
+			else if (theNative instanceof JNative.LongToLong)
+			{
+				long a0 = ((JLong) pop()).v;
+				push(new JLong(((JNative.LongToLong) theNative).apply(a0)));
+			}
+			else if (theNative instanceof JNative.LongLongToLong)
+			{
+				long a1 = ((JLong) pop()).v;
+				long a0 = ((JLong) pop()).v;
+				push(new JLong(((JNative.LongLongToLong) theNative).apply(a0, a1)));
+			}
+			else return false;
+			
+			return true;
 		}
 
 		@Override
@@ -1037,30 +1843,24 @@ public class JNormalBehavior extends JASMBehavior
 		{
 			switch(aOpcode)
 			{
-			case NEW: {
-				JClass theClass = getInterpreter().getClass(aType);
-				push(theClass.newInstance());
-			} break;
+			case NEW: 
+				quicken(new QuickNew(getInterpreter().getClass(aType)));
+				return;
 				
 			case ANEWARRAY:{
 				JInt size = (JInt) pop();
-				push(new SimpleArray(size.v));
+				JArray array = getInterpreter().newArray(this, size.v, 0);
+				push(array);
+				itsStripe.inc(JMetrics.ARRAYS_ALLOCATED);
 			} break;
 				
-			case CHECKCAST: {
-				JInstance o = (JInstance) pop();
-				JClass theClass = getInterpreter().getClass(aType);
-				boolean theResult = theClass.isAssignableFrom(o.getType());
-				if (theResult) push(o);
-				else throwEx(getInterpreter().new_ClassCastException(this, "Cannot cast "+o.getType()+" to "+aType));
-			} break;
+			case CHECKCAST: 
+				quicken(new QuickCheckcast(getInterpreter().getClass(aType)));
+				return;
 								
-			case INSTANCEOF: {
-				JInstance o = (JInstance) pop();
-				JClass theClass = getInterpreter().getClass(aType);
-				boolean theResult = theClass.isAssignableFrom(o.getType());
-				push(new JInt(theResult ? 1 : 0));
-			} break;
+			case INSTANCEOF: 
+				quicken(new QuickInstanceof(getInterpreter().getClass(aType)));
+				return;
 				
 			default: 
 				throw new UnsupportedOperationException();
@@ -1100,9 +1900,1027 @@ public class JNormalBehavior extends JASMBehavior
 		}
 	}
 
-	private static class ExceptionThrown extends RuntimeException
+	/**
+	 * An instruction that holds the symbols it resolved the first time it was executed.
+	 * Quick instructions are only placed in {@link #itsCode}; they are executed
+	 * directly by the frame that visits them.
+	 * <p>
+	 * Frames of other threads can read a quick instruction from {@link #itsCode} 
+	 * without synchronization. Its publication is safe because all its fields, 
+	 * and those of the objects it references, are final (which is why the opcode 
+	 * is not read from the non-final field of ASM), or volatile for the ones 
+	 * that are updated later (inline caches, lazily resolved fields).
+	 */
+	private abstract class QuickInsn extends AbstractInsnNode
+	{
+		private final int itsOpcode;
+		private final int itsType;
+		
+		public QuickInsn(int aOpcode, int aType)
+		{
+			super(aOpcode);
+			itsOpcode = aOpcode;
+			itsType = aType;
+		}
+		
+		@Override
+		public int getOpcode()
+		{
+			return itsOpcode;
+		}
+		
+		@Override
+		public int getType()
+		{
+			return itsType;
+		}
+		
+		@Override
+		public void accept(MethodVisitor aVisitor)
+		{
+			execute((JFrame) aVisitor);
+		}
+		
+		@Override
+		@SuppressWarnings("rawtypes") // Signature imposed by ASM
+		public AbstractInsnNode clone(Map aLabels)
+		{
+			throw new UnsupportedOperationException();
+		}
+		
+		/**
+		 * Executes this instruction in the given frame, and advances 
+		 * its instruction pointer.
+		 */
+		public abstract void execute(JFrame aFrame);
+	}
+	
+	/**
+	 * Initializes a class for quick instructions. Once the class is 
+	 * initialized, this is only checked again when the heap changes.
+	 */
+	private class InitCheck
+	{
+		private final JClass itsClass;
+		
+		/**
+		 * The heap in which the class is known to be initialized.
+		 */
+		private volatile JHeap itsHeap;
+		
+		public InitCheck(JClass aClass)
+		{
+			itsClass = aClass;
+		}
+		
+		/**
+		 * Ensures that the class is initialized, or being initialized by the current thread.
+		 */
+		public void clInit(JFrame aFrame)
+		{
+			JHeap theHeap = getInterpreter().getHeap();
+			if (theHeap == itsHeap) return;
+			itsClass.clInit(aFrame);
+			if (itsClass.isInitialized(theHeap)) itsHeap = theHeap;
+		}
+	}
+	
+	private class QuickGetStatic extends QuickInsn
+	{
+		private final InitCheck itsInit;
+		private final JStaticField itsField;
+		
+		public QuickGetStatic(JClass aClass, JStaticField aField)
+		{
+			super(Opcodes.GETSTATIC, FIELD_INSN);
+			itsInit = new InitCheck(aClass);
+			itsField = aField;
+		}
+		
+		@Override
+		public void execute(JFrame aFrame)
+		{
+			itsInit.clInit(aFrame);
+			JObject v = itsField.getStaticFieldValue();
+			if (aFrame.itsSink != null) aFrame.itsSink.fieldRead(itsField, null, v);
+			aFrame.push(v);
+			aFrame.itsInstructionPointer++;
+		}
+	}
+	
+	private class QuickPutStatic extends QuickInsn
+	{
+		private final InitCheck itsInit;
+		private final JStaticField itsField;
+		
+		public QuickPutStatic(JClass aClass, JStaticField aField)
+		{
+			super(Opcodes.PUTSTATIC, FIELD_INSN);
+			itsInit = new InitCheck(aClass);
+			itsField = aField;
+		}
+		
+		@Override
+		public void execute(JFrame aFrame)
+		{
+			itsInit.clInit(aFrame);
+			JObject v = aFrame.pop();
+			itsField.putStaticFieldValue(v);
+			if (aFrame.itsSink != null) aFrame.itsSink.fieldWrite(itsField, null, v);
+			aFrame.itsInstructionPointer++;
+		}
+	}
+	
+	private class QuickGetField extends QuickInsn
+	{
+		private final JField itsField;
+		
+		public QuickGetField(JField aField)
+		{
+			super(Opcodes.GETFIELD, FIELD_INSN);
+			itsField = aField;
+		}
+		
+		@Override
+		public void execute(JFrame aFrame)
+		{
+			JInstance target = (JInstance) aFrame.pop();
+			JObject v = target.getFieldValue(itsField);
+			if (aFrame.itsSink != null) aFrame.itsSink.fieldRead(itsField, target, v);
+			aFrame.push(v);
+			aFrame.itsInstructionPointer++;
+		}
+	}
+	
+	private class QuickPutField extends QuickInsn
+	{
+		private final JField itsField;
+		
+		public QuickPutField(JField aField)
+		{
+			super(Opcodes.PUTFIELD, FIELD_INSN);
+			itsField = aField;
+		}
+		
+		@Override
+		public void execute(JFrame aFrame)
+		{
+			JObject v = aFrame.pop();
+			JInstance target = (JInstance) aFrame.pop();
+			target.putFieldValue(itsField, v);
+			if (aFrame.itsSink != null) aFrame.itsSink.fieldWrite(itsField, target, v);
+			aFrame.itsInstructionPointer++;
+		}
+	}
+	
+	private class QuickInvokeStatic extends QuickInsn
+	{
+		private final InitCheck itsInit;
+		private final JBehavior itsBehavior;
+		
+		/**
+		 * The behavior if it has a typed native implementation, otherwise null.
+		 */
+		private final JNativeBehavior itsTyped;
+		
+		/**
+		 * The trivial implementation of the behavior, if any.
+		 */
+		private final Trivial itsTrivial;
+		
+		public QuickInvokeStatic(JBehavior aBehavior)
+		{
+			super(Opcodes.INVOKESTATIC, METHOD_INSN);
+			itsInit = new InitCheck(aBehavior.getDeclaringClass());
+			itsBehavior = aBehavior;
+			itsTrivial = getTrivial(aBehavior);
+			itsTyped = aBehavior instanceof JNativeBehavior 
+					&& ! (((JNativeBehavior) aBehavior).getNative() instanceof JNative.Generic) ?
+							(JNativeBehavior) aBehavior
+							: null;
+		}
+		
+		@Override
+		public void execute(JFrame aFrame)
+		{
+			aFrame.countNative(itsBehavior);
+			itsInit.clInit(aFrame);
+			if ((itsTrivial == null || ! aFrame.inline(itsTrivial))
+					&& (itsTyped == null || ! aFrame.invokeTyped(itsTyped)))
+			{
+				JObject[] theArgs = aFrame.popArgs(itsBehavior.getArgCount());
+				aFrame.pushResult(itsBehavior.invoke0(aFrame, null, theArgs));
+			}
+			aFrame.itsInstructionPointer++;
+		}
+	}
+	
+	private class QuickInvokeSpecial extends QuickInsn
+	{
+		private final InitCheck itsInit;
+		private final JBehavior itsBehavior;
+		private final Trivial itsTrivial;
+		
+		public QuickInvokeSpecial(JBehavior aBehavior)
+		{
+			super(Opcodes.INVOKESPECIAL, METHOD_INSN);
+			itsInit = new InitCheck(aBehavior.getDeclaringClass());
+			itsBehavior = aBehavior;
+			itsTrivial = getTrivial(aBehavior);
+		}
+		
+		@Override
+		public void execute(JFrame aFrame)
+		{
+			aFrame.countNative(itsBehavior);
+			itsInit.clInit(aFrame);
+			if (itsTrivial == null || ! aFrame.inline(itsTrivial))
+			{
+				JObject[] theArgs = aFrame.popArgs(itsBehavior.getArgCount());
+				JObject theTarget = aFrame.pop();
+				aFrame.pushResult(itsBehavior.invoke0(aFrame, theTarget, theArgs));
+			}
+			aFrame.itsInstructionPointer++;
+		}
+	}
+	
+	/**
+	 * A virtual or interface invocation with a monomorphic inline cache:
+	 * the behavior resolved for the last receiver class is reused as long
+	 * as the receiver class does not change.
+	 */
+	private class QuickInvokeVirtual extends QuickInsn
+	{
+		private final String itsName;
+		private final String itsDesc;
+		private final int itsArgCount;
+		private volatile InlineCache itsCache;
+		
+		public QuickInvokeVirtual(int aOpcode, String aName, String aDesc, int aArgCount)
+		{
+			super(aOpcode, METHOD_INSN);
+			itsName = aName;
+			itsDesc = aDesc;
+			itsArgCount = aArgCount;
+		}
+		
+		@Override
+		public void execute(JFrame aFrame)
+		{
+			JInstance theTarget = (JInstance) aFrame.peek(itsArgCount);
+			if (theTarget == null) 
+			{
+				aFrame.throwEx(getInterpreter().new_NullPointerException(aFrame, ""));
+				return;
+			}
+			
+			InlineCache theCache = itsCache;
+			if (theCache != null && theCache.itsReceiver == theTarget.getType())
+			{
+				aFrame.itsStripe.inc(JMetrics.INLINE_CACHE_HITS);
+			}
+			else
+			{
+				JBehavior theBehavior = theTarget.getType().getVirtualBehavior(itsName, itsDesc);
+				theCache = new InlineCache(theTarget.getType(), theBehavior);
+				itsCache = theCache;
+				aFrame.itsStripe.inc(JMetrics.INLINE_CACHE_MISSES);
+			}
+			
+			aFrame.countNative(theCache.itsBehavior);
+			theCache.invoke(aFrame, itsArgCount);
+			aFrame.itsInstructionPointer++;
+		}
+	}
+	
+	/**
+	 * An entry of an inline cache. Entries are immutable so that they 
+	 * can be replaced while other threads use them.
+	 */
+	private class InlineCache
+	{
+		private final JClass itsReceiver;
+		private final JBehavior itsBehavior;
+		private final InitCheck itsInit;
+		private final Trivial itsTrivial;
+		
+		public InlineCache(JClass aReceiver, JBehavior aBehavior)
+		{
+			itsReceiver = aReceiver;
+			itsBehavior = aBehavior;
+			itsInit = new InitCheck(aBehavior.getDeclaringClass());
+			itsTrivial = getTrivial(aBehavior);
+		}
+		
+		/**
+		 * Invokes the behavior with the target and arguments on the operand stack.
+		 */
+		public void invoke(JFrame aFrame, int aArgCount)
+		{
+			itsInit.clInit(aFrame);
+			if (itsTrivial == null || ! aFrame.inline(itsTrivial))
+			{
+				JObject[] theArgs = aFrame.popArgs(aArgCount);
+				JObject theTarget = aFrame.pop();
+				aFrame.pushResult(itsBehavior.invoke0(aFrame, theTarget, theArgs));
+			}
+		}
+	}
+	
+	private class QuickNew extends QuickInsn
+	{
+		private final JClass itsClass;
+		
+		public QuickNew(JClass aClass)
+		{
+			super(Opcodes.NEW, TYPE_INSN);
+			itsClass = aClass;
+		}
+		
+		@Override
+		public void execute(JFrame aFrame)
+		{
+			aFrame.push(itsClass.newInstance());
+			aFrame.itsStripe.inc(JMetrics.OBJECTS_ALLOCATED);
+			aFrame.itsInstructionPointer++;
+		}
+	}
+	
+	private class QuickCheckcast extends QuickInsn
+	{
+		private final JClass itsClass;
+		
+		public QuickCheckcast(JClass aClass)
+		{
+			super(Opcodes.CHECKCAST, TYPE_INSN);
+			itsClass = aClass;
+		}
+		
+		@Override
+		public void execute(JFrame aFrame)
+		{
+			JInstance o = (JInstance) aFrame.pop();
+			if (o == null || itsClass.isAssignableFrom(o.getType())) aFrame.push(o);
+			else aFrame.throwEx(getInterpreter().new_ClassCastException(aFrame, "Cannot cast "+o.getType()+" to "+itsClass.getName()));
+			aFrame.itsInstructionPointer++;
+		}
+	}
+	
+	private class QuickInstanceof extends QuickInsn
+	{
+		private final JClass itsClass;
+		
+		public QuickInstanceof(JClass aClass)
+		{
+			super(Opcodes.INSTANCEOF, TYPE_INSN);
+			itsClass = aClass;
+		}
+		
+		@Override
+		public void execute(JFrame aFrame)
+		{
+			JInstance o = (JInstance) aFrame.pop();
+			boolean theResult = o != null && itsClass.isAssignableFrom(o.getType());
+			aFrame.push(new JInt(theResult ? 1 : 0));
+			aFrame.itsInstructionPointer++;
+		}
+	}
+
+	/**
+	 * An int arithmetic instruction. When its operands are known to be
+	 * {@link JInt}s their value is read directly, otherwise it is obtained
+	 * from whatever primitive represents them.
+	 */
+	private class IntInsn extends QuickInsn
+	{
+		private final boolean itsExact;
+		
+		public IntInsn(int aOpcode, boolean aExact)
+		{
+			super(aOpcode, INSN);
+			itsExact = aExact;
+		}
+		
+		@Override
+		public void execute(JFrame aFrame)
+		{
+			int r;
+			if (opcode == Opcodes.INEG) 
+			{
+				r = -aFrame.popInt(itsExact);
+			}
+			else
+			{
+				int v2 = aFrame.popInt(itsExact);
+				int v1 = aFrame.popInt(itsExact);
+				switch(opcode)
+				{
+				case Opcodes.IADD: r = v1 + v2; break;
+				case Opcodes.ISUB: r = v1 - v2; break;
+				case Opcodes.IMUL: r = v1 * v2; break;
+				case Opcodes.IDIV: r = v1 / v2; break;
+				case Opcodes.IREM: r = v1 % v2; break;
+				case Opcodes.ISHL: r = v1 << v2; break;
+				case Opcodes.ISHR: r = v1 >> v2; break;
+				case Opcodes.IUSHR: r = v1 >>> v2; break;
+				case Opcodes.IAND: r = v1 & v2; break;
+				case Opcodes.IOR: r = v1 | v2; break;
+				case Opcodes.IXOR: r = v1 ^ v2; break;
+				default: throw new UnsupportedOperationException();
+				}
+			}
+			aFrame.push(new JInt(r));
+			aFrame.itsInstructionPointer++;
+		}
+	}
+	
+	private class LongInsn extends QuickInsn
+	{
+		/**
+		 * For shifts, whether the shift distance is known to be a {@link JInt}.
+		 */
+		private final boolean itsExact;
+		
+		public LongInsn(int aOpcode, boolean aExact)
+		{
+			super(aOpcode, INSN);
+			itsExact = aExact;
+		}
+		
+		@Override
+		public void execute(JFrame aFrame)
+		{
+			long r;
+			switch(opcode)
+			{
+			case Opcodes.LNEG: 
+				r = -((JLong) aFrame.pop()).v; 
+				break;
+				
+			case Opcodes.LSHL:
+			case Opcodes.LSHR:
+			case Opcodes.LUSHR: {
+				int n = aFrame.popInt(itsExact);
+				long v = ((JLong) aFrame.pop()).v;
+				if (opcode == Opcodes.LSHL) r = v << n;
+				else if (opcode == Opcodes.LSHR) r = v >> n;
+				else r = v >>> n;
+			} break;
+			
+			default: {
+				long v2 = ((JLong) aFrame.pop()).v;
+				long v1 = ((JLong) aFrame.pop()).v;
+				switch(opcode)
+				{
+				case Opcodes.LADD: r = v1 + v2; break;
+				case Opcodes.LSUB: r = v1 - v2; break;
+				case Opcodes.LMUL: r = v1 * v2; break;
+				case Opcodes.LDIV: r = v1 / v2; break;
+				case Opcodes.LREM: r = v1 % v2; break;
+				case Opcodes.LAND: r = v1 & v2; break;
+				case Opcodes.LOR: r = v1 | v2; break;
+				case Opcodes.LXOR: r = v1 ^ v2; break;
+				default: throw new UnsupportedOperationException();
+				}
+			}
+			}
+			aFrame.push(new JLong(r));
+			aFrame.itsInstructionPointer++;
+		}
+	}
+	
+	private class FloatInsn extends QuickInsn
+	{
+		public FloatInsn(int aOpcode)
+		{
+			super(aOpcode, INSN);
+		}
+		
+		@Override
+		public void execute(JFrame aFrame)
+		{
+			float r;
+			if (opcode == Opcodes.FNEG) 
+			{
+				r = -((JFloat) aFrame.pop()).v;
+			}
+			else
+			{
+				float v2 = ((JFloat) aFrame.pop()).v;
+				float v1 = ((JFloat) aFrame.pop()).v;
+				switch(opcode)
+				{
+				case Opcodes.FADD: r = v1 + v2; break;
+				case Opcodes.FSUB: r = v1 - v2; break;
+				case Opcodes.FMUL: r = v1 * v2; break;
+				case Opcodes.FDIV: r = v1 / v2; break;
+				case Opcodes.FREM: r = v1 % v2; break;
+				default: throw new UnsupportedOperationException();
+				}
+			}
+			aFrame.push(new JFloat(r));
+			aFrame.itsInstructionPointer++;
+		}
+	}
+	
+	private class DoubleInsn extends QuickInsn
+	{
+		public DoubleInsn(int aOpcode)
+		{
+			super(aOpcode, INSN);
+		}
+		
+		@Override
+		public void execute(JFrame aFrame)
+		{
+			double r;
+			if (opcode == Opcodes.DNEG) 
+			{
+				r = -((JDouble) aFrame.pop()).v;
+			}
+			else
+			{
+				double v2 = ((JDouble) aFrame.pop()).v;
+				double v1 = ((JDouble) aFrame.pop()).v;
+				switch(opcode)
+				{
+				case Opcodes.DADD: r = v1 + v2; break;
+				case Opcodes.DSUB: r = v1 - v2; break;
+				case Opcodes.DMUL: r = v1 * v2; break;
+				case Opcodes.DDIV: r = v1 / v2; break;
+				case Opcodes.DREM: r = v1 % v2; break;
+				default: throw new UnsupportedOperationException();
+				}
+			}
+			aFrame.push(new JDouble(r));
+			aFrame.itsInstructionPointer++;
+		}
+	}
+	
+	/**
+	 * A conditional jump on int values.
+	 */
+	private class IntJumpInsn extends QuickInsn
+	{
+		private final Label itsLabel;
+		private final boolean itsExact;
+		
+		public IntJumpInsn(int aOpcode, Label aLabel, boolean aExact)
+		{
+			super(aOpcode, JUMP_INSN);
+			itsLabel = aLabel;
+			itsExact = aExact;
+		}
+		
+		@Override
+		public void execute(JFrame aFrame)
+		{
+			boolean theJump;
+			if (opcode >= Opcodes.IF_ICMPEQ)
+			{
+				int v2 = aFrame.popInt(itsExact);
+				int v1 = aFrame.popInt(itsExact);
+				switch(opcode)
+				{
+				case Opcodes.IF_ICMPEQ: theJump = v1 == v2; break;
+				case Opcodes.IF_ICMPNE: theJump = v1 != v2; break;
+				case Opcodes.IF_ICMPLT: theJump = v1 < v2; break;
+				case Opcodes.IF_ICMPGE: theJump = v1 >= v2; break;
+				case Opcodes.IF_ICMPGT: theJump = v1 > v2; break;
+				case Opcodes.IF_ICMPLE: theJump = v1 <= v2; break;
+				default: throw new UnsupportedOperationException();
+				}
+			}
+			else
+			{
+				int v = aFrame.popInt(itsExact);
+				switch(opcode)
+				{
+				case Opcodes.IFEQ: theJump = v == 0; break;
+				case Opcodes.IFNE: theJump = v != 0; break;
+				case Opcodes.IFLT: theJump = v < 0; break;
+				case Opcodes.IFGE: theJump = v >= 0; break;
+				case Opcodes.IFGT: theJump = v > 0; break;
+				case Opcodes.IFLE: theJump = v <= 0; break;
+				default: throw new UnsupportedOperationException();
+				}
+			}
+			
+			if (theJump) aFrame.jump(itsLabel);
+			else aFrame.itsInstructionPointer++;
+		}
+	}
+	
+	private class IincInsn extends QuickInsn
+	{
+		private final int itsVar;
+		private final int itsIncrement;
+		
+		/**
+		 * Whether the variable is known to hold a {@link JInt}.
+		 */
+		private final boolean itsExact;
+		
+		public IincInsn(int aVar, int aIncrement, boolean aExact)
+		{
+			super(Opcodes.IINC, IINC_INSN);
+			itsVar = aVar;
+			itsIncrement = aIncrement;
+			itsExact = aExact;
+		}
+		
+		@Override
+		public void execute(JFrame aFrame)
+		{
+			JObject v = aFrame.local(itsVar);
+			int i = itsExact ? ((JInt) v).v : ((JPrimitive) v).intValue();
+			aFrame.local(itsVar, new JInt(i+itsIncrement));
+			aFrame.itsInstructionPointer++;
+		}
+	}
+
+	/**
+	 * An int constant computed by the peephole pass.
+	 */
+	private class ConstantInsn extends QuickInsn
+	{
+		private final JInt itsValue;
+		
+		public ConstantInsn(int aValue)
+		{
+			super(Opcodes.LDC, LDC_INSN);
+			itsValue = new JInt(aValue);
+		}
+		
+		@Override
+		public void execute(JFrame aFrame)
+		{
+			aFrame.push(itsValue);
+			aFrame.itsInstructionPointer++;
+		}
+	}
+
+	/**
+	 * ALOAD; GETFIELD
+	 */
+	private class LoadFieldInsn extends QuickInsn
+	{
+		private final int itsVar;
+		private final JField itsField;
+		
+		public LoadFieldInsn(int aVar, JField aField)
+		{
+			super(Opcodes.ALOAD, VAR_INSN);
+			itsVar = aVar;
+			itsField = aField;
+		}
+		
+		@Override
+		public void execute(JFrame aFrame)
+		{
+			JInstance target = (JInstance) aFrame.local(itsVar);
+			JObject v = target.getFieldValue(itsField);
+			if (aFrame.itsSink != null) aFrame.itsSink.fieldRead(itsField, target, v);
+			aFrame.push(v);
+			aFrame.itsInstructionPointer += 2;
+		}
+	}
+	
+	/**
+	 * ILOAD; ILOAD; IADD; ISTORE
+	 */
+	private class AddLocalsInsn extends QuickInsn
+	{
+		private final int itsVar1;
+		private final int itsVar2;
+		private final int itsResultVar;
+		
+		/**
+		 * Whether both operands are known to be {@link JInt}s.
+		 */
+		private final boolean itsExact;
+		
+		public AddLocalsInsn(int aVar1, int aVar2, int aResultVar, boolean aExact)
+		{
+			super(Opcodes.ILOAD, VAR_INSN);
+			itsVar1 = aVar1;
+			itsVar2 = aVar2;
+			itsResultVar = aResultVar;
+			itsExact = aExact;
+		}
+		
+		@Override
+		public void execute(JFrame aFrame)
+		{
+			int v1 = aFrame.localInt(itsVar1, itsExact);
+			int v2 = aFrame.localInt(itsVar2, itsExact);
+			aFrame.local(itsResultVar, new JInt(v1 + v2));
+			aFrame.itsInstructionPointer += 4;
+		}
+	}
+	
+	/**
+	 * ILOAD; ICONST, BIPUSH or SIPUSH; IF_ICMPxx
+	 */
+	private class CompareConstantInsn extends QuickInsn
+	{
+		private final int itsCompareOpcode;
+		private final int itsVar;
+		private final int itsConstant;
+		private final Label itsLabel;
+		private final boolean itsExact;
+		
+		public CompareConstantInsn(int aCompareOpcode, int aVar, int aConstant, Label aLabel, boolean aExact)
+		{
+			super(Opcodes.ILOAD, VAR_INSN);
+			itsCompareOpcode = aCompareOpcode;
+			itsVar = aVar;
+			itsConstant = aConstant;
+			itsLabel = aLabel;
+			itsExact = aExact;
+		}
+		
+		@Override
+		public void execute(JFrame aFrame)
+		{
+			int v = aFrame.localInt(itsVar, itsExact);
+			boolean theJump;
+			switch(itsCompareOpcode)
+			{
+			case Opcodes.IF_ICMPEQ: theJump = v == itsConstant; break;
+			case Opcodes.IF_ICMPNE: theJump = v != itsConstant; break;
+			case Opcodes.IF_ICMPLT: theJump = v < itsConstant; break;
+			case Opcodes.IF_ICMPGE: theJump = v >= itsConstant; break;
+			case Opcodes.IF_ICMPGT: theJump = v > itsConstant; break;
+			case Opcodes.IF_ICMPLE: theJump = v <= itsConstant; break;
+			default: throw new UnsupportedOperationException();
+			}
+			
+			// The jump is taken from the comparison instruction
+			aFrame.itsInstructionPointer += 2;
+			if (theJump) aFrame.jump(itsLabel);
+			else aFrame.itsInstructionPointer++;
+		}
+	}
+	
+	/**
+	 * ALOAD; ILOAD; xALOAD
+	 */
+	private class LoadElementInsn extends QuickInsn
+	{
+		private final int itsArrayVar;
+		private final int itsIndexVar;
+		
+		/**
+		 * Whether the index is known to be a {@link JInt}.
+		 */
+		private final boolean itsExact;
+		
+		public LoadElementInsn(int aArrayVar, int aIndexVar, boolean aExact)
+		{
+			super(Opcodes.ALOAD, VAR_INSN);
+			itsArrayVar = aArrayVar;
+			itsIndexVar = aIndexVar;
+			itsExact = aExact;
+		}
+		
+		@Override
+		public void execute(JFrame aFrame)
+		{
+			JArray array = (JArray) aFrame.local(itsArrayVar);
+			aFrame.push(array.get(aFrame.localInt(itsIndexVar, itsExact)));
+			aFrame.itsInstructionPointer += 3;
+		}
+	}
+
+	/**
+	 * Returns the trivial implementation of the given behavior, or null.
+	 */
+	private static Trivial getTrivial(JBehavior aBehavior)
+	{
+		return aBehavior instanceof JNormalBehavior ? ((JNormalBehavior) aBehavior).itsTrivial : null;
+	}
+	
+	/**
+	 * A method that is executed directly on the operand stack of its caller,
+	 * see {@link #classify()}.
+	 */
+	private abstract class Trivial
+	{
+		/**
+		 * Pops the arguments and target of this behavior from the operand stack 
+		 * of the given frame, and pushes its result.
+		 * @return False if the target is null, in which case the stack is unchanged
+		 * and the behavior must be invoked normally.
+		 */
+		public boolean execute(JFrame aFrame)
+		{
+			int theBase = aFrame.itsStackSize - getArgCount();
+			int theFirst = theBase;
+			if ((getNode().access & Opcodes.ACC_STATIC) == 0)
+			{
+				theFirst--;
+				if (aFrame.itsStack[theFirst] == null) return false;
+			}
+			JObject theResult = evaluate(aFrame.itsStack, theBase);
+			aFrame.itsStackSize = theFirst;
+			aFrame.pushResult(theResult);
+			return true;
+		}
+		
+		/**
+		 * Computes the result of this behavior.
+		 * @param aBase The index of the first argument in the stack. 
+		 * The target, if any, is just below.
+		 */
+		protected abstract JObject evaluate(JObject[] aStack, int aBase);
+	}
+	
+	private class ConstantTrivial extends Trivial
+	{
+		private final JObject itsValue;
+		
+		public ConstantTrivial(JObject aValue)
+		{
+			itsValue = aValue;
+		}
+		
+		@Override
+		protected JObject evaluate(JObject[] aStack, int aBase)
+		{
+			return itsValue;
+		}
+	}
+	
+	/**
+	 * A getter or setter of a field of the target. The field is resolved 
+	 * the first time it is accessed, as its class may not be loaded yet 
+	 * when the behavior is prepared.
+	 */
+	private abstract class FieldTrivial extends Trivial
+	{
+		private final String itsOwner;
+		private final String itsName;
+		private volatile JField itsField;
+		
+		public FieldTrivial(String aOwner, String aName)
+		{
+			itsOwner = aOwner;
+			itsName = aName;
+		}
+		
+		protected JField getField()
+		{
+			JField theField = itsField;
+			if (theField == null)
+			{
+				theField = getInterpreter().getClass(itsOwner).getVirtualField(itsName);
+				if (theField == null) Utils.rtex("Cannot find field: %s, %s", itsOwner, itsName);
+				itsField = theField;
+			}
+			return theField;
+		}
+	}
+	
+	private class GetterTrivial extends FieldTrivial
+	{
+		public GetterTrivial(String aOwner, String aName)
+		{
+			super(aOwner, aName);
+		}
+		
+		@Override
+		protected JObject evaluate(JObject[] aStack, int aBase)
+		{
+			return ((JInstance) aStack[aBase-1]).getFieldValue(getField());
+		}
+	}
+	
+	private class SetterTrivial extends FieldTrivial
+	{
+		public SetterTrivial(String aOwner, String aName)
+		{
+			super(aOwner, aName);
+		}
+		
+		@Override
+		protected JObject evaluate(JObject[] aStack, int aBase)
+		{
+			((JInstance) aStack[aBase-1]).putFieldValue(getField(), aStack[aBase]);
+			return JPrimitive.VOID;
+		}
+	}
+	
+	private class ArithmeticTrivial extends Trivial
+	{
+		private final Expr itsExpr;
+		
+		public ArithmeticTrivial(Expr aExpr)
+		{
+			itsExpr = aExpr;
+		}
+		
+		@Override
+		protected JObject evaluate(JObject[] aStack, int aBase)
+		{
+			return new JInt(itsExpr.eval(aStack, aBase));
+		}
+	}
+	
+	/**
+	 * An int expression on the arguments of a trivial method.
+	 */
+	private static abstract class Expr
+	{
+		/**
+		 * @param aBase The index of the first argument in the stack.
+		 */
+		public abstract int eval(JObject[] aStack, int aBase);
+	}
+	
+	private static class ConstantExpr extends Expr
+	{
+		private final int itsValue;
+		
+		public ConstantExpr(int aValue)
+		{
+			itsValue = aValue;
+		}
+		
+		@Override
+		public int eval(JObject[] aStack, int aBase)
+		{
+			return itsValue;
+		}
+	}
+	
+	private static class ArgExpr extends Expr
+	{
+		private final int itsIndex;
+		
+		public ArgExpr(int aIndex)
+		{
+			itsIndex = aIndex;
+		}
+		
+		@Override
+		public int eval(JObject[] aStack, int aBase)
+		{
+			return ((JPrimitive) aStack[aBase+itsIndex]).intValue();
+		}
+	}
+	
+	private static class NegExpr extends Expr
+	{
+		private final Expr itsOperand;
+		
+		public NegExpr(Expr aOperand)
+		{
+			itsOperand = aOperand;
+		}
+		
+		@Override
+		public int eval(JObject[] aStack, int aBase)
+		{
+			return -itsOperand.eval(aStack, aBase);
+		}
+	}
+	
+	private static class BinaryExpr extends Expr
+	{
+		private final int itsOpcode;
+		private final Expr itsLeft;
+		private final Expr itsRight;
+		
+		public BinaryExpr(int aOpcode, Expr aLeft, Expr aRight)
+		{
+			itsOpcode = aOpcode;
+			itsLeft = aLeft;
+			itsRight = aRight;
+		}
+		
+		@Override
+		public int eval(JObject[] aStack, int aBase)
+		{
+			return fold(itsOpcode, itsLeft.eval(aStack, aBase), itsRight.eval(aStack, aBase));
+		}
+	}
+
+	/**
+	 * Carries an interpreted exception through the host stack.
+	 * Natives can throw it to raise an exception in the calling frame, 
+	 * and it reaches the host if the exception is not caught.
+	 * The same carrier is reused by all the frames the exception unwinds;
+	 * it has no host stack trace and its message is only built on demand.
+	 */
+	public static class ExceptionThrown extends RuntimeException
 	{
 		private final JInstance itsException;
+		
+		/**
+		 * Whether a frame already received this carrier. Each throw creates a new carrier.
+		 */
+		private boolean itsUnwinding;
 
 		public ExceptionThrown(JInstance aException)
 		{
@@ -1113,5 +2931,28 @@ public class JNormalBehavior extends JASMBehavior
 		{
 			return itsException;
 		}
+		
+		/**
+		 * Returns true the first time it is called, when the first frame receives 
+		 * the carrier, so that each throw is counted once.
+		 */
+		boolean startUnwinding()
+		{
+			if (itsUnwinding) return false;
+			itsUnwinding = true;
+			return true;
+		}
+		
+		@Override
+		public Throwable fillInStackTrace()
+		{
+			return this;
+		}
+		
+		@Override
+		public String getMessage()
+		{
+			return "Exception thrown during evaluation: "+itsException.getType()+"\n"+itsException.getStackTrace();
+		}
 	}
 }
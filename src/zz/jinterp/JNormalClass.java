@@ -54,14 +54,24 @@ public class JNormalClass extends JClass
 	{
 		if (itsNode != null)
 		{
+			JNativeRegistry theRegistry = getInterpreter().getNativeRegistry();
+			boolean theHasNatives = theRegistry.hasNatives(itsNode.name);
+			
 			for (Iterator theIterator = itsNode.methods.iterator(); theIterator.hasNext();)
 			{
 				MethodNode theMethodNode = (MethodNode) theIterator.next();
-				if ((theMethodNode.access & Opcodes.ACC_NATIVE) != 0) continue;
-				
 				String theKey = getBehaviorKey(theMethodNode.name, theMethodNode.desc);
 				if (getBehavior(theKey) != null) continue;
-				putBehavior(theKey, new JNormalBehavior(this, theMethodNode));
+				
+				JNative theNative = theHasNatives ? theRegistry.get(itsNode.name, theKey) : null;
+				if (theNative != null)
+				{
+					putBehavior(theKey, new JNativeBehavior(this, theMethodNode.name, theMethodNode.desc, theMethodNode.access, theNative));
+				}
+				else if ((theMethodNode.access & Opcodes.ACC_NATIVE) == 0)
+				{
+					putBehavior(theKey, new JNormalBehavior(this, theMethodNode));
+				}
 			}
 			
 			for (Iterator theIterator = itsNode.fields.iterator(); theIterator.hasNext();)
@@ -38,4 +38,9 @@ package zz.jinterp;
 public abstract class JObject
 {
 	public abstract JType getType();
+	
+	/**
+	 * Returns the monitor of this object, used for synchronization.
+	 */
+	public abstract JMonitor getMonitor();
 }
@@ -34,6 +34,16 @@ package zz.jinterp;
 public abstract class JPrimitive extends JObject
 {
 	public abstract int intValue();
+	
+	/**
+	 * Primitive values have no monitor: the bytecode verifier only allows
+	 * references to be locked.
+	 */
+	@Override
+	public JMonitor getMonitor()
+	{
+		throw new IllegalStateException("Primitive values cannot be locked: "+this);
+	}
 
 	public static class JVoid extends JPrimitive
 	{
@@ -0,0 +1,382 @@
+/*
+ * Created on Oct 19, 2026
+ */
+package zz.jinterp;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.objectweb.asm.util.AbstractVisitor;
+
+/**
+ * Counts the instructions executed by interpreted behaviors, and measures
+ * their execution time.
+ * A profiler is enabled with {@link JInterpreter#setProfiler(JProfiler)}; frames
+ * then run a separate, counting loop, so that there is no cost when profiling
+ * is disabled. Each interpreted thread updates its own counters, which are
+ * only merged when a report is requested.
+ * @author gpothier
+ */
+public class JProfiler
+{
+	private final ThreadLocal<ThreadData> itsThreadData = new ThreadLocal<ThreadData>()
+	{
+		@Override
+		protected ThreadData initialValue()
+		{
+			ThreadData theData = new ThreadData();
+			itsAllThreadData.add(theData);
+			return theData;
+		}
+	};
+
+	private final List<ThreadData> itsAllThreadData = new CopyOnWriteArrayList<ThreadData>();
+
+	ThreadData getThreadData()
+	{
+		return itsThreadData.get();
+	}
+
+	/**
+	 * Returns the merged counters of all the threads.
+	 * Counters of threads that are still running are approximate.
+	 */
+	public Report getReport()
+	{
+		Map<JBehavior, Counters> theMerged = new IdentityHashMap<JBehavior, Counters>();
+		long[] theOpcodeCounts = new long[256];
+
+		for (ThreadData theData : itsAllThreadData)
+		{
+			for (Counters theCounters : theData.getCounters())
+			{
+				Counters theTotal = theMerged.get(theCounters.behavior);
+				if (theTotal == null)
+				{
+					theTotal = new Counters(theCounters.behavior);
+					theMerged.put(theCounters.behavior, theTotal);
+				}
+				theTotal.add(theCounters);
+			}
+
+			for(int i=0;i<theOpcodeCounts.length;i++) theOpcodeCounts[i] += theData.itsOpcodeCounts[i];
+		}
+
+		List<Counters> theBehaviors = new ArrayList<Counters>(theMerged.values());
+		Collections.sort(theBehaviors, new Comparator<Counters>()
+		{
+			public int compare(Counters c1, Counters c2)
+			{
+				return c1.exclusiveTime < c2.exclusiveTime ? 1 : (c1.exclusiveTime > c2.exclusiveTime ? -1 : 0);
+			}
+		});
+
+		return new Report(theBehaviors, theOpcodeCounts);
+	}
+
+	/**
+	 * Clears the counters of all the threads.
+	 * Should not be called while interpreted code is running.
+	 */
+	public void reset()
+	{
+		for (ThreadData theData : itsAllThreadData) theData.reset();
+	}
+
+	/**
+	 * The counters of a thread.
+	 * Only the owning thread modifies the map of counters, under the lock of
+	 * this object, so that other threads can take a snapshot of it.
+	 * The counters themselves are updated without synchronization.
+	 */
+	static final class ThreadData
+	{
+		private final Map<JBehavior, Counters> itsCounters = new IdentityHashMap<JBehavior, Counters>();
+		private final long[] itsOpcodeCounts = new long[256];
+
+		/**
+		 * For each active profiled frame, the time spent in its callees.
+		 */
+		private long[] itsChildTimes = new long[64];
+		private int itsDepth = -1;
+
+		public long[] getOpcodeCounts()
+		{
+			return itsOpcodeCounts;
+		}
+
+		/**
+		 * Called when a frame of the given behavior starts.
+		 */
+		public Counters enter(JBehavior aBehavior)
+		{
+			Counters theCounters = itsCounters.get(aBehavior);
+			if (theCounters == null)
+			{
+				theCounters = new Counters(aBehavior);
+				synchronized (this)
+				{
+					itsCounters.put(aBehavior, theCounters);
+				}
+			}
+
+			if (++itsDepth == itsChildTimes.length)
+			{
+				long[] theChildTimes = new long[itsDepth*2];
+				System.arraycopy(itsChildTimes, 0, theChildTimes, 0, itsDepth);
+				itsChildTimes = theChildTimes;
+			}
+			itsChildTimes[itsDepth] = 0;
+
+			theCounters.invocations++;
+			return theCounters;
+		}
+
+		/**
+		 * Called when the frame that corresponds to the last call to {@link #enter(JBehavior)} ends.
+		 * @param aStartTime The value of {@link System#nanoTime()} when the frame started.
+		 */
+		public void exit(Counters aCounters, long aStartTime)
+		{
+			long theTime = System.nanoTime() - aStartTime;
+			aCounters.inclusiveTime += theTime;
+			aCounters.exclusiveTime += theTime - itsChildTimes[itsDepth];
+			itsDepth--;
+			if (itsDepth >= 0) itsChildTimes[itsDepth] += theTime;
+		}
+
+		/**
+		 * Returns a snapshot of the counters of the profiled behaviors.
+		 * Can be called by any thread.
+		 */
+		synchronized List<Counters> getCounters()
+		{
+			return new ArrayList<Counters>(itsCounters.values());
+		}
+
+		synchronized void reset()
+		{
+			itsCounters.clear();
+			for(int i=0;i<itsOpcodeCounts.length;i++) itsOpcodeCounts[i] = 0;
+		}
+	}
+
+	/**
+	 * The counters of a behavior. Times are in nanoseconds.
+	 * The inclusive time of recursive behaviors counts nested frames several times.
+	 */
+	public static final class Counters
+	{
+		private final JBehavior behavior;
+		long invocations;
+		long instructions;
+		long inclusiveTime;
+		long exclusiveTime;
+		long thrown;
+		long caught;
+
+		/**
+		 * For each instruction pointer, the number of times the instruction was dispatched.
+		 */
+		private long[] executions;
+
+		Counters(JBehavior aBehavior)
+		{
+			behavior = aBehavior;
+		}
+
+		void add(Counters aCounters)
+		{
+			invocations += aCounters.invocations;
+			instructions += aCounters.instructions;
+			inclusiveTime += aCounters.inclusiveTime;
+			exclusiveTime += aCounters.exclusiveTime;
+			thrown += aCounters.thrown;
+			caught += aCounters.caught;
+			
+			if (aCounters.executions != null)
+			{
+				long[] theExecutions = executions(aCounters.executions.length);
+				for(int i=0;i<theExecutions.length;i++) theExecutions[i] += aCounters.executions[i];
+			}
+		}
+
+		/**
+		 * Returns the execution counts of the instructions, creating them if needed.
+		 */
+		long[] executions(int aSize)
+		{
+			if (executions == null) executions = new long[aSize];
+			return executions;
+		}
+
+		public JBehavior getBehavior()
+		{
+			return behavior;
+		}
+
+		public long getInvocations()
+		{
+			return invocations;
+		}
+
+		public long getInstructions()
+		{
+			return instructions;
+		}
+
+		public long getInclusiveTime()
+		{
+			return inclusiveTime;
+		}
+
+		public long getExclusiveTime()
+		{
+			return exclusiveTime;
+		}
+
+		/**
+		 * Number of exceptions that reached frames of the behavior.
+		 */
+		public long getThrown()
+		{
+			return thrown;
+		}
+
+		/**
+		 * Number of exceptions that were handled by frames of the behavior.
+		 */
+		public long getCaught()
+		{
+			return caught;
+		}
+
+		/**
+		 * Returns the number of times the instruction at the given instruction pointer
+		 * was dispatched. The instructions that follow the first instruction of a 
+		 * superinstruction are not dispatched.
+		 */
+		public long getExecutions(int aIP)
+		{
+			return executions != null && aIP < executions.length ? executions[aIP] : 0;
+		}
+	}
+
+	/**
+	 * A snapshot of the counters of all the threads.
+	 */
+	public static final class Report
+	{
+		private final List<Counters> itsBehaviors;
+		private final long[] itsOpcodeCounts;
+
+		Report(List<Counters> aBehaviors, long[] aOpcodeCounts)
+		{
+			itsBehaviors = aBehaviors;
+			itsOpcodeCounts = aOpcodeCounts;
+		}
+
+		/**
+		 * The counters of the profiled behaviors, by decreasing exclusive time.
+		 */
+		public List<Counters> getBehaviors()
+		{
+			return itsBehaviors;
+		}
+
+		/**
+		 * Returns the number of executed instructions with the given opcode.
+		 */
+		public long getOpcodeCount(int aOpcode)
+		{
+			return itsOpcodeCounts[aOpcode];
+		}
+
+		/**
+		 * Writes the behavior counters, one line per behavior.
+		 */
+		public void writeCSV(Writer aWriter) throws IOException
+		{
+			aWriter.write("class,name,descriptor,invocations,instructions,inclusive_ns,exclusive_ns,thrown,caught\n");
+			for (Counters theCounters : itsBehaviors)
+			{
+				JBehavior theBehavior = theCounters.getBehavior();
+				aWriter.write(
+						theBehavior.getDeclaringClass().getName()+","
+						+theBehavior.getName()+","
+						+getDescriptor(theBehavior)+","
+						+theCounters.invocations+","
+						+theCounters.instructions+","
+						+theCounters.inclusiveTime+","
+						+theCounters.exclusiveTime+","
+						+theCounters.thrown+","
+						+theCounters.caught+"\n");
+			}
+		}
+
+		/**
+		 * Writes the opcode counters, one line per executed opcode.
+		 */
+		public void writeOpcodesCSV(Writer aWriter) throws IOException
+		{
+			aWriter.write("opcode,count\n");
+			for(int i=0;i<itsOpcodeCounts.length;i++)
+			{
+				if (itsOpcodeCounts[i] != 0) aWriter.write(getOpcodeName(i)+","+itsOpcodeCounts[i]+"\n");
+			}
+		}
+
+		/**
+		 * Writes both the behavior and the opcode counters.
+		 */
+		public void writeJSON(Writer aWriter) throws IOException
+		{
+			aWriter.write("{\"behaviors\":[");
+			boolean theFirst = true;
+			for (Counters theCounters : itsBehaviors)
+			{
+				if (! theFirst) aWriter.write(",");
+				theFirst = false;
+
+				JBehavior theBehavior = theCounters.getBehavior();
+				aWriter.write("\n{\"class\":\""+theBehavior.getDeclaringClass().getName()+"\""
+						+",\"name\":\""+theBehavior.getName()+"\""
+						+",\"descriptor\":\""+getDescriptor(theBehavior)+"\""
+						+",\"invocations\":"+theCounters.invocations
+						+",\"instructions\":"+theCounters.instructions
+						+",\"inclusive_ns\":"+theCounters.inclusiveTime
+						+",\"exclusive_ns\":"+theCounters.exclusiveTime
+						+",\"thrown\":"+theCounters.thrown
+						+",\"caught\":"+theCounters.caught+"}");
+			}
+			aWriter.write("],\n\"opcodes\":{");
+			theFirst = true;
+			for(int i=0;i<itsOpcodeCounts.length;i++)
+			{
+				if (itsOpcodeCounts[i] == 0) continue;
+				if (! theFirst) aWriter.write(",");
+				theFirst = false;
+				aWriter.write("\n\""+getOpcodeName(i)+"\":"+itsOpcodeCounts[i]);
+			}
+			aWriter.write("}}\n");
+		}
+
+		private static String getDescriptor(JBehavior aBehavior)
+		{
+			return aBehavior instanceof JASMBehavior ? ((JASMBehavior) aBehavior).getNode().desc : "";
+		}
+
+		static String getOpcodeName(int aOpcode)
+		{
+			String theName = aOpcode < AbstractVisitor.OPCODES.length ? AbstractVisitor.OPCODES[aOpcode] : null;
+			return theName != null ? theName : ""+aOpcode;
+		}
+	}
+}
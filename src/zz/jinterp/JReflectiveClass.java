@@ -33,12 +33,18 @@ package zz.jinterp;
 
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import zz.jinterp.JClass.Invocable;
 import zz.jinterp.JNormalBehavior.JFrame;
 
 public abstract class JReflectiveClass extends JClass
 {
+	private static final Map<Class<?>, Binding[]> itsBindings = new ConcurrentHashMap<Class<?>, Binding[]>();
+	
 	public JReflectiveClass(JInterpreter aInterpreter, JClass aSuperClass, JClass[] aInterfaces)
 	{
 		super(aInterpreter, aSuperClass, aInterfaces);
@@ -65,11 +71,33 @@ public abstract class JReflectiveClass extends JClass
 	
 	/**
 	 * Adds JBehaviors to the target class, taking them from the specified java class.
+	 * The java class is only scanned the first time, the resulting bindings
+	 * are reused by all the interpreters.
 	 */
-	public static void initBehaviors(JClass aTarget, Class aClass)
+	public static void initBehaviors(JClass aTarget, Class<?> aClass)
+	{
+		for (Binding theBinding : getBindings(aClass))
+		{
+			aTarget.putBehavior(theBinding.key, new JReflectiveBehavior(aTarget, theBinding));
+		}
+	}
+	
+	private static Binding[] getBindings(Class<?> aClass)
+	{
+		Binding[] theBindings = itsBindings.get(aClass);
+		if (theBindings == null)
+		{
+			theBindings = createBindings(aClass);
+			itsBindings.put(aClass, theBindings);
+		}
+		return theBindings;
+	}
+	
+	private static Binding[] createBindings(Class<?> aClass)
 	{
 		try
 		{
+			List<Binding> theBindings = new ArrayList<Binding>();
 			for (Method theSigMethod : aClass.getDeclaredMethods())
 			{
 				if (! theSigMethod.getName().startsWith("__")) continue;
@@ -82,10 +110,15 @@ public abstract class JReflectiveClass extends JClass
 						theSigMethod.getName().substring(2), 
 						getSignature(theSigMethod.getParameterTypes(), theSigMethod.getReturnType()));
 				
-				aTarget.putBehavior(
-						theKey, 
-						new JReflectiveBehavior(aTarget, theExecMethod, theSigMethod.getParameterTypes().length));
+				theBindings.add(new Binding(
+						theKey,
+						theExecMethod.getName(),
+						JDirectInvoker.get(theExecMethod),
+						theSigMethod.getParameterTypes().length,
+						Modifier.isPrivate(theExecMethod.getModifiers()),
+						Modifier.isStatic(theSigMethod.getModifiers())));
 			}
+			return theBindings.toArray(new Binding[theBindings.size()]);
 		}
 		catch (Exception e)
 		{
@@ -93,17 +126,17 @@ public abstract class JReflectiveClass extends JClass
 		}
 	}
 	
-	private static String getSignature(Class[] aParams, Class aReturn)
+	private static String getSignature(Class<?>[] aParams, Class<?> aReturn)
 	{
 		StringBuilder theBuilder = new StringBuilder();
 		theBuilder.append("(");
-		for (Class theClass : aParams) theBuilder.append(getSignature(theClass));
+		for (Class<?> theClass : aParams) theBuilder.append(getSignature(theClass));
 		theBuilder.append(")");
 		theBuilder.append(getSignature(aReturn));
 		return theBuilder.toString();
 	}
 	
-	private static String getSignature(Class aClass)
+	private static String getSignature(Class<?> aClass)
 	{
 		if (aClass.isPrimitive())
 		{
@@ -122,48 +155,67 @@ public abstract class JReflectiveClass extends JClass
 		else return "L"+aClass.getName().replace('.', '/')+";";
 	}
 	
+	/**
+	 * A native behavior found in a java class, independent of any interpreter.
+	 */
+	private static class Binding
+	{
+		final String key;
+		final String name;
+		final JDirectInvoker invoker;
+		final int argCount;
+		final boolean isPrivate;
+		final boolean isStatic;
+		
+		public Binding(String aKey, String aName, JDirectInvoker aInvoker, int aArgCount, boolean aPrivate, boolean aStatic)
+		{
+			key = aKey;
+			name = aName;
+			invoker = aInvoker;
+			argCount = aArgCount;
+			isPrivate = aPrivate;
+			isStatic = aStatic;
+		}
+	}
+	
 	private static class JReflectiveBehavior extends JBehavior
 	{
-		private final Method itsMethod;
-		private final int itsArgCount;
+		private final Binding itsBinding;
 		
-		public JReflectiveBehavior(JClass aClass, Method aMethod, int aArgCount)
+		public JReflectiveBehavior(JClass aClass, Binding aBinding)
 		{
 			super(aClass);
-			itsMethod = aMethod;
-			itsArgCount = aArgCount;
+			itsBinding = aBinding;
 		}
 
 		@Override
 		public boolean isPrivate()
 		{
-			return Modifier.isPrivate(itsMethod.getModifiers());
+			return itsBinding.isPrivate;
+		}
+		
+		@Override
+		public boolean isStatic()
+		{
+			return itsBinding.isStatic;
 		}
 		
 		@Override
 		public int getArgCount()
 		{
-			return itsArgCount;
+			return itsBinding.argCount;
 		}
 
 		@Override
 		public JObject invoke0(JFrame aParentFrame, JObject aTarget, JObject... aArgs)
 		{
-			Object[] theArgs = {aParentFrame, aTarget, aArgs};
-			try
-			{
-				return (JObject) itsMethod.invoke(getDeclaringClass(), theArgs);
-			}
-			catch (Exception e)
-			{
-				throw new RuntimeException(e);
-			}
+			return itsBinding.invoker.invoke(getDeclaringClass(), aParentFrame, aTarget, aArgs);
 		}
 		
 		@Override
 		public String getName()
 		{
-			return itsMethod.getName();
+			return itsBinding.name;
 		}
 	}
 	
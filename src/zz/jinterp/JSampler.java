@@ -0,0 +1,185 @@
+/*
+ * Created on Oct 19, 2026
+ */
+package zz.jinterp;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import zz.jinterp.JNormalBehavior.JFrame;
+
+/**
+ * A sampling profiler of interpreted code.
+ * While a sampler is set on an interpreter (see {@link JInterpreter#setSampler(JSampler)}),
+ * each thread publishes its innermost interpreted frame. A background thread periodically
+ * reads the frame chains of all threads, without stopping them, and counts identical stacks.
+ * The result can be written in the folded format used by flame graph tools.
+ * @author gpothier
+ */
+public class JSampler
+{
+	private final long itsPeriodNanos;
+	private final boolean itsIncludeIPs;
+
+	private final ThreadLocal<Slot> itsSlot = new ThreadLocal<Slot>()
+	{
+		@Override
+		protected Slot initialValue()
+		{
+			Slot theSlot = new Slot(Thread.currentThread());
+			itsSlots.add(theSlot);
+			return theSlot;
+		}
+	};
+
+	private final List<Slot> itsSlots = new CopyOnWriteArrayList<Slot>();
+
+	/**
+	 * Number of samples of each stack, indexed by folded stack.
+	 * Only accessed by the sampling thread, or with the sampler stopped.
+	 */
+	private final Map<String, long[]> itsStacks = new HashMap<String, long[]>();
+
+	private volatile Thread itsThread;
+
+	/**
+	 * @param aPeriodMicros Time between two samples, in microseconds.
+	 * @param aIncludeIPs Whether frames are distinguished by instruction pointer
+	 * rather than only by behavior.
+	 */
+	public JSampler(long aPeriodMicros, boolean aIncludeIPs)
+	{
+		itsPeriodNanos = TimeUnit.MICROSECONDS.toNanos(aPeriodMicros);
+		itsIncludeIPs = aIncludeIPs;
+	}
+
+	Slot getSlot()
+	{
+		return itsSlot.get();
+	}
+
+	/**
+	 * Starts the sampling thread.
+	 */
+	public synchronized void start()
+	{
+		if (itsThread != null) throw new IllegalStateException("Already started");
+		itsThread = new Thread("JSampler")
+		{
+			@Override
+			public void run()
+			{
+				while (itsThread == this)
+				{
+					sample();
+					LockSupport.parkNanos(itsPeriodNanos);
+				}
+			}
+		};
+		itsThread.setDaemon(true);
+		itsThread.start();
+	}
+
+	/**
+	 * Stops the sampling thread, and waits for it to terminate.
+	 */
+	public void stop() throws InterruptedException
+	{
+		Thread theThread;
+		synchronized (this)
+		{
+			theThread = itsThread;
+			itsThread = null;
+		}
+		if (theThread != null) theThread.join();
+	}
+
+	/**
+	 * Takes one sample of all the threads.
+	 * Called periodically by the sampling thread.
+	 */
+	void sample()
+	{
+		StringBuilder theBuilder = new StringBuilder();
+		List<JFrame> theFrames = new ArrayList<JFrame>();
+
+		for (Slot theSlot : itsSlots)
+		{
+			JFrame theTop = theSlot.itsTop;
+			if (theTop == null)
+			{
+				if (! theSlot.itsThread.isAlive()) itsSlots.remove(theSlot);
+				continue;
+			}
+
+			theFrames.clear();
+			for (JFrame theFrame = theTop; theFrame != null; theFrame = theFrame.getParentFrame()) theFrames.add(theFrame);
+
+			theBuilder.setLength(0);
+			for(int i=theFrames.size()-1;i>=0;i--)
+			{
+				JFrame theFrame = theFrames.get(i);
+				JBehavior theBehavior = theFrame.getBehavior();
+				theBuilder.append(theBehavior.getDeclaringClass().getName());
+				theBuilder.append('.');
+				theBuilder.append(theBehavior.getName());
+				if (itsIncludeIPs)
+				{
+					theBuilder.append(':');
+					theBuilder.append(theFrame.getInstructionPointer());
+				}
+				if (i > 0) theBuilder.append(';');
+			}
+
+			String theStack = theBuilder.toString();
+			long[] theCount = itsStacks.get(theStack);
+			if (theCount == null)
+			{
+				theCount = new long[1];
+				itsStacks.put(theStack, theCount);
+			}
+			theCount[0]++;
+		}
+	}
+
+	/**
+	 * Writes the samples in folded format: one line per distinct stack,
+	 * with the frames from outermost to innermost separated by semicolons,
+	 * followed by the number of samples.
+	 * The sampler must be stopped.
+	 */
+	public synchronized void writeFolded(Writer aWriter) throws IOException
+	{
+		if (itsThread != null) throw new IllegalStateException("Sampler is running");
+		for (Map.Entry<String, long[]> theEntry : itsStacks.entrySet())
+		{
+			aWriter.write(theEntry.getKey()+" "+theEntry.getValue()[0]+"\n");
+		}
+	}
+
+	/**
+	 * Publishes the innermost interpreted frame of a thread.
+	 */
+	static final class Slot
+	{
+		private final Thread itsThread;
+		private volatile JFrame itsTop;
+
+		Slot(Thread aThread)
+		{
+			itsThread = aThread;
+		}
+
+		public void setTop(JFrame aFrame)
+		{
+			itsTop = aFrame;
+		}
+	}
+}
@@ -0,0 +1,182 @@
+/*
+ * Created on Oct 19, 2026
+ */
+package zz.jinterp;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+
+/**
+ * Finds candidate superinstructions in profiler reports: the instruction
+ * sequences whose fusion would save the most dispatches on the profiled workload.
+ * <p>
+ * Only straight-line sequences are considered: a sequence stops before a label,
+ * as the label could be a jump target, and after an instruction that transfers control.
+ * Each sequence is weighted by the number of executions of its first instruction.
+ * Sequences overlap, so the savings of different candidates cannot be added.
+ * Reports should be collected with superinstructions disabled
+ * ({@link JInterpreter#setSuperinstructions(int)}), as the instructions that
+ * follow the first instruction of a superinstruction are not counted.
+ * @author gpothier
+ */
+public class JSequenceMiner
+{
+	private final int itsMaxLength;
+	private final Map<String, Candidate> itsCandidates = new HashMap<String, Candidate>();
+
+	/**
+	 * @param aMaxLength The maximum length of the candidate sequences, at least 2.
+	 */
+	public JSequenceMiner(int aMaxLength)
+	{
+		itsMaxLength = aMaxLength;
+	}
+
+	/**
+	 * Adds the sequences executed by the behaviors of the given report.
+	 */
+	public void add(JProfiler.Report aReport)
+	{
+		for (JProfiler.Counters theCounters : aReport.getBehaviors())
+		{
+			JBehavior theBehavior = theCounters.getBehavior();
+			if (theBehavior instanceof JASMBehavior) add(theCounters, ((JASMBehavior) theBehavior).getNode().instructions.toArray());
+		}
+	}
+
+	private void add(JProfiler.Counters aCounters, AbstractInsnNode[] aInsns)
+	{
+		for(int i=0;i<aInsns.length;i++)
+		{
+			long theExecutions = aCounters.getExecutions(i);
+			if (theExecutions == 0 || aInsns[i].getOpcode() < 0) continue;
+
+			StringBuilder theSequence = new StringBuilder(JProfiler.Report.getOpcodeName(aInsns[i].getOpcode()));
+			for(int j=i+1;j<aInsns.length && j-i < itsMaxLength;j++)
+			{
+				if (isTransfer(aInsns[j-1]) || aInsns[j].getOpcode() < 0) break;
+				theSequence.append(';');
+				theSequence.append(JProfiler.Report.getOpcodeName(aInsns[j].getOpcode()));
+
+				String theKey = theSequence.toString();
+				Candidate theCandidate = itsCandidates.get(theKey);
+				if (theCandidate == null)
+				{
+					theCandidate = new Candidate(theKey, j-i+1);
+					itsCandidates.put(theKey, theCandidate);
+				}
+				theCandidate.executions += theExecutions;
+			}
+		}
+	}
+
+	/**
+	 * Whether the given instruction can transfer control elsewhere than to the next instruction.
+	 */
+	private static boolean isTransfer(AbstractInsnNode aInsn)
+	{
+		int theOpcode = aInsn.getOpcode();
+		switch(aInsn.getType())
+		{
+		case AbstractInsnNode.JUMP_INSN:
+		case AbstractInsnNode.TABLESWITCH_INSN:
+		case AbstractInsnNode.LOOKUPSWITCH_INSN:
+			return true;
+
+		default:
+			return (theOpcode >= Opcodes.IRETURN && theOpcode <= Opcodes.RETURN)
+				|| theOpcode == Opcodes.ATHROW
+				|| theOpcode == Opcodes.RET;
+		}
+	}
+
+	/**
+	 * Returns the candidates, by decreasing number of saved dispatches.
+	 */
+	public List<Candidate> getCandidates()
+	{
+		List<Candidate> theCandidates = new ArrayList<Candidate>(itsCandidates.values());
+		Collections.sort(theCandidates, new Comparator<Candidate>()
+		{
+			public int compare(Candidate c1, Candidate c2)
+			{
+				long s1 = c1.getSavedDispatches();
+				long s2 = c2.getSavedDispatches();
+				return s1 < s2 ? 1 : (s1 > s2 ? -1 : 0);
+			}
+		});
+		return theCandidates;
+	}
+
+	/**
+	 * Writes the given number of best candidates, one line per candidate.
+	 */
+	public void writeCSV(Writer aWriter, int aCount) throws IOException
+	{
+		aWriter.write("sequence,length,executions,saved_dispatches\n");
+		List<Candidate> theCandidates = getCandidates();
+		for(int i=0;i<Math.min(aCount, theCandidates.size());i++)
+		{
+			Candidate theCandidate = theCandidates.get(i);
+			aWriter.write(
+					theCandidate.getSequence()+","
+					+theCandidate.getLength()+","
+					+theCandidate.getExecutions()+","
+					+theCandidate.getSavedDispatches()+"\n");
+		}
+	}
+
+	/**
+	 * A sequence of instructions that could be fused.
+	 */
+	public static final class Candidate
+	{
+		private final String itsSequence;
+		private final int itsLength;
+		long executions;
+
+		Candidate(String aSequence, int aLength)
+		{
+			itsSequence = aSequence;
+			itsLength = aLength;
+		}
+
+		/**
+		 * The opcode names of the instructions of the sequence, separated by semicolons.
+		 */
+		public String getSequence()
+		{
+			return itsSequence;
+		}
+
+		public int getLength()
+		{
+			return itsLength;
+		}
+
+		/**
+		 * Number of times the whole sequence was executed.
+		 */
+		public long getExecutions()
+		{
+			return executions;
+		}
+
+		/**
+		 * Number of dispatches that a superinstruction would have saved.
+		 */
+		public long getSavedDispatches()
+		{
+			return executions * (itsLength-1);
+		}
+	}
+}
@@ -0,0 +1,73 @@
+/*
+ * Created on Oct 19, 2026
+ */
+package zz.jinterp;
+
+/**
+ * The stack trace of an interpreted exception, captured as (behavior, instruction pointer)
+ * pairs when the exception is created. Strings are only built on demand.
+ * @author gpothier
+ */
+public final class JStackTrace
+{
+	private static final int INITIAL_CAPACITY = 16;
+
+	private JBehavior[] itsBehaviors = new JBehavior[INITIAL_CAPACITY];
+	private int[] itsIPs = new int[INITIAL_CAPACITY];
+	private int itsSize = 0;
+
+	public void add(JBehavior aBehavior, int aIP)
+	{
+		if (itsSize == itsBehaviors.length)
+		{
+			JBehavior[] theBehaviors = new JBehavior[itsSize*2];
+			System.arraycopy(itsBehaviors, 0, theBehaviors, 0, itsSize);
+			itsBehaviors = theBehaviors;
+
+			int[] theIPs = new int[itsSize*2];
+			System.arraycopy(itsIPs, 0, theIPs, 0, itsSize);
+			itsIPs = theIPs;
+		}
+
+		itsBehaviors[itsSize] = aBehavior;
+		itsIPs[itsSize] = aIP;
+		itsSize++;
+	}
+
+	public void clear()
+	{
+		itsSize = 0;
+	}
+
+	public int size()
+	{
+		return itsSize;
+	}
+
+	public JBehavior getBehavior(int aIndex)
+	{
+		return itsBehaviors[aIndex];
+	}
+
+	public int getIP(int aIndex)
+	{
+		return itsIPs[aIndex];
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder theBuilder = new StringBuilder();
+		for (int i=0;i<itsSize;i++)
+		{
+			JBehavior theBehavior = itsBehaviors[i];
+			theBuilder.append(theBehavior.getDeclaringClass().getName());
+			theBuilder.append('.');
+			theBuilder.append(theBehavior.getName());
+			theBuilder.append(':');
+			theBuilder.append(itsIPs[i]);
+			theBuilder.append('\n');
+		}
+		return theBuilder.toString();
+	}
+}
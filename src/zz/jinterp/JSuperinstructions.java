@@ -0,0 +1,46 @@
+/*
+ * Created on Oct 19, 2026
+ */
+package zz.jinterp;
+
+/**
+ * The instruction sequences that can be fused into superinstructions when
+ * behaviors are prepared (see {@link JInterpreter#setSuperinstructions(int)}).
+ * A superinstruction executes the whole sequence in a single dispatch, without
+ * pushing intermediate values on the operand stack.
+ * Sequences are only fused when no instruction but the first is a jump target.
+ * <p>
+ * Candidate sequences for new superinstructions can be found in the profiles 
+ * of actual workloads with {@link JSequenceMiner}.
+ * @author gpothier
+ */
+public class JSuperinstructions
+{
+	public static final int NONE = 0;
+	
+	/**
+	 * ALOAD; GETFIELD
+	 */
+	public static final int LOAD_FIELD = 1;
+	
+	/**
+	 * ILOAD; ILOAD; IADD; ISTORE
+	 */
+	public static final int ADD_LOCALS = 2;
+	
+	/**
+	 * ILOAD; ICONST, BIPUSH or SIPUSH; IF_ICMPxx
+	 */
+	public static final int COMPARE_CONSTANT = 4;
+	
+	/**
+	 * ALOAD; ILOAD; xALOAD
+	 */
+	public static final int LOAD_ELEMENT = 8;
+	
+	public static final int ALL = LOAD_FIELD | ADD_LOCALS | COMPARE_CONSTANT | LOAD_ELEMENT;
+	
+	private JSuperinstructions()
+	{
+	}
+}
@@ -0,0 +1,451 @@
+/*
+ * Created on Oct 19, 2026
+ */
+package zz.jinterp;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records execution events in a compact binary format, in a ring of
+ * memory-mapped files: when the last file is full, the oldest one is overwritten.
+ * <p>
+ * Each thread encodes its events in its own buffer, which is copied to the
+ * current file when it is full or when the outermost frame of the thread ends.
+ * A file is a sequence of chunks, each made of a header (event bytes count,
+ * host thread id and chunk sequence number) followed by the events of one thread;
+ * a zero count ends the file. Events are a tag byte followed by varints; behavior
+ * and field ids are delta-encoded with respect to the previous event of the
+ * same kind in the chunk. The names of the ids are written to {@link #NAMES_FILE}
+ * when the tracer is closed.
+ * <p>
+ * Copying a buffer to the file takes the lock of the tracer, so threads contend
+ * once per buffer rather than once per event; larger buffers reduce contention 
+ * at the cost of memory and of events lost in unflushed buffers.
+ * @author gpothier
+ */
+public class JTracer extends JEventRecorder
+{
+	public static final String NAMES_FILE = "names.txt";
+
+	static final int EV_ENTER = 1;
+	static final int EV_EXIT = 2;
+	static final int EV_EXIT_THROWN = 3;
+	static final int EV_FIELD_WRITE = 4;
+	static final int EV_ARRAY_STORE = 5;
+	static final int EV_EXCEPTION = 6;
+
+	private static final int CHUNK_HEADER_SIZE = 4+8+8;
+
+	/**
+	 * Maximum size of an encoded event.
+	 */
+	private static final int MAX_EVENT_SIZE = 1+5+5+10;
+
+	private final File itsDirectory;
+	private final int itsBufferSize;
+	private final MappedByteBuffer[] itsFiles;
+	private int itsCurrentFile = 0;
+	private long itsNextSequence = 0;
+	private boolean itsClosed = false;
+
+	private final Map<Integer, String> itsNames = new ConcurrentHashMap<Integer, String>();
+
+	/**
+	 * @param aDirectory The directory where trace files are created.
+	 * @param aFileCount Number of files in the ring.
+	 * @param aFileSize Size of each file, in bytes.
+	 * @param aBufferSize Size of the per-thread buffers, in bytes.
+	 */
+	public JTracer(File aDirectory, int aFileCount, int aFileSize, int aBufferSize) throws IOException
+	{
+		if (aBufferSize+CHUNK_HEADER_SIZE+4 > aFileSize) throw new IllegalArgumentException("Buffers must fit in files");
+		if (aBufferSize < 4*MAX_EVENT_SIZE) throw new IllegalArgumentException("Buffer too small");
+
+		itsDirectory = aDirectory;
+		itsBufferSize = aBufferSize;
+		itsDirectory.mkdirs();
+		itsFiles = new MappedByteBuffer[aFileCount];
+		for(int i=0;i<aFileCount;i++)
+		{
+			RandomAccessFile theFile = new RandomAccessFile(getFile(aDirectory, i), "rw");
+			try
+			{
+				theFile.setLength(0);
+				itsFiles[i] = theFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, aFileSize);
+			}
+			finally
+			{
+				theFile.close();
+			}
+		}
+	}
+
+	private static File getFile(File aDirectory, int aIndex)
+	{
+		return new File(aDirectory, "trace-"+aIndex+".bin");
+	}
+
+	@Override
+	protected JEventSink createSink()
+	{
+		return new Sink(this, Thread.currentThread().getId());
+	}
+
+	void define(JMember aMember)
+	{
+		String theName;
+		if (aMember instanceof JBehavior)
+		{
+			JBehavior theBehavior = (JBehavior) aMember;
+			String theDesc = theBehavior instanceof JASMBehavior ? ((JASMBehavior) theBehavior).getNode().desc : "";
+			theName = theBehavior.getDeclaringClass().getName()+"."+theBehavior.getName()+theDesc;
+		}
+		else
+		{
+			JField theField = (JField) aMember;
+			theName = theField.getDeclaringClass().getName()+"."+theField.getName();
+		}
+		itsNames.put(aMember.getId(), theName);
+	}
+
+	/**
+	 * Copies the events of a thread to the current file.
+	 * This is the only point where producing threads synchronize.
+	 */
+	synchronized void write(long aThreadId, byte[] aBuffer, int aLength)
+	{
+		if (itsClosed) return;
+
+		MappedByteBuffer theFile = itsFiles[itsCurrentFile];
+		if (theFile.remaining() < CHUNK_HEADER_SIZE+aLength+4)
+		{
+			// The current file already ends with a terminator
+			itsCurrentFile = (itsCurrentFile+1) % itsFiles.length;
+			theFile = itsFiles[itsCurrentFile];
+			theFile.clear();
+		}
+
+		theFile.putInt(aLength);
+		theFile.putLong(aThreadId);
+		theFile.putLong(itsNextSequence++);
+		theFile.put(aBuffer, 0, aLength);
+		theFile.putInt(theFile.position(), 0);
+	}
+
+	/**
+	 * Writes the names of ids, forces the files to disk and releases the mapped buffers.
+	 * Java provides no way to unmap them explicitly: the mappings end when
+	 * the buffers are garbage collected.
+	 * Events that are still in thread buffers are lost.
+	 */
+	public synchronized void close() throws IOException
+	{
+		if (itsClosed) return;
+		itsClosed = true;
+
+		for(int i=0;i<itsFiles.length;i++) 
+		{
+			itsFiles[i].force();
+			itsFiles[i] = null;
+		}
+
+		Writer theWriter = new FileWriter(new File(itsDirectory, NAMES_FILE));
+		try
+		{
+			for (Map.Entry<Integer, String> theEntry : itsNames.entrySet())
+			{
+				theWriter.write(theEntry.getKey()+" "+theEntry.getValue()+"\n");
+			}
+		}
+		finally
+		{
+			theWriter.close();
+		}
+	}
+
+	/**
+	 * Encodes the events of a thread.
+	 */
+	private static class Sink extends JEventSink
+	{
+		private final JTracer itsTracer;
+		private final long itsThreadId;
+		private final byte[] itsBuffer;
+		private int itsPosition = 0;
+
+		private int itsLastBehaviorId = 0;
+		private int itsLastFieldId = 0;
+
+		/**
+		 * The ids whose names were already given to the tracer.
+		 */
+		private final BitSet itsDefined = new BitSet();
+
+		public Sink(JTracer aTracer, long aThreadId)
+		{
+			super(aTracer);
+			itsTracer = aTracer;
+			itsThreadId = aThreadId;
+			itsBuffer = new byte[aTracer.itsBufferSize];
+		}
+
+		private void ensureRoom()
+		{
+			if (itsPosition > itsBuffer.length-MAX_EVENT_SIZE) flush();
+		}
+
+		@Override
+		public void flush()
+		{
+			if (itsPosition == 0) return;
+			itsTracer.write(itsThreadId, itsBuffer, itsPosition);
+			itsPosition = 0;
+			itsLastBehaviorId = 0;
+			itsLastFieldId = 0;
+		}
+
+		private void define(JMember aMember)
+		{
+			int theId = aMember.getId();
+			if (itsDefined.get(theId)) return;
+			itsTracer.define(aMember);
+			itsDefined.set(theId);
+		}
+
+		private void writeByte(int aValue)
+		{
+			itsBuffer[itsPosition++] = (byte) aValue;
+		}
+
+		private void writeVarInt(int aValue)
+		{
+			while ((aValue & ~0x7F) != 0)
+			{
+				itsBuffer[itsPosition++] = (byte) ((aValue & 0x7F) | 0x80);
+				aValue >>>= 7;
+			}
+			itsBuffer[itsPosition++] = (byte) aValue;
+		}
+
+		private void writeSignedVarInt(int aValue)
+		{
+			writeVarInt((aValue << 1) ^ (aValue >> 31));
+		}
+
+		private void writeSignedVarLong(long aValue)
+		{
+			long theValue = (aValue << 1) ^ (aValue >> 63);
+			while ((theValue & ~0x7FL) != 0)
+			{
+				itsBuffer[itsPosition++] = (byte) ((theValue & 0x7F) | 0x80);
+				theValue >>>= 7;
+			}
+			itsBuffer[itsPosition++] = (byte) theValue;
+		}
+
+		@Override
+		public void enter(JBehavior aBehavior)
+		{
+			define(aBehavior);
+			ensureRoom();
+			int theId = aBehavior.getId();
+			writeByte(EV_ENTER);
+			writeSignedVarInt(theId-itsLastBehaviorId);
+			itsLastBehaviorId = theId;
+		}
+
+		@Override
+		public void exit(JBehavior aBehavior, boolean aThrown)
+		{
+			ensureRoom();
+			writeByte(aThrown ? EV_EXIT_THROWN : EV_EXIT);
+		}
+
+		@Override
+		public void fieldWrite(JField aField, JObject aTarget, JObject aValue)
+		{
+			define(aField);
+			ensureRoom();
+			int theId = aField.getId();
+			writeByte(EV_FIELD_WRITE);
+			writeSignedVarInt(theId-itsLastFieldId);
+			writeVarInt(getObjectId(aTarget));
+			writeSignedVarLong(getValueBits(aValue));
+			itsLastFieldId = theId;
+		}
+
+		@Override
+		public void arrayStore(JArray aArray, int aIndex, JObject aValue)
+		{
+			ensureRoom();
+			writeByte(EV_ARRAY_STORE);
+			writeVarInt(getObjectId(aArray));
+			writeVarInt(aIndex);
+			writeSignedVarLong(getValueBits(aValue));
+		}
+
+		@Override
+		public void exception(JBehavior aBehavior, int aIP, JInstance aException)
+		{
+			ensureRoom();
+			writeByte(EV_EXCEPTION);
+			writeVarInt(aIP);
+			writeVarInt(getObjectId(aException));
+		}
+	}
+
+	/**
+	 * Receives the events decoded by {@link JTracer#read(File, Visitor)}.
+	 * Behaviors and fields are given by id (see {@link JTracer#NAMES_FILE}).
+	 */
+	public static abstract class Visitor
+	{
+		/**
+		 * Called before the events of each chunk.
+		 */
+		public void chunk(long aThreadId, long aSequence) {}
+		public void enter(int aBehaviorId) {}
+		public void exit(boolean aThrown) {}
+		public void fieldWrite(int aFieldId, int aTargetId, long aValueBits) {}
+		public void arrayStore(int aArrayId, int aIndex, long aValueBits) {}
+		public void exception(int aIP, int aExceptionId) {}
+	}
+
+	/**
+	 * Decodes the trace files of the given directory, chunk by chunk,
+	 * in the order in which they were written.
+	 */
+	public static void read(File aDirectory, Visitor aVisitor) throws IOException
+	{
+		List<ByteBuffer> theChunks = new ArrayList<ByteBuffer>();
+		for(int i=0;;i++)
+		{
+			File theFile = getFile(aDirectory, i);
+			if (! theFile.exists()) break;
+
+			FileInputStream theStream = new FileInputStream(theFile);
+			ByteBuffer theBuffer;
+			try
+			{
+				FileChannel theChannel = theStream.getChannel();
+				theBuffer = theChannel.map(FileChannel.MapMode.READ_ONLY, 0, theChannel.size());
+			}
+			finally
+			{
+				theStream.close();
+			}
+
+			while (theBuffer.remaining() >= 4)
+			{
+				int theLength = theBuffer.getInt();
+				if (theLength == 0) break;
+				ByteBuffer theChunk = theBuffer.slice();
+				theChunk.limit(8+8+theLength);
+				theChunks.add(theChunk);
+				theBuffer.position(theBuffer.position()+8+8+theLength);
+			}
+		}
+
+		Collections.sort(theChunks, new Comparator<ByteBuffer>()
+		{
+			public int compare(ByteBuffer b1, ByteBuffer b2)
+			{
+				long s1 = b1.getLong(8);
+				long s2 = b2.getLong(8);
+				return s1 < s2 ? -1 : (s1 > s2 ? 1 : 0);
+			}
+		});
+
+		for (ByteBuffer theChunk : theChunks) readChunk(theChunk, aVisitor);
+	}
+
+	private static void readChunk(ByteBuffer aChunk, Visitor aVisitor)
+	{
+		aVisitor.chunk(aChunk.getLong(), aChunk.getLong());
+		int theLastBehaviorId = 0;
+		int theLastFieldId = 0;
+		while (aChunk.hasRemaining())
+		{
+			int theTag = aChunk.get();
+			switch(theTag)
+			{
+			case EV_ENTER:
+				theLastBehaviorId += readSignedVarInt(aChunk);
+				aVisitor.enter(theLastBehaviorId);
+				break;
+
+			case EV_EXIT:
+			case EV_EXIT_THROWN:
+				aVisitor.exit(theTag == EV_EXIT_THROWN);
+				break;
+
+			case EV_FIELD_WRITE:
+				theLastFieldId += readSignedVarInt(aChunk);
+				aVisitor.fieldWrite(theLastFieldId, readVarInt(aChunk), readSignedVarLong(aChunk));
+				break;
+
+			case EV_ARRAY_STORE:
+				aVisitor.arrayStore(readVarInt(aChunk), readVarInt(aChunk), readSignedVarLong(aChunk));
+				break;
+
+			case EV_EXCEPTION:
+				aVisitor.exception(readVarInt(aChunk), readVarInt(aChunk));
+				break;
+
+			default:
+				throw new RuntimeException("Corrupted trace, tag: "+theTag);
+			}
+		}
+	}
+
+	private static int readVarInt(ByteBuffer aBuffer)
+	{
+		int theValue = 0;
+		int theShift = 0;
+		byte theByte;
+		do
+		{
+			theByte = aBuffer.get();
+			theValue |= (theByte & 0x7F) << theShift;
+			theShift += 7;
+		}
+		while ((theByte & 0x80) != 0);
+		return theValue;
+	}
+
+	private static int readSignedVarInt(ByteBuffer aBuffer)
+	{
+		int theValue = readVarInt(aBuffer);
+		return (theValue >>> 1) ^ -(theValue & 1);
+	}
+
+	private static long readSignedVarLong(ByteBuffer aBuffer)
+	{
+		long theValue = 0;
+		int theShift = 0;
+		byte theByte;
+		do
+		{
+			theByte = aBuffer.get();
+			theValue |= (long) (theByte & 0x7F) << theShift;
+			theShift += 7;
+		}
+		while ((theByte & 0x80) != 0);
+		return (theValue >>> 1) ^ -(theValue & 1);
+	}
+}
@@ -0,0 +1,204 @@
+/*
+ * Created on Oct 19, 2026
+ */
+package zz.jinterp;
+
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.analysis.Analyzer;
+import org.objectweb.asm.tree.analysis.AnalyzerException;
+import org.objectweb.asm.tree.analysis.BasicInterpreter;
+import org.objectweb.asm.tree.analysis.BasicValue;
+import org.objectweb.asm.tree.analysis.Frame;
+import org.objectweb.asm.tree.analysis.Value;
+
+import zz.jinterp.JPrimitive.JInt;
+
+/**
+ * Infers the type of every operand stack slot and local variable before each
+ * instruction of a method, so that instructions can be decoded into handlers
+ * specialized for the types of their operands.
+ * <p>
+ * Values of the int category can be represented by {@link JInt}, but also by
+ * narrower primitives such as {@link JPrimitive.JChar}: arrays, fields, arguments
+ * and return values keep the representation of the value they were given.
+ * The inference therefore also tracks which int values are known to be
+ * {@link JInt}s, which is the case of constants and of the results of
+ * arithmetic instructions.
+ * @author gpothier
+ */
+public class JTypeInference
+{
+	/**
+	 * An int value that is known to be represented by a {@link JInt}.
+	 */
+	private static final BasicValue EXACT_INT = new BasicValue(Type.INT_TYPE);
+
+	/**
+	 * The frames before each instruction, null for unreachable instructions.
+	 */
+	private final Frame[] itsFrames;
+
+	/**
+	 * Analyzes the given method.
+	 * @param aOwner The internal name of the class that declares the method.
+	 * @throws AnalyzerException If the bytecode of the method is not valid.
+	 */
+	public JTypeInference(String aOwner, MethodNode aMethodNode) throws AnalyzerException
+	{
+		Analyzer theAnalyzer = new Analyzer(new Inferrer());
+		itsFrames = theAnalyzer.analyze(aOwner, aMethodNode);
+	}
+
+	/**
+	 * Whether the given instruction can be reached.
+	 */
+	public boolean isReachable(int aInsn)
+	{
+		return itsFrames[aInsn] != null;
+	}
+
+	/**
+	 * Returns the type of a stack slot before the given instruction.
+	 * @param aDepth The depth of the slot, 0 being the top of the stack.
+	 * @return The type of the slot, or null if the instruction is unreachable.
+	 * Int values of all sizes have the int type, and references the Object type.
+	 */
+	public Type getStackType(int aInsn, int aDepth)
+	{
+		return getType(getStack(aInsn, aDepth));
+	}
+
+	/**
+	 * Returns the type of a local variable before the given instruction.
+	 * @return The type of the variable, or null if the instruction is unreachable
+	 * or the variable is not initialized.
+	 */
+	public Type getLocalType(int aInsn, int aLocal)
+	{
+		Frame theFrame = itsFrames[aInsn];
+		return theFrame != null ? getType(theFrame.getLocal(aLocal)) : null;
+	}
+
+	/**
+	 * Whether the given stack slot holds a {@link JInt} before the given instruction.
+	 * @param aDepth The depth of the slot, 0 being the top of the stack.
+	 */
+	public boolean isExactInt(int aInsn, int aDepth)
+	{
+		return getStack(aInsn, aDepth) == EXACT_INT;
+	}
+
+	/**
+	 * Whether the given local variable holds a {@link JInt} before the given instruction.
+	 */
+	public boolean isExactIntLocal(int aInsn, int aLocal)
+	{
+		Frame theFrame = itsFrames[aInsn];
+		return theFrame != null && theFrame.getLocal(aLocal) == EXACT_INT;
+	}
+
+	private Value getStack(int aInsn, int aDepth)
+	{
+		Frame theFrame = itsFrames[aInsn];
+		if (theFrame == null) return null;
+		return theFrame.getStack(theFrame.getStackSize()-1-aDepth);
+	}
+
+	private static Type getType(Value aValue)
+	{
+		return aValue instanceof BasicValue ? ((BasicValue) aValue).getType() : null;
+	}
+
+	/**
+	 * Produces {@link #EXACT_INT} for the instructions whose interpreted
+	 * implementation creates a {@link JInt}.
+	 */
+	private static class Inferrer extends BasicInterpreter
+	{
+		@Override
+		public Value newOperation(AbstractInsnNode aInsn) throws AnalyzerException
+		{
+			switch (aInsn.getOpcode())
+			{
+			case Opcodes.ICONST_M1:
+			case Opcodes.ICONST_0:
+			case Opcodes.ICONST_1:
+			case Opcodes.ICONST_2:
+			case Opcodes.ICONST_3:
+			case Opcodes.ICONST_4:
+			case Opcodes.ICONST_5:
+			case Opcodes.BIPUSH:
+			case Opcodes.SIPUSH:
+				return EXACT_INT;
+
+			case Opcodes.LDC:
+				if (((LdcInsnNode) aInsn).cst instanceof Integer) return EXACT_INT;
+				else return super.newOperation(aInsn);
+
+			default:
+				return super.newOperation(aInsn);
+			}
+		}
+
+		@Override
+		public Value unaryOperation(AbstractInsnNode aInsn, Value aValue) throws AnalyzerException
+		{
+			switch (aInsn.getOpcode())
+			{
+			case Opcodes.INEG:
+			case Opcodes.IINC:
+			case Opcodes.L2I:
+			case Opcodes.F2I:
+			case Opcodes.D2I:
+			case Opcodes.ARRAYLENGTH:
+			case Opcodes.INSTANCEOF:
+				return EXACT_INT;
+
+			default:
+				return super.unaryOperation(aInsn, aValue);
+			}
+		}
+
+		@Override
+		public Value binaryOperation(AbstractInsnNode aInsn, Value aValue1, Value aValue2) throws AnalyzerException
+		{
+			switch (aInsn.getOpcode())
+			{
+			case Opcodes.IADD:
+			case Opcodes.ISUB:
+			case Opcodes.IMUL:
+			case Opcodes.IDIV:
+			case Opcodes.IREM:
+			case Opcodes.ISHL:
+			case Opcodes.ISHR:
+			case Opcodes.IUSHR:
+			case Opcodes.IAND:
+			case Opcodes.IOR:
+			case Opcodes.IXOR:
+			case Opcodes.LCMP:
+			case Opcodes.FCMPL:
+			case Opcodes.FCMPG:
+			case Opcodes.DCMPL:
+			case Opcodes.DCMPG:
+				return EXACT_INT;
+
+			default:
+				return super.binaryOperation(aInsn, aValue1, aValue2);
+			}
+		}
+
+		@Override
+		public Value merge(Value aValue1, Value aValue2)
+		{
+			if (aValue1 == aValue2) return aValue1;
+			// Exactness is lost when it is not known on all paths
+			if (aValue1 == EXACT_INT && aValue2 == BasicValue.INT_VALUE) return aValue2;
+			if (aValue1 == BasicValue.INT_VALUE && aValue2 == EXACT_INT) return aValue1;
+			return super.merge(aValue1, aValue2);
+		}
+	}
+}
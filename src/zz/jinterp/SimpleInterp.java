@@ -84,7 +84,7 @@ public class SimpleInterp extends JInterpreter
 	}
 
 	@Override
-	public JInstance getReflectionFactory(JFrame aParentFrame)
+	public synchronized JInstance getReflectionFactory(JFrame aParentFrame)
 	{
 		if (itsReflectionFactory == null)
 		{
@@ -96,80 +96,103 @@ public class SimpleInterp extends JInterpreter
 	
 	public static class SimpleInstance extends JInstance
 	{
-		private final Map<JField, JObject> itsFields = new HashMap<JField, JObject>();
+		private final JHeap.Cell<Map<JField, JObject>> itsFields;
 		
 		public SimpleInstance(JClass aClass)
 		{
 			super(aClass);
+			itsFields = new JHeap.Cell<Map<JField, JObject>>(getHeap(), new HashMap<JField, JObject>())
+			{
+				@Override
+				protected Map<JField, JObject> copy(Map<JField, JObject> aState)
+				{
+					return new HashMap<JField, JObject>(aState);
+				}
+			};
+		}
+		
+		private JHeap getHeap()
+		{
+			return getType().getInterpreter().getHeap();
 		}
 		
 		@Override
 		public JObject getFieldValue(JField aField)
 		{
-			return itsFields.get(aField);
+			return itsFields.get(getHeap()).get(aField);
 		}
 
 		@Override
 		public void putFieldValue(JField aField, JObject aValue)
 		{
-			itsFields.put(aField, aValue);
+			itsFields.getWritable(getHeap()).put(aField, aValue);
 		}
 	}
 	
 	public static class SimpleArray extends JArray
 	{
-		private final JObject[] itsValues;
+		private final JInterpreter itsInterpreter;
+		private final int itsSize;
+		private final JHeap.Cell<JObject[]> itsValues;
 		
-		public SimpleArray(int aSize)
-		{
-			itsValues = new JObject[aSize];
+		public SimpleArray(JInterpreter aInterpreter, int aSize)
+		{
+			itsInterpreter = aInterpreter;
+			itsSize = aSize;
+			itsValues = new JHeap.Cell<JObject[]>(aInterpreter.getHeap(), new JObject[aSize])
+			{
+				@Override
+				protected JObject[] copy(JObject[] aState)
+				{
+					return aState.clone();
+				}
+			};
 		}
 
 		@Override
 		public int getSize()
 		{
-			return itsValues.length;
+			return itsSize;
 		}
 
 		@Override
 		public JObject get(int aIndex)
 		{
-			return itsValues[aIndex];
+			return itsValues.get(itsInterpreter.getHeap())[aIndex];
 		}
 
 		@Override
 		public void set(int aIndex, JObject aValue)
 		{
-			itsValues[aIndex] = aValue;
+			itsValues.getWritable(itsInterpreter.getHeap())[aIndex] = aValue;
 		}
 	}
 	
 	public static class SimpleStaticField extends JStaticField
 	{
-		private JObject itsStaticValue;
+		private final JHeap.Cell<JObject> itsStaticValue;
 		
 		public SimpleStaticField(JClass aClass, String aName, JType aType, int aAccess)
 		{
-			super(aClass, aName, aType, aAccess);
-			itsStaticValue = getType().getInitialValue();
+			this(aClass, aName, aType, aAccess, aType.getInitialValue());
 		}
 		
 		public SimpleStaticField(JClass aClass, String aName, JType aType, int aAccess, JObject aStaticValue)
 		{
 			super(aClass, aName, aType, aAccess);
-			itsStaticValue = aStaticValue;
+			itsStaticValue = new JHeap.ValueCell<JObject>(getInterpreter().getHeap(), aStaticValue);
 		}
 
 		@Override
 		public JObject getStaticFieldValue()
 		{
-			return itsStaticValue;
+			return itsStaticValue.get(getInterpreter().getHeap());
 		}
 		
 		@Override
 		public void putStaticFieldValue(JObject aValue)
 		{
-			itsStaticValue = aValue;
+			itsStaticValue.set(getInterpreter().getHeap(), aValue);
 		}
 	}
 }